@@ -0,0 +1,36 @@
+#!/usr/bin/env bash
+# Stand-in for the Moonlight client when developing the launcher without a streaming host.
+# Point the launcher at it with:
+#   DEV_STREAM_CLIENT="$PWD/fake_moonlight.sh" ./launch_couchlauncher.sh
+#
+# Prints Moonlight-style performance statistics once a second.
+#   FAKE_MOONLIGHT_SECONDS  how long to "stream" (default 30)
+#   FAKE_MOONLIGHT_EXIT     exit status when done; non-zero simulates a crash (default 0)
+#   FAKE_MOONLIGHT_FPS      target frame rate (default 60)
+
+set -u
+
+SECONDS_TO_RUN="${FAKE_MOONLIGHT_SECONDS:-30}"
+EXIT_STATUS="${FAKE_MOONLIGHT_EXIT:-0}"
+FPS="${FAKE_MOONLIGHT_FPS:-60}"
+
+echo "Fake Moonlight: $*"
+echo "Video stream is 1920x1080 at ${FPS} FPS"
+
+for ((i = 1; i <= SECONDS_TO_RUN; i++)); do
+    sleep 1
+    jitter=$((RANDOM % 3))
+    echo "Incoming frame rate from network: $((FPS - jitter)).00 FPS"
+    echo "Decoding frame rate: $((FPS - jitter)).00 FPS"
+    echo "Rendering frame rate: $((FPS - jitter)).00 FPS"
+    echo "Frames dropped by your network connection: 0.$((RANDOM % 50))%"
+    echo "Frames dropped due to network jitter: 0.00%"
+    echo "Average network latency: $((2 + RANDOM % 4)) ms (variance: 1 ms)"
+    echo "Average decoding time: $((3 + RANDOM % 2)).$((RANDOM % 100)) ms"
+    echo "Current bitrate: $((18 + RANDOM % 4)).$((RANDOM % 10)) Mbps"
+done
+
+if [ "${EXIT_STATUS}" != "0" ]; then
+    echo "Segmentation fault (simulated)" >&2
+fi
+exit "${EXIT_STATUS}"
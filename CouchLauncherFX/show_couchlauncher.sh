@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# Bring a resident CouchLauncherFX window to the front, or start the launcher in resident mode.
+
+set -euo pipefail
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+PORT="${COUCH_RESIDENT_PORT:-47322}"
+
+if exec 3<>"/dev/tcp/127.0.0.1/${PORT}" 2>/dev/null; then
+    printf 'show\n' >&3
+    reply=""
+    read -r -t 1 reply <&3 || true
+    exec 3>&-
+    if [ "${reply}" = "ok" ]; then
+        exit 0
+    fi
+fi
+
+exec "${SCRIPT_DIR}/launch_couchlauncher.sh" --args=--resident
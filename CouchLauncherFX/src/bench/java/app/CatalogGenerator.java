@@ -0,0 +1,139 @@
+package app;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic catalogs that look like a real library rather than {@code game-0..n}: varied title
+ * lengths with sequels and subtitles, a share of TV and media apps, covers on most entries, chart
+ * ranks on the first ten, and an ownership and install mix. The same seed gives the same catalog.
+ *
+ * <p>As a program it writes the catalog in the {@code /repo/default} shape, e.g. to seed
+ * couchserver or a {@link FaultProxy} stand-in:
+ * <pre>
+ *   java app.CatalogGenerator --tiles 10000 --seed 7 --out catalog.json
+ * </pre>
+ */
+public final class CatalogGenerator {
+
+    private static final String[] ADJECTIVES = {
+            "Crimson", "Silent", "Broken", "Eternal", "Neon", "Hollow", "Iron", "Frozen", "Savage", "Lost",
+            "Golden", "Shattered", "Wild", "Hidden", "Burning", "Last", "Dark", "Radiant", "Forgotten", "Rogue"
+    };
+    private static final String[] NOUNS = {
+            "Kingdom", "Horizon", "Legion", "Frontier", "Odyssey", "Dynasty", "Protocol", "Harbor", "Citadel", "Echo",
+            "Requiem", "Outpost", "Vanguard", "Labyrinth", "Tide", "Circuit", "Empire", "Wasteland", "Sanctum", "Drift"
+    };
+    private static final String[] SUBTITLES = {
+            "Reborn", "Definitive Edition", "The Final Chapter", "Rise of the Fallen", "Remastered",
+            "Origins", "Director's Cut", "Complete Edition", "Beyond the Veil", "Night City Stories"
+    };
+    private static final String[] MEDIA = {"TV", "Live TV", "Movies & TV", "Sports TV", "Kids TV", "Music"};
+    private static final String[] DESCRIPTIONS = {
+            "An open world to explore at your own pace.",
+            "Fast rounds of couch co-op for up to four players.",
+            "A story-driven adventure with branching choices and several endings.",
+            "Build, defend and expand against waves of rivals.",
+            "Competitive racing across tracks that change with the weather.",
+            "Streams live channels and catch-up shows from your provider."
+    };
+
+    /** Share of the catalog the user owns, and of owned titles that are installed. */
+    private static final double OWNED = 0.35;
+    private static final double INSTALLED_WHEN_OWNED = 0.6;
+    private static final double DISABLED = 0.04;
+    private static final double MEDIA_SHARE = 0.08;
+    private static final double WITHOUT_COVER = 0.1;
+    private static final LocalDate CHART_DATE = LocalDate.of(2025, 1, 6);
+
+    private CatalogGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tiles = 1000;
+        long seed = 42;
+        Path out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tiles" -> tiles = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--out" -> out = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        List<AppTile> catalog = generate(tiles, seed);
+        try (Writer writer = out == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            HttpRepo.writeApps(catalog, writer);
+        }
+    }
+
+    public static List<AppTile> generate(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> ids = new HashSet<>();
+        List<AppTile> tiles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean media = random.nextDouble() < MEDIA_SHARE;
+            String name = uniqueName(random, ids, media);
+            String id = slug(name);
+            boolean owned = media || random.nextDouble() < OWNED;
+            boolean installed = owned && random.nextDouble() < INSTALLED_WHEN_OWNED;
+            Integer chartRank = i < 10 ? i + 1 : null;
+            tiles.add(new AppTile(
+                    id,
+                    name,
+                    name,
+                    random.nextDouble() >= DISABLED,
+                    i + 1,
+                    installed,
+                    owned,
+                    chartRank,
+                    CHART_DATE.minusWeeks(random.nextInt(52)).toString(),
+                    DESCRIPTIONS[media ? DESCRIPTIONS.length - 1 : random.nextInt(DESCRIPTIONS.length - 1)],
+                    random.nextDouble() < WITHOUT_COVER ? null : "https://covers.couchsuite.local/" + id + ".jpg",
+                    media ? null : 200_000 + i,
+                    i
+            ));
+        }
+        return tiles;
+    }
+
+    /** A name whose id is not in {@code takenIds} yet. */
+    private static String uniqueName(Random random, Set<String> takenIds, boolean media) {
+        while (true) {
+            String base = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)];
+            String name;
+            if (media) {
+                name = base + " " + MEDIA[random.nextInt(MEDIA.length)];
+            } else {
+                int shape = random.nextInt(10);
+                name = shape < 5 ? base
+                        : shape < 8 ? base + " " + (2 + random.nextInt(6))
+                        : base + ": " + SUBTITLES[random.nextInt(SUBTITLES.length)];
+            }
+            if (takenIds.add(slug(name))) {
+                return name;
+            }
+            // Past a few thousand titles the word lists run out; number the rest like a long-running series.
+            name = name + " " + (takenIds.size() + 1);
+            if (takenIds.add(slug(name))) {
+                return name;
+            }
+        }
+    }
+
+    private static String slug(String name) {
+        return name.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "-").replaceAll("(^-|-$)", "");
+    }
+}
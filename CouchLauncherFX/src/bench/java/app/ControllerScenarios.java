@@ -0,0 +1,230 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds {@link ControllerRegistry} the hotplug sequences BlueZ and the kernel actually produce and
+ * checks that each physical pad holds exactly one player slot, and drives a started
+ * {@link ControllerService} through a stand-in {@code /dev/input}. Prints one JSON object per
+ * scenario and exits with status 1 if any check failed:
+ * <pre>
+ *   ./gradlew controllerScenarios
+ * </pre>
+ */
+public final class ControllerScenarios {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String ADDRESS = "AA:BB:CC:11:22:33";
+    private static final String PAD = "Xbox Wireless Controller";
+    private static final String NODE = "bluetooth-Xbox_Wireless_Controller-event-joystick";
+    private static final String MOTION = "bluetooth-Xbox_Wireless_Controller-gymotion";
+    // WatchService falls back to polling on some platforms, which can take seconds per change.
+    private static final long WATCH_WAIT_SECONDS = 15;
+
+    private ControllerScenarios() {
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        Map<String, Object> run(ControllerService service, ControllerRegistry registry) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("input-then-bluetooth", ControllerScenarios::inputThenBluetooth);
+        scenarios.put("bluetooth-then-input", ControllerScenarios::bluetoothThenInput);
+        scenarios.put("address-in-node-name", ControllerScenarios::addressInNodeName);
+        scenarios.put("reconnect-keeps-slot", ControllerScenarios::reconnectKeepsSlot);
+        scenarios.put("identical-pads-by-address", ControllerScenarios::identicalPadsByAddress);
+        scenarios.put("identical-pads-one-at-a-time", ControllerScenarios::identicalPadsOneAtATime);
+        scenarios.put("watched-by-id", ControllerScenarios::watchedById);
+
+        // No power_supply entries, so battery reads stay empty and deterministic.
+        Path noPowerSupply = Files.createTempDirectory("controller-scenarios");
+        boolean allPassed = true;
+        for (Map.Entry<String, Scenario> scenario : scenarios.entrySet()) {
+            // Each scenario gets its own empty /dev/input and no bluetoothctl, so only what it does is seen.
+            ControllerService service = new ControllerService(Files.createTempDirectory("controller-input"), false);
+            ControllerRegistry registry = new ControllerRegistry(service, noPowerSupply);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("scenario", scenario.getKey());
+            try {
+                row.putAll(scenario.getValue().run(service, registry));
+            } catch (Exception ex) {
+                row.put("passed", false);
+                row.put("error", ex.toString());
+            } finally {
+                service.close();
+            }
+            allPassed &= Boolean.TRUE.equals(row.get("passed"));
+            System.out.println(MAPPER.writeValueAsString(row));
+        }
+        System.exit(allPassed ? 0 : 1);
+    }
+
+    /** The kernel node appears first and BlueZ reports the connection afterwards. */
+    private static Map<String, Object> inputThenBluetooth(ControllerService service, ControllerRegistry registry) {
+        input(registry, NODE, true);
+        input(registry, MOTION, true);
+        bluetooth(registry, ADDRESS, PAD, true);
+        return onePad(registry, ControllerService.Source.INPUT);
+    }
+
+    /** Usual hotplug order: "Connected: yes" first, then the input node it creates. */
+    private static Map<String, Object> bluetoothThenInput(ControllerService service, ControllerRegistry registry) {
+        bluetooth(registry, ADDRESS, PAD, true);
+        input(registry, NODE, true);
+        input(registry, MOTION, true);
+        return onePad(registry, ControllerService.Source.INPUT);
+    }
+
+    /** Names that do not match, but the node name carries the pad's address. */
+    private static Map<String, Object> addressInNodeName(ControllerService service, ControllerRegistry registry) {
+        bluetooth(registry, ADDRESS, "Controller", true);
+        input(registry, "bluetooth-Generic_Pad_aabbcc112233-event-joystick", true);
+        return onePad(registry, ControllerService.Source.INPUT);
+    }
+
+    /** A pad merged from both sources gets its slot back when BlueZ reports it again first. */
+    private static Map<String, Object> reconnectKeepsSlot(ControllerService service, ControllerRegistry registry) {
+        String other = "bluetooth-8BitDo_Pro_2-event-joystick";
+        input(registry, other, true);
+        bluetooth(registry, ADDRESS, PAD, true);
+        input(registry, NODE, true);
+        input(registry, other, false);
+        input(registry, NODE, false);
+        bluetooth(registry, ADDRESS, PAD, false);
+        bluetooth(registry, ADDRESS, PAD, true);
+        List<ControllerRegistry.Controller> controllers = registry.controllers();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("controllers", controllers.stream().map(ControllerRegistry.Controller::playerLabel).toList());
+        row.put("passed", controllers.size() == 1 && controllers.get(0).slot() == 2);
+        return row;
+    }
+
+    /**
+     * Two identical pads connect over Bluetooth before either input node appears, and the nodes
+     * then arrive in the other order. Each node carries its pad's address and must take that
+     * pad's slot and battery, not the first entry with the same name.
+     */
+    private static Map<String, Object> identicalPadsByAddress(ControllerService service, ControllerRegistry unused) throws Exception {
+        String first = "AA:BB:CC:11:22:33";
+        String second = "AA:BB:CC:44:55:66";
+        Path powerSupply = Files.createTempDirectory("controller-batteries");
+        battery(powerSupply, first, 80);
+        battery(powerSupply, second, 30);
+        ControllerRegistry registry = new ControllerRegistry(service, powerSupply);
+        bluetooth(registry, first, PAD, true);
+        bluetooth(registry, second, PAD, true);
+        input(registry, "bluetooth-Xbox_Wireless_Controller_aabbcc445566-event-joystick", true);
+        input(registry, "bluetooth-Xbox_Wireless_Controller_aabbcc112233-event-joystick", true);
+        List<ControllerRegistry.Controller> controllers = registry.controllers();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("controllers", controllers.stream().map(c -> c.playerLabel() + " " + c.batteryPercent() + "% " + c.id()).toList());
+        row.put("passed", controllers.size() == 2
+                && controllers.get(0).id().contains("aabbcc112233") && Integer.valueOf(80).equals(controllers.get(0).batteryPercent())
+                && controllers.get(1).id().contains("aabbcc445566") && Integer.valueOf(30).equals(controllers.get(1).batteryPercent())
+                && controllers.stream().allMatch(c -> c.source() == ControllerService.Source.INPUT));
+        return row;
+    }
+
+    /**
+     * Two identical pads whose node names carry no address, connected one after the other. The
+     * second pad's Bluetooth entry must not be taken for the first pad's node, which is already
+     * merged, and its own node then takes its slot.
+     */
+    private static Map<String, Object> identicalPadsOneAtATime(ControllerService service, ControllerRegistry registry) {
+        String second = "AA:BB:CC:44:55:66";
+        bluetooth(registry, ADDRESS, PAD, true);
+        input(registry, NODE, true);
+        bluetooth(registry, second, PAD, true);
+        int afterSecondConnects = registry.playerCount();
+        String secondNode = "bluetooth-Xbox_Wireless_Controller-if01-event-joystick";
+        input(registry, secondNode, true);
+        // the first pad's Bluetooth entry reconnecting is still recognised as its own
+        bluetooth(registry, ADDRESS, PAD, false);
+        bluetooth(registry, ADDRESS, PAD, true);
+        List<ControllerRegistry.Controller> controllers = registry.controllers();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("after_second_connects", afterSecondConnects);
+        row.put("controllers", controllers.stream().map(c -> c.playerLabel() + " " + c.id()).toList());
+        row.put("passed", afterSecondConnects == 2
+                && controllers.size() == 2
+                && controllers.get(0).id().equals(NODE) && controllers.get(0).slot() == 1
+                && controllers.get(1).id().equals(secondNode) && controllers.get(1).slot() == 2);
+        return row;
+    }
+
+    /**
+     * The service itself, started on a stand-in {@code /dev/input}: {@code by-id} appears after
+     * start with a pad in it, the pad's node goes away, and an unrelated device comes and goes.
+     * Each controller change arrives once, and nothing else does.
+     */
+    private static Map<String, Object> watchedById(ControllerService service, ControllerRegistry registry) throws Exception {
+        if (System.getenv("DEV_FORCE_CONTROLLER") != null) {
+            throw new IllegalStateException("DEV_FORCE_CONTROLLER bypasses the watcher; unset it to run this scenario");
+        }
+        BlockingQueue<ControllerService.ControllerEvent> events = new LinkedBlockingQueue<>();
+        service.addListener(events::add);
+        service.start();
+
+        Path byId = service.devicePath(NODE).getParent();
+        Files.createDirectory(byId);
+        Files.createFile(byId.resolve(NODE));
+        ControllerService.ControllerEvent connected = events.poll(WATCH_WAIT_SECONDS, TimeUnit.SECONDS);
+        int padsWhileConnected = registry.playerCount();
+
+        Files.createFile(byId.resolve("usb-Logitech_USB_Receiver-event-kbd"));
+        Files.delete(byId.resolve("usb-Logitech_USB_Receiver-event-kbd"));
+        Files.delete(byId.resolve(NODE));
+        ControllerService.ControllerEvent disconnected = events.poll(WATCH_WAIT_SECONDS, TimeUnit.SECONDS);
+        ControllerService.ControllerEvent extra = events.poll(1, TimeUnit.SECONDS);
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("connected", connected == null ? null : connected.device());
+        row.put("disconnected", disconnected == null ? null : disconnected.device());
+        row.put("unexpected", extra == null ? null : extra.toString());
+        row.put("passed", connected != null && connected.connected() && NODE.equals(connected.device())
+                && connected.source() == ControllerService.Source.INPUT
+                && padsWhileConnected == 1
+                && disconnected != null && !disconnected.connected() && NODE.equals(disconnected.device())
+                && !disconnected.state().connected()
+                && extra == null
+                && registry.playerCount() == 0);
+        return row;
+    }
+
+    private static Map<String, Object> onePad(ControllerRegistry registry, ControllerService.Source expectedSource) {
+        List<ControllerRegistry.Controller> controllers = registry.controllers();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("controllers", controllers.stream().map(ControllerRegistry.Controller::playerLabel).toList());
+        row.put("passed", controllers.size() == 1
+                && controllers.get(0).slot() == 1
+                && controllers.get(0).source() == expectedSource);
+        return row;
+    }
+
+    /** A kernel power_supply entry as hid drivers name them after the pad's address. */
+    private static void battery(Path powerSupply, String address, int percent) throws Exception {
+        Path supply = Files.createDirectories(powerSupply.resolve("hid-" + address.toLowerCase(Locale.ENGLISH) + "-battery"));
+        Files.writeString(supply.resolve("capacity"), percent + "\n");
+    }
+
+    private static void input(ControllerRegistry registry, String device, boolean connected) {
+        registry.onControllerEvent(new ControllerService.ControllerEvent(connected, ControllerService.Source.INPUT, device, device, null));
+    }
+
+    private static void bluetooth(ControllerRegistry registry, String address, String name, boolean connected) {
+        registry.onControllerEvent(new ControllerService.ControllerEvent(connected, ControllerService.Source.BLUETOOTH, address, name, null));
+    }
+}
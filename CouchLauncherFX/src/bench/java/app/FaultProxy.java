@@ -0,0 +1,298 @@
+package app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for couchserver that misbehaves on purpose. It either serves canned bodies
+ * registered with {@link #respond}, or forwards to a real server. Either way, every response first
+ * passes through the faults a script assigns to its route:
+ *
+ * <pre>
+ *   seed 42
+ *   # path prefix, then faults; the longest matching prefix wins
+ *   route /bootstrap    latency=hang
+ *   route /charts       latency=lognormal:60ms:0.5 burst=503x2/10
+ *   route /users/exists latency=20ms..200ms reset=0.05 partial=0.05 bandwidth=64k
+ * </pre>
+ *
+ * <p>{@code latency} is fixed ({@code 120ms}), uniform ({@code 50ms..400ms}), log-normal
+ * ({@code lognormal:<median>:<sigma>}) or {@code hang}. {@code bandwidth} caps body bytes per
+ * second. {@code reset} and {@code partial} are probabilities of closing the connection before
+ * the headers or halfway through the body. {@code burst=<status>x<n>/<every>} fails the first
+ * {@code n} of every {@code every} requests on the route. Each route draws from its own generator
+ * seeded from the script, so a run replays exactly as long as requests per route arrive in the
+ * same order.
+ */
+public final class FaultProxy implements AutoCloseable {
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s)");
+    private static final Pattern BURST = Pattern.compile("(\\d{3})x(\\d+)/(\\d+)");
+    private static final long HANG_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int WRITE_SLICES_PER_SECOND = 20;
+
+    private record Canned(int status, String contentType, byte[] body) {}
+
+    private static final class Route {
+        private final String prefix;
+        private final Random random;
+        private String latency = "0ms";
+        private long bandwidth;
+        private double reset;
+        private double partial;
+        private int burstStatus;
+        private int burstLength;
+        private int burstEvery;
+        // guarded by this
+        private long requests;
+
+        private Route(String prefix, long seed) {
+            this.prefix = prefix;
+            this.random = new Random(seed ^ prefix.hashCode());
+        }
+    }
+
+    /** What the script decided for one request, drawn up front so draws follow arrival order. */
+    private record Plan(long delayMillis, boolean reset, boolean partial, int status) {}
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, Canned> canned = new ConcurrentHashMap<>();
+    private final Map<String, Long> served = new ConcurrentHashMap<>();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final URI upstream;
+    private final HttpClient client;
+
+    private FaultProxy(String script, URI upstream) throws IOException {
+        this.upstream = upstream;
+        this.client = upstream == null ? null : HttpClient.newHttpClient();
+        parse(script);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /** Serves bodies registered with {@link #respond}; unregistered paths answer 404. */
+    public static FaultProxy standIn(String script) throws IOException {
+        return new FaultProxy(script, null);
+    }
+
+    /** Forwards every request to {@code upstream} and applies the faults on the way back. */
+    public static FaultProxy forward(String script, String upstream) throws IOException {
+        return new FaultProxy(script, URI.create(upstream));
+    }
+
+    public FaultProxy respond(String path, String contentType, byte[] body) {
+        canned.put(path, new Canned(200, contentType, body));
+        return this;
+    }
+
+    /** Base URL to hand to {@link HttpRepo}. */
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /** Requests seen for a route prefix, faulted or not. */
+    public long requests(String prefix) {
+        return served.getOrDefault(prefix, 0L);
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void parse(String script) {
+        long seed = 0;
+        for (String raw : script.split("\n")) {
+            String line = raw.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            switch (parts[0]) {
+                case "seed" -> seed = Long.parseLong(parts[1]);
+                case "route" -> {
+                    Route route = new Route(parts[1], seed);
+                    for (int i = 2; i < parts.length; i++) {
+                        applyOption(route, parts[i]);
+                    }
+                    routes.add(route);
+                }
+                default -> throw new IllegalArgumentException("Unknown script line: " + line);
+            }
+        }
+        routes.sort((a, b) -> Integer.compare(b.prefix.length(), a.prefix.length()));
+    }
+
+    private static void applyOption(Route route, String option) {
+        int equals = option.indexOf('=');
+        if (equals < 0) {
+            throw new IllegalArgumentException("Expected key=value: " + option);
+        }
+        String value = option.substring(equals + 1);
+        switch (option.substring(0, equals)) {
+            case "latency" -> {
+                route.latency = value;
+                planDelay(route, new Random(0));
+            }
+            case "bandwidth" -> route.bandwidth = parseBytes(value);
+            case "reset" -> route.reset = Double.parseDouble(value);
+            case "partial" -> route.partial = Double.parseDouble(value);
+            case "burst" -> {
+                Matcher matcher = BURST.matcher(value);
+                if (!matcher.matches()) {
+                    throw new IllegalArgumentException("Expected burst=<status>x<n>/<every>: " + value);
+                }
+                route.burstStatus = Integer.parseInt(matcher.group(1));
+                route.burstLength = Integer.parseInt(matcher.group(2));
+                route.burstEvery = Integer.parseInt(matcher.group(3));
+            }
+            default -> throw new IllegalArgumentException("Unknown option: " + option);
+        }
+    }
+
+    /** Draws one delay. Also called while loading, so a bad spec fails with the script. */
+    private static long planDelay(Route route, Random random) {
+        String spec = route.latency;
+        if (spec.equals("hang")) {
+            return HANG_MILLIS;
+        }
+        if (spec.startsWith("lognormal:")) {
+            String[] parts = spec.split(":");
+            double median = parseMillis(parts[1]);
+            double sigma = Double.parseDouble(parts[2]);
+            return Math.round(median * Math.exp(sigma * random.nextGaussian()));
+        }
+        int range = spec.indexOf("..");
+        if (range >= 0) {
+            long low = parseMillis(spec.substring(0, range));
+            long high = parseMillis(spec.substring(range + 2));
+            return low + (long) (random.nextDouble() * (high - low));
+        }
+        return parseMillis(spec);
+    }
+
+    private static long parseMillis(String value) {
+        Matcher matcher = DURATION.matcher(value);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Expected a duration like 120ms or 2s: " + value);
+        }
+        double amount = Double.parseDouble(matcher.group(1));
+        return Math.round(matcher.group(2).equals("s") ? amount * 1000 : amount);
+    }
+
+    private static long parseBytes(String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        long scale = lower.endsWith("k") ? 1024 : lower.endsWith("m") ? 1024 * 1024 : 1;
+        String digits = scale == 1 ? lower : lower.substring(0, lower.length() - 1);
+        return Long.parseLong(digits) * scale;
+    }
+
+    private Plan plan(Route route) {
+        if (route == null) {
+            return new Plan(0, false, false, 0);
+        }
+        synchronized (route) {
+            long index = route.requests++;
+            long delay = planDelay(route, route.random);
+            boolean reset = route.random.nextDouble() < route.reset;
+            boolean partial = route.random.nextDouble() < route.partial;
+            int status = route.burstEvery > 0 && index % route.burstEvery < route.burstLength ? route.burstStatus : 0;
+            return new Plan(delay, reset, partial, status);
+        }
+    }
+
+    private Route routeFor(String path) {
+        for (Route route : routes) {
+            if (path.startsWith(route.prefix)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            Route route = routeFor(path);
+            served.merge(route == null ? path : route.prefix, 1L, Long::sum);
+            Plan plan = plan(route);
+            if (closed.await(plan.delayMillis(), TimeUnit.MILLISECONDS) || plan.reset()) {
+                // Closing before the headers drops the connection; the client sees it reset.
+                return;
+            }
+            if (plan.status() != 0) {
+                exchange.sendResponseHeaders(plan.status(), -1);
+                return;
+            }
+            Canned response = upstream == null ? canned.get(path) : fetchUpstream(exchange);
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            exchange.sendResponseHeaders(response.status(), response.body().length == 0 ? -1 : response.body().length);
+            int length = plan.partial() ? response.body().length / 2 : response.body().length;
+            write(exchange.getResponseBody(), response.body(), length, route == null ? 0 : route.bandwidth);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Canned fetchUpstream(HttpExchange exchange) throws IOException, InterruptedException {
+        URI target = upstream.resolve(exchange.getRequestURI().toString());
+        HttpRequest.Builder request = HttpRequest.newBuilder(target);
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        request.method(exchange.getRequestMethod(), body.length == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body));
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null) {
+            request.header("Accept", accept);
+        }
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        return new Canned(response.statusCode(), response.headers().firstValue("Content-Type").orElse("application/json"), response.body());
+    }
+
+    /** Writes {@code length} bytes, paced to {@code bytesPerSecond} when that is set. */
+    private void write(OutputStream out, byte[] body, int length, long bytesPerSecond) throws IOException, InterruptedException {
+        int slice = bytesPerSecond > 0 ? (int) Math.max(1, bytesPerSecond / WRITE_SLICES_PER_SECOND) : length;
+        for (int offset = 0; offset < length; offset += slice) {
+            out.write(body, offset, Math.min(slice, length - offset));
+            out.flush();
+            if (bytesPerSecond > 0 && closed.await(1000 / WRITE_SLICES_PER_SECOND, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+}
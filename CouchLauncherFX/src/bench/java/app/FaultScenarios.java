@@ -0,0 +1,343 @@
+package app;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@link HttpRepo} against {@link FaultProxy} scripts and checks tail latency and fallback
+ * behaviour on {@code /bootstrap}, where the launcher gets its catalog: a hung origin still
+ * reaches the cached hub through {@link CatalogCache} in time, 5xx bursts and dropped
+ * connections are retried through, truncated bodies never turn into short catalogs, and jittery
+ * latency does not cause false timeouts. Servers without {@code /bootstrap} get the individual
+ * requests within the same deadline, and a streamed catalog arrives in batches. Prints one JSON object per scenario and exits with
+ * status 1 if any check failed:
+ * <pre>
+ *   ./gradlew faultScenarios -PbenchArgs="--seed 7"
+ * </pre>
+ */
+public final class FaultScenarios {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String JSON = "application/json";
+    private static final int TILES = 200;
+    // the cached hub should follow the first-load deadline closely
+    private static final long CACHED_HUB_TARGET_MILLIS = CatalogCache.FIRST_LOAD_TIMEOUT.toMillis() + 500;
+    private static final long STARTUP_ROUTE_TARGET_MILLIS = CatalogCache.LOAD_TIMEOUT.toMillis() + 500;
+
+    private FaultScenarios() {
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        Map<String, Object> run(long seed) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("hung-origin-cached-hub", FaultScenarios::hungOrigin);
+        scenarios.put("5xx-burst-retried", FaultScenarios::serverErrorBurst);
+        scenarios.put("resets-and-truncation", FaultScenarios::resetsAndTruncation);
+        scenarios.put("jitter-no-false-timeouts", FaultScenarios::jitter);
+        scenarios.put("slow-link-body", FaultScenarios::slowLink);
+        scenarios.put("old-server-parallel-fallback", FaultScenarios::oldServerFallback);
+        scenarios.put("old-server-hung-charts", FaultScenarios::oldServerHungCharts);
+        scenarios.put("ndjson-batches", FaultScenarios::ndjsonBatches);
+
+        boolean allPassed = true;
+        for (Map.Entry<String, Scenario> scenario : scenarios.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("scenario", scenario.getKey());
+            row.put("seed", seed);
+            try {
+                row.putAll(scenario.getValue().run(seed));
+            } catch (Exception ex) {
+                row.put("passed", false);
+                row.put("error", ex.toString());
+            }
+            allPassed &= Boolean.TRUE.equals(row.get("passed"));
+            System.out.println(MAPPER.writeValueAsString(row));
+        }
+        System.exit(allPassed ? 0 : 1);
+    }
+
+    /**
+     * The origin accepts the connection and never answers. The startup route gives up within its
+     * deadline, and the hub's first load falls back to the catalog cached on an earlier run.
+     */
+    private static Map<String, Object> hungOrigin(long seed) throws Exception {
+        CatalogCache cache = new CatalogCache(Files.createTempDirectory("fault-scenarios").resolve("apps_cache.json"));
+        try (FaultProxy healthy = FaultProxy.standIn("seed " + seed + "\n").respond("/bootstrap", JSON, bootstrapJson(TILES))) {
+            cache.load(healthy.baseUrl(), null, null, CatalogCache.FIRST_LOAD_TIMEOUT, null, ex -> { });
+        }
+        try (FaultProxy proxy = FaultProxy.standIn("seed " + seed + "\nroute /bootstrap latency=hang\n")) {
+            long started = System.nanoTime();
+            boolean startupFailed = false;
+            try {
+                HttpRepo.bootstrap(proxy.baseUrl(), null, null, CatalogCache.LOAD_TIMEOUT);
+            } catch (Exception expected) {
+                startupFailed = true;
+            }
+            long startupMillis = (System.nanoTime() - started) / 1_000_000;
+
+            started = System.nanoTime();
+            boolean[] reported = new boolean[1];
+            CatalogCache.Loaded hub = cache.load(proxy.baseUrl(), null, null, CatalogCache.FIRST_LOAD_TIMEOUT, null,
+                    ex -> reported[0] = true);
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("startup_route_ms", startupMillis);
+            row.put("startup_target_ms", STARTUP_ROUTE_TARGET_MILLIS);
+            row.put("time_to_cached_hub_ms", millis);
+            row.put("target_ms", CACHED_HUB_TARGET_MILLIS);
+            row.put("passed", startupFailed && startupMillis <= STARTUP_ROUTE_TARGET_MILLIS
+                    && reported[0] && hub.fromCache() && hub.tiles().size() == TILES
+                    && millis <= CACHED_HUB_TARGET_MILLIS);
+            return row;
+        }
+    }
+
+    /** Two 503s out of every ten requests; every bootstrap should still succeed through retries. */
+    private static Map<String, Object> serverErrorBurst(long seed) throws Exception {
+        String script = "seed " + seed + "\nroute /bootstrap latency=lognormal:20ms:0.4 burst=503x2/10\n";
+        try (FaultProxy proxy = FaultProxy.standIn(script).respond("/bootstrap", JSON, bootstrapJson(TILES))) {
+            long[] micros = new long[40];
+            int succeeded = 0;
+            for (int i = 0; i < micros.length; i++) {
+                long started = System.nanoTime();
+                try {
+                    if (HttpRepo.bootstrap(proxy.baseUrl(), null, null, CatalogCache.LOAD_TIMEOUT).catalog().tiles().size() == TILES) {
+                        succeeded++;
+                    }
+                } catch (Exception ignored) {
+                    // counted as a failure below
+                }
+                micros[i] = (System.nanoTime() - started) / 1000L;
+            }
+            Map<String, Object> row = latencyRow(micros);
+            row.put("requests_served", proxy.requests("/bootstrap"));
+            row.put("succeeded", succeeded);
+            row.put("passed", succeeded == micros.length);
+            return row;
+        }
+    }
+
+    /** Dropped connections and half-sent bodies must fail loudly or be retried, never parse short. */
+    private static Map<String, Object> resetsAndTruncation(long seed) throws Exception {
+        String script = "seed " + seed + "\nroute /bootstrap reset=0.15 partial=0.15\n";
+        try (FaultProxy proxy = FaultProxy.standIn(script).respond("/bootstrap", JSON, bootstrapJson(TILES))) {
+            int calls = 60;
+            int succeeded = 0;
+            int shortCatalogs = 0;
+            for (int i = 0; i < calls; i++) {
+                try {
+                    int size = HttpRepo.bootstrap(proxy.baseUrl(), null, null, CatalogCache.LOAD_TIMEOUT).catalog().tiles().size();
+                    if (size == TILES) {
+                        succeeded++;
+                    } else {
+                        shortCatalogs++;
+                    }
+                } catch (Exception ignored) {
+                    // all retries faulted; surfacing that is the correct outcome
+                }
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("calls", calls);
+            row.put("requests_served", proxy.requests("/bootstrap"));
+            row.put("succeeded", succeeded);
+            row.put("short_catalogs", shortCatalogs);
+            row.put("passed", shortCatalogs == 0 && succeeded >= calls * 9 / 10);
+            return row;
+        }
+    }
+
+    /** Heavy-tailed but healthy latency; adaptive timeouts must not cut any of it off. */
+    private static Map<String, Object> jitter(long seed) throws Exception {
+        String script = "seed " + seed + "\nroute /users/exists latency=lognormal:40ms:0.6\n";
+        byte[] body = "{\"has_users\":true}".getBytes(StandardCharsets.UTF_8);
+        try (FaultProxy proxy = FaultProxy.standIn(script).respond("/users/exists", JSON, body)) {
+            long timeoutsBefore = Metrics.counter("http.timeout.users.exists").get();
+            long[] micros = new long[200];
+            for (int i = 0; i < micros.length; i++) {
+                long started = System.nanoTime();
+                HttpRepo.fetchUserPresence(proxy.baseUrl());
+                micros[i] = (System.nanoTime() - started) / 1000L;
+            }
+            long timeouts = Metrics.counter("http.timeout.users.exists").get() - timeoutsBefore;
+            Map<String, Object> row = latencyRow(micros);
+            row.put("timeouts", timeouts);
+            row.put("passed", timeouts == 0);
+            return row;
+        }
+    }
+
+    /** A slow link stretches the body, not the wait for headers, so the timeout must not fire. */
+    private static Map<String, Object> slowLink(long seed) throws Exception {
+        byte[] bootstrap = bootstrapJson(TILES);
+        String script = "seed " + seed + "\nroute /bootstrap latency=30ms bandwidth=32k\n";
+        try (FaultProxy proxy = FaultProxy.standIn(script).respond("/bootstrap", JSON, bootstrap)) {
+            long started = System.nanoTime();
+            int tiles = HttpRepo.bootstrap(proxy.baseUrl(), null, null, CatalogCache.FIRST_LOAD_TIMEOUT).catalog().tiles().size();
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("body_bytes", bootstrap.length);
+            row.put("load_ms", millis);
+            row.put("passed", tiles == TILES);
+            return row;
+        }
+    }
+
+    /**
+     * A server from before {@code /bootstrap} answers it with 404. The launcher falls back to
+     * charts, library and presence, merges ownership itself, and does not ask again.
+     */
+    private static Map<String, Object> oldServerFallback(long seed) throws Exception {
+        List<AppTile> catalog = CatalogGenerator.generate(TILES, 42);
+        try (FaultProxy proxy = FaultProxy.standIn("seed " + seed + "\nroute /charts latency=20ms\n")
+                .respond("/charts/top10", JSON, appsJson(catalog))
+                .respond("/users/exists", JSON, "{\"has_users\":true}".getBytes(StandardCharsets.UTF_8))
+                .respond("/users/7/library", JSON, evenGamesLibrary(catalog))) {
+            HttpRepo.Bootstrap first = HttpRepo.bootstrap(proxy.baseUrl(), 7, 3, CatalogCache.LOAD_TIMEOUT);
+            HttpRepo.Bootstrap second = HttpRepo.bootstrap(proxy.baseUrl(), 7, 3, CatalogCache.LOAD_TIMEOUT);
+            long misowned = 0;
+            for (AppTile tile : first.catalog().tiles()) {
+                if (tile.owned != (tile.gameId % 2 == 0)) {
+                    misowned++;
+                }
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("bootstrap_requests", proxy.requests("/bootstrap"));
+            row.put("charts_requests", proxy.requests("/charts"));
+            row.put("misowned", misowned);
+            row.put("passed", first.catalog().tiles().size() == TILES
+                    && second.catalog().tiles().size() == TILES
+                    && first.presence().hasUsers()
+                    && misowned == 0
+                    && proxy.requests("/bootstrap") == 1
+                    && proxy.requests("/charts") == 2);
+            return row;
+        }
+    }
+
+    /** The fallback is held to the caller's deadline too: a 405 and a hung chart still fail in time. */
+    private static Map<String, Object> oldServerHungCharts(long seed) throws Exception {
+        String script = "seed " + seed + "\nroute /bootstrap burst=405x1/1\nroute /charts latency=hang\n";
+        try (FaultProxy proxy = FaultProxy.standIn(script)
+                .respond("/users/exists", JSON, "{\"has_users\":true}".getBytes(StandardCharsets.UTF_8))) {
+            long started = System.nanoTime();
+            boolean failed = false;
+            try {
+                HttpRepo.bootstrap(proxy.baseUrl(), null, null, CatalogCache.FIRST_LOAD_TIMEOUT);
+            } catch (Exception expected) {
+                failed = true;
+            }
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("load_ms", millis);
+            row.put("target_ms", CACHED_HUB_TARGET_MILLIS);
+            row.put("passed", failed && millis <= CACHED_HUB_TARGET_MILLIS && proxy.requests("/bootstrap") == 1);
+            return row;
+        }
+    }
+
+    /**
+     * A streamed {@code /bootstrap} over a slow link: tiles reach {@code onBatch} in several
+     * batches, in server order, and the first batch lands well before the body is done.
+     */
+    private static Map<String, Object> ndjsonBatches(long seed) throws Exception {
+        List<AppTile> catalog = CatalogGenerator.generate(TILES, 42);
+        String script = "seed " + seed + "\nroute /bootstrap bandwidth=64k\n";
+        try (FaultProxy proxy = FaultProxy.standIn(script).respond("/bootstrap", "application/x-ndjson", bootstrapNdjson(catalog))) {
+            List<List<AppTile>> batches = new ArrayList<>();
+            long[] firstBatchNanos = new long[1];
+            long started = System.nanoTime();
+            HttpRepo.Bootstrap result = HttpRepo.bootstrap(proxy.baseUrl(), null, null, CatalogCache.LOAD_TIMEOUT, batch -> {
+                if (batches.isEmpty()) {
+                    firstBatchNanos[0] = System.nanoTime() - started;
+                }
+                batches.add(batch);
+            });
+            long totalNanos = System.nanoTime() - started;
+            List<String> delivered = new ArrayList<>();
+            for (List<AppTile> batch : batches) {
+                batch.forEach(tile -> delivered.add(tile.id));
+            }
+            List<String> expected = catalog.stream().map(tile -> tile.id).toList();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("batches", batches.size());
+            row.put("first_batch_ms", firstBatchNanos[0] / 1_000_000);
+            row.put("load_ms", totalNanos / 1_000_000);
+            row.put("passed", result.catalog().tiles().size() == TILES
+                    && batches.size() > 1
+                    && delivered.equals(expected)
+                    && firstBatchNanos[0] < totalNanos / 2);
+            return row;
+        }
+    }
+
+    private static Map<String, Object> latencyRow(long[] micros) {
+        long[] sorted = micros.clone();
+        Arrays.sort(sorted);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("requests", sorted.length);
+        row.put("p50_ms", sorted[sorted.length / 2] / 1000.0);
+        row.put("p99_ms", sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1000.0);
+        row.put("max_ms", sorted[sorted.length - 1] / 1000.0);
+        return row;
+    }
+
+    /** A {@code /bootstrap} body in the plain JSON shape, as servers send it without NDJSON. */
+    private static byte[] bootstrapJson(int count) throws Exception {
+        String apps = new String(appsJson(CatalogGenerator.generate(count, 42)), StandardCharsets.UTF_8);
+        return ("{\"has_users\":true,\"apps\":" + apps + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** A streamed {@code /bootstrap} body: a header line, then one tile per line. */
+    private static byte[] bootstrapNdjson(List<AppTile> tiles) throws Exception {
+        StringBuilder body = new StringBuilder("{\"has_users\":true}\n");
+        for (JsonNode tile : MAPPER.readTree(appsJson(tiles))) {
+            body.append(MAPPER.writeValueAsString(tile)).append('\n');
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] appsJson(List<AppTile> tiles) throws Exception {
+        ByteArrayOutputStream apps = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(apps, StandardCharsets.UTF_8)) {
+            HttpRepo.writeApps(tiles, writer);
+        }
+        return apps.toByteArray();
+    }
+
+    /** A library owning every game with an even id, in the shape couchserver returns. */
+    private static byte[] evenGamesLibrary(List<AppTile> tiles) throws Exception {
+        ArrayNode library = MAPPER.createArrayNode();
+        for (AppTile tile : tiles) {
+            if (tile.gameId % 2 == 0) {
+                ObjectNode entry = library.addObject();
+                entry.putObject("game").put("id", tile.gameId);
+                entry.put("install_ready", true);
+            }
+        }
+        return MAPPER.writeValueAsBytes(library);
+    }
+}
@@ -0,0 +1,150 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a recorded pad through {@link GamepadInput#replay} and checks the actions it turns
+ * into: their order, that a stick wobbling inside the dead zone's hysteresis band neither
+ * releases nor presses again, and that a held D-pad repeats on the recording's clock. Prints one
+ * JSON object per scenario and exits with status 1 if any check failed:
+ * <pre>
+ *   ./gradlew gamepadScenarios
+ * </pre>
+ *
+ * <p>{@code gamepad-recording.bin} holds raw {@code input_event} structs as
+ * {@code cat /dev/input/eventN} writes them on a 64-bit little-endian console, starting at
+ * {@link #START_SECONDS}: A tapped, the left stick pushed right then wobbling around the dead
+ * zone, the D-pad held down for 750 ms, a hat tap left, Start, B, and the stick pushed up.
+ */
+public final class GamepadScenarios {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String RECORDING = "gamepad-recording.bin";
+    private static final long START_SECONDS = 1_700_000_000L;
+
+    /** One translated action, with its time in milliseconds since the recording started. */
+    private record Fired(GamepadInput.Action action, long millis) {
+        @Override
+        public String toString() {
+            return action + "@" + millis;
+        }
+    }
+
+    private GamepadScenarios() {
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        Map<String, Object> run(List<Fired> fired);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("replayed-actions", GamepadScenarios::replayedActions);
+        scenarios.put("dead-zone-hysteresis", GamepadScenarios::deadZoneHysteresis);
+        scenarios.put("repeats-on-recorded-clock", GamepadScenarios::repeatsOnRecordedClock);
+
+        boolean allPassed = true;
+        for (Map.Entry<String, Scenario> scenario : scenarios.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("scenario", scenario.getKey());
+            try {
+                row.putAll(scenario.getValue().run(replay()));
+            } catch (Exception ex) {
+                row.put("passed", false);
+                row.put("error", ex.toString());
+            }
+            allPassed &= Boolean.TRUE.equals(row.get("passed"));
+            System.out.println(MAPPER.writeValueAsString(row));
+        }
+        System.exit(allPassed ? 0 : 1);
+    }
+
+    /** Every press in the recording, plus the repeats of the held D-pad, in the order they happened. */
+    private static Map<String, Object> replayedActions(List<Fired> fired) {
+        List<Fired> expected = List.of(
+                new Fired(GamepadInput.Action.ACTIVATE, 0),
+                new Fired(GamepadInput.Action.RIGHT, 1000),
+                new Fired(GamepadInput.Action.DOWN, 2000),
+                new Fired(GamepadInput.Action.DOWN, 2400),
+                new Fired(GamepadInput.Action.DOWN, 2520),
+                new Fired(GamepadInput.Action.DOWN, 2640),
+                new Fired(GamepadInput.Action.LEFT, 3000),
+                new Fired(GamepadInput.Action.MENU, 4000),
+                new Fired(GamepadInput.Action.BACK, 4500),
+                new Fired(GamepadInput.Action.UP, 5000));
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("actions", fired.stream().map(Fired::toString).toList());
+        row.put("passed", fired.equals(expected));
+        return row;
+    }
+
+    /**
+     * Between 1.0 s and 1.3 s the stick goes to 0.61, wobbles between 0.46 and 0.52, drops to
+     * 0.31 and comes back to 0.46. With a 0.5 dead zone that is one press and no second one:
+     * 0.46 is inside the band that neither presses nor releases.
+     */
+    private static Map<String, Object> deadZoneHysteresis(List<Fired> fired) {
+        List<Fired> stick = fired.stream().filter(f -> f.millis() >= 1000 && f.millis() < 2000).toList();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("actions", stick.stream().map(Fired::toString).toList());
+        row.put("passed", stick.equals(List.of(new Fired(GamepadInput.Action.RIGHT, 1000))));
+        return row;
+    }
+
+    /**
+     * The D-pad is held from 2.0 s to 2.75 s while the kernel's own autorepeat arrives at other
+     * times. Repeats follow the configured delay and interval from the recorded press, not the
+     * kernel's events and not the wall clock, and stop at the release.
+     */
+    private static Map<String, Object> repeatsOnRecordedClock(List<Fired> fired) {
+        GamepadInput.Config config = GamepadInput.Config.DEFAULT;
+        long delay = config.repeatDelay().toMillis();
+        long interval = config.repeatInterval().toMillis();
+        List<Long> expected = new ArrayList<>();
+        expected.add(2000L);
+        for (long at = 2000 + delay; at < 2750; at += interval) {
+            expected.add(at);
+        }
+        List<Long> down = fired.stream()
+                .filter(f -> f.action() == GamepadInput.Action.DOWN)
+                .map(Fired::millis)
+                .toList();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("down_ms", down);
+        row.put("expected_ms", expected);
+        row.put("passed", down.equals(expected));
+        return row;
+    }
+
+    private static List<Fired> replay() throws Exception {
+        if (GamepadInput.EVENT_SIZE != 24 || ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalStateException("The recording is in the 64-bit little-endian input_event layout");
+        }
+        Path recording = Files.createTempFile("gamepad-recording", ".bin");
+        try (InputStream in = GamepadScenarios.class.getResourceAsStream(RECORDING)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing bench resource " + RECORDING);
+            }
+            Files.copy(in, recording, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            List<Fired> fired = new ArrayList<>();
+            GamepadInput.replay(recording, GamepadInput.Config.DEFAULT, (action, eventTimeMicros) ->
+                    fired.add(new Fired(action, eventTimeMicros / 1000 - START_SECONDS * 1000)));
+            return fired;
+        } finally {
+            Files.deleteIfExists(recording);
+        }
+    }
+}
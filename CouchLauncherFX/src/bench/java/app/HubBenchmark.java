@@ -0,0 +1,206 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * How the hub scales with the catalog. For each size, a {@link CatalogGenerator} catalog is shown
+ * in the real {@code HubPane} on a headless JavaFX stage. The benchmark times rebuilds
+ * ({@code displayTiles}), tab switches and scroll steps, then checks what the heap keeps after
+ * repeated rebuilds. Every measurement includes the CSS and layout pass it causes; scroll steps
+ * also render the frame.
+ *
+ * <p>Prints one JSON object per line:
+ * <pre>
+ *   ./gradlew hubBenchmark -PbenchArgs="--sizes 10,1000,10000 --rounds 30"
+ * </pre>
+ */
+public final class HubBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] TABS = {"gaming", "tv", "home"};
+    private static final int SCROLL_STEPS = 20;
+    private static final int PLAYED_TILES = 40;
+
+    private HubBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10, 100, 1000, 10000};
+        int rounds = 20;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--rounds" -> rounds = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        // Main keeps its config and play history under user.home; keep the run away from the real ones.
+        System.setProperty("user.home", Files.createTempDirectory("hub-benchmark").toString());
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+        Main.HubHarness hub = onFx(() -> new Main().hubHarness());
+        Scene scene = onFx(() -> {
+            Scene created = new Scene(new StackPane(hub.node()), 1280, 800);
+            created.getStylesheets().add(Objects.requireNonNull(Main.class.getResource("/application.css")).toExternalForm());
+            Stage stage = new Stage();
+            stage.setScene(created);
+            stage.show();
+            return created;
+        });
+        WritableImage frame = new WritableImage(1280, 800);
+
+        for (int size : sizes) {
+            List<AppTile> catalog = CatalogGenerator.generate(size, seed);
+            onFx(() -> {
+                for (int i = 0; i < Math.min(PLAYED_TILES, catalog.size()); i += 2) {
+                    hub.recordLaunch(catalog.get(i).id);
+                }
+                hub.displayTiles(catalog);
+                return null;
+            });
+
+            long[] rebuild = new long[rounds];
+            for (int i = 0; i < rounds; i++) {
+                rebuild[i] = timeOnFx(scene, () -> hub.displayTiles(catalog));
+            }
+            Map<String, Object> rebuildRow = row("display-tiles", size, rebuild);
+            rebuildRow.put("tile_nodes", onFx(() -> hub.tileButtons().size()));
+            print(rebuildRow);
+
+            long[] tabs = new long[rounds];
+            for (int i = 0; i < rounds; i++) {
+                String tab = TABS[i % TABS.length];
+                tabs[i] = timeOnFx(scene, () -> hub.selectTab(tab));
+            }
+            onFx(() -> {
+                hub.selectTab("home");
+                return null;
+            });
+            print(row("tab-switch", size, tabs));
+
+            ScrollPane scroller = onFx(() -> (ScrollPane) hub.node().lookup(".hub-scroll"));
+            long[] scroll = new long[SCROLL_STEPS * 2];
+            for (int i = 0; i < scroll.length; i++) {
+                // there and back again, one step per frame
+                double position = (double) (i < SCROLL_STEPS ? i + 1 : scroll.length - i - 1) / SCROLL_STEPS;
+                scroll[i] = timeOnFx(scene, () -> {
+                    scroller.setHvalue(position);
+                    // lays out and renders the scene into the image
+                    scene.snapshot(frame);
+                });
+            }
+            print(row("scroll-frame", size, scroll));
+
+            print(memoryRow(hub, catalog, rounds));
+        }
+        Platform.exit();
+        System.exit(0);
+    }
+
+    /**
+     * Heap after collection with the catalog shown, its growth over {@code rounds} more rebuilds,
+     * and how many buttons from before those rebuilds are still reachable. The buttons should
+     * all be gone.
+     */
+    private static Map<String, Object> memoryRow(Main.HubHarness hub, List<AppTile> catalog, int rounds) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        List<WeakReference<Button>> previous = onFx(() -> {
+            List<WeakReference<Button>> refs = new ArrayList<>();
+            for (Button button : hub.tileButtons()) {
+                refs.add(new WeakReference<>(button));
+            }
+            return refs;
+        });
+        long before = heapAfterGc(memory);
+        for (int i = 0; i < rounds; i++) {
+            onFx(() -> {
+                hub.displayTiles(catalog);
+                return null;
+            });
+        }
+        long after = heapAfterGc(memory);
+        long leaked = previous.stream().filter(ref -> ref.get() != null).count();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("benchmark", "memory");
+        row.put("tiles", catalog.size());
+        row.put("heap_used_kb", after / 1024);
+        row.put("growth_kb", (after - before) / 1024);
+        row.put("leaked_tile_nodes", leaked);
+        return row;
+    }
+
+    private static long heapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /** Runs {@code work} and the CSS and layout pass it causes on the FX thread, in microseconds. */
+    private static long timeOnFx(Scene scene, Runnable work) throws Exception {
+        return onFx(() -> {
+            long start = System.nanoTime();
+            work.run();
+            Parent root = scene.getRoot();
+            root.applyCss();
+            root.layout();
+            return (System.nanoTime() - start) / 1000L;
+        });
+    }
+
+    private static <T> T onFx(Callable<T> work) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(work.call());
+            } catch (Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        return result.get();
+    }
+
+    private static Map<String, Object> row(String benchmark, int tiles, long[] micros) {
+        long[] sorted = micros.clone();
+        Arrays.sort(sorted);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("benchmark", benchmark);
+        row.put("tiles", tiles);
+        row.put("samples", sorted.length);
+        row.put("p50_micros", sorted[sorted.length / 2]);
+        row.put("p99_micros", sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)]);
+        row.put("max_micros", sorted[sorted.length - 1]);
+        return row;
+    }
+
+    private static void print(Map<String, Object> row) throws Exception {
+        System.out.println(MAPPER.writeValueAsString(row));
+    }
+}
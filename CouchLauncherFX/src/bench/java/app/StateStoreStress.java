@@ -0,0 +1,274 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hammers {@link StateStore} from many writers while one thread plays the FX pulse, and checks
+ * that no compare-and-set update is lost, that listeners see an unbroken chain of coalesced
+ * {@code (previous, current)} changes ending at the final state, and that a wake-up is never
+ * dropped. Prints one JSON object per scenario and exits with status 1 if any check failed:
+ * <pre>
+ *   ./gradlew stateStoreStress -PbenchArgs="--writers 16 --updates 200000"
+ * </pre>
+ */
+public final class StateStoreStress {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long SETTLE_MILLIS = 5_000;
+
+    /** One counter per writer, so a lost update shows up as a short count for that writer. */
+    private record Tally(long[] perWriter, long total) {
+        Tally increment(int writer) {
+            long[] next = perWriter.clone();
+            next[writer]++;
+            return new Tally(next, total + 1);
+        }
+    }
+
+    private StateStoreStress() {
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        Map<String, Object> run(int writers, int updates) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int writers = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int updates = 100_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--writers" -> writers = Integer.parseInt(args[i + 1]);
+                case "--updates" -> updates = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("contended-updates", StateStoreStress::contendedUpdates);
+        scenarios.put("unchanged-publishes-nothing", StateStoreStress::unchangedPublishesNothing);
+        scenarios.put("launcher-state-reducers", StateStoreStress::launcherStateReducers);
+
+        boolean allPassed = true;
+        for (Map.Entry<String, Scenario> scenario : scenarios.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("scenario", scenario.getKey());
+            try {
+                row.putAll(scenario.getValue().run(writers, updates));
+            } catch (Exception ex) {
+                row.put("passed", false);
+                row.put("error", ex.toString());
+            }
+            allPassed &= Boolean.TRUE.equals(row.get("passed"));
+            System.out.println(MAPPER.writeValueAsString(row));
+        }
+        System.exit(allPassed ? 0 : 1);
+    }
+
+    /** Every writer's increments all land, and delivery follows them without gaps. */
+    private static Map<String, Object> contendedUpdates(int writers, int updates) throws Exception {
+        Pulse<Tally> pulse = new Pulse<>();
+        StateStore<Tally> store = new StateStore<>(new Tally(new long[writers], 0), pulse::wakeUp);
+        AtomicLong deliveries = new AtomicLong();
+        AtomicLong brokenChain = new AtomicLong();
+        AtomicLong wentBackwards = new AtomicLong();
+        AtomicReference<Tally> lastDelivered = new AtomicReference<>(store.get());
+        store.addListener((previous, current) -> {
+            deliveries.incrementAndGet();
+            if (previous != lastDelivered.get()) {
+                brokenChain.incrementAndGet();
+            }
+            if (current.total() <= previous.total()) {
+                wentBackwards.incrementAndGet();
+            }
+            lastDelivered.set(current);
+        });
+        pulse.start(store);
+
+        long retriesBefore = Metrics.counter("state.cas_retry").get();
+        long started = System.nanoTime();
+        runWriters(writers, writer -> {
+            for (int i = 0; i < updates; i++) {
+                store.update(tally -> tally.increment(writer));
+            }
+        });
+        long elapsedNanos = System.nanoTime() - started;
+        boolean settled = pulse.awaitDelivered(store);
+        pulse.stop();
+
+        Tally result = store.get();
+        long shortWriters = 0;
+        for (long count : result.perWriter()) {
+            if (count != updates) {
+                shortWriters++;
+            }
+        }
+        long expected = (long) writers * updates;
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("writers", writers);
+        row.put("updates", expected);
+        row.put("total", result.total());
+        row.put("short_writers", shortWriters);
+        row.put("cas_retries", Metrics.counter("state.cas_retry").get() - retriesBefore);
+        row.put("deliveries", deliveries.get());
+        row.put("broken_chain", brokenChain.get());
+        row.put("went_backwards", wentBackwards.get());
+        row.put("updates_per_ms", elapsedNanos > 0 ? expected * 1_000_000L / elapsedNanos : 0);
+        row.put("passed", result.total() == expected
+                && shortWriters == 0
+                && settled
+                && lastDelivered.get() == result
+                && brokenChain.get() == 0
+                && wentBackwards.get() == 0
+                && deliveries.get() <= expected);
+        return row;
+    }
+
+    /** Reducers that return their input publish nothing and never wake the UI. */
+    private static Map<String, Object> unchangedPublishesNothing(int writers, int updates) throws Exception {
+        AtomicLong wakeUps = new AtomicLong();
+        LauncherState initial = LauncherState.INITIAL;
+        StateStore<LauncherState> store = new StateStore<>(initial, wakeUps::incrementAndGet);
+        runWriters(writers, writer -> {
+            for (int i = 0; i < updates; i++) {
+                store.update(state -> state.withOffline(false).withSession(null));
+            }
+        });
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("wake_ups", wakeUps.get());
+        row.put("passed", wakeUps.get() == 0 && store.get() == initial);
+        return row;
+    }
+
+    /**
+     * The launcher's own reducers under contention: flags flipped by some writers while others
+     * patch tiles. The final catalog has every writer's last patch and the flags are consistent.
+     */
+    private static Map<String, Object> launcherStateReducers(int writers, int updates) throws Exception {
+        List<AppTile> catalog = new ArrayList<>(writers);
+        for (int i = 0; i < writers; i++) {
+            catalog.add(new AppTile("game-" + i, "Game " + i + " v0", "Game " + i));
+        }
+        Pulse<LauncherState> pulse = new Pulse<>();
+        StateStore<LauncherState> store = new StateStore<>(LauncherState.INITIAL.withCatalog(catalog, true), pulse::wakeUp);
+        AtomicLong sizeChanged = new AtomicLong();
+        store.addListener((previous, current) -> {
+            if (current.tiles().size() != writers) {
+                sizeChanged.incrementAndGet();
+            }
+        });
+        pulse.start(store);
+
+        int rounds = Math.max(1, updates / 10);
+        runWriters(writers, writer -> {
+            for (int i = 1; i <= rounds; i++) {
+                AppTile patch = new AppTile("game-" + writer, "Game " + writer + " v" + i, "Game " + writer);
+                store.update(state -> state.withTile(patch));
+                boolean offline = (i & 1) == 1;
+                store.update(state -> state.withOffline(offline).withControllerConnected(!offline));
+            }
+        });
+        boolean settled = pulse.awaitDelivered(store);
+        pulse.stop();
+
+        LauncherState result = store.get();
+        long stalePatches = 0;
+        for (int i = 0; i < writers; i++) {
+            if (!result.tiles().get(i).name.equals("Game " + i + " v" + rounds)) {
+                stalePatches++;
+            }
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("writers", writers);
+        row.put("rounds", rounds);
+        row.put("stale_patches", stalePatches);
+        row.put("passed", settled
+                && stalePatches == 0
+                && sizeChanged.get() == 0
+                && result.offline() != result.controllerConnected());
+        return row;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void run(int writer);
+    }
+
+    private static void runWriters(int writers, Writer body) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(writers);
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(Thread.ofPlatform().name("state-stress-" + w).start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                body.run(writer);
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Stands in for the FX pulse: one thread that calls {@link StateStore#deliver} only when the
+     * store has asked for it, so a dropped wake-up leaves the last change undelivered.
+     */
+    private static final class Pulse<S> {
+        private final Semaphore wakeUps = new Semaphore(0);
+        private final AtomicReference<S> delivered = new AtomicReference<>();
+        private Thread thread;
+
+        void wakeUp() {
+            wakeUps.release();
+        }
+
+        void start(StateStore<S> store) {
+            delivered.set(store.get());
+            store.addListener((previous, current) -> delivered.set(current));
+            thread = Thread.ofPlatform().name("state-stress-pulse").start(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        wakeUps.acquire();
+                        // let a few updates pile up, as they would between two frames
+                        wakeUps.drainPermits();
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                    store.deliver();
+                }
+            });
+        }
+
+        /** Whether the final state reached listeners without anyone calling deliver for it. */
+        boolean awaitDelivered(StateStore<S> store) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+            while (System.nanoTime() < deadline) {
+                if (delivered.get() == store.get()) {
+                    return true;
+                }
+                Thread.sleep(10);
+            }
+            return false;
+        }
+
+        void stop() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+}
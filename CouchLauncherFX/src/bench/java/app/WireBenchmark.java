@@ -0,0 +1,159 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and parse time for the catalog encodings {@link HttpRepo} negotiates. Runs
+ * against a synthetic catalog by default; with {@code --host} it also loads {@code /bootstrap}
+ * from a live couchserver and reports what actually crossed the network.
+ *
+ * <p>Prints one JSON object per line:
+ * <pre>
+ *   ./gradlew wireBenchmark -PbenchArgs="--tiles 2000 --rounds 30 --host http://192.168.5.12:8080"
+ * </pre>
+ */
+public final class WireBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private WireBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tiles = 500;
+        int rounds = 20;
+        String host = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tiles" -> tiles = Integer.parseInt(args[i + 1]);
+                case "--rounds" -> rounds = Integer.parseInt(args[i + 1]);
+                case "--host" -> host = args[i + 1];
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<AppTile> catalog = syntheticCatalog(tiles);
+        byte[] json = encode(catalog, false);
+        byte[] gzip = encode(catalog, true);
+        report("json", tiles, json.length, json.length, rounds, () -> parse(json, false));
+        report("json+gzip", tiles, gzip.length, json.length, rounds, () -> parse(gzip, true));
+        report("json-tree", tiles, json.length, json.length, rounds,
+                () -> HttpRepo.parseApps(new String(json, StandardCharsets.UTF_8)).size());
+
+        if (host != null) {
+            live(host, rounds);
+        }
+    }
+
+    private static List<AppTile> syntheticCatalog(int count) {
+        List<AppTile> tiles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tiles.add(new AppTile(
+                    "game-" + i,
+                    "Synthetic Game " + i,
+                    "Synthetic Game " + i,
+                    true,
+                    i + 1,
+                    i % 3 != 0,
+                    i % 2 == 0,
+                    i < 10 ? i + 1 : null,
+                    "2025-01-01",
+                    "A generated catalog entry used to size payloads, number " + i + ".",
+                    "https://covers.couchsuite.local/" + i + ".jpg",
+                    100_000 + i,
+                    i
+            ));
+        }
+        return tiles;
+    }
+
+    private static byte[] encode(List<AppTile> tiles, boolean gzip) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(gzip ? new GZIPOutputStream(bytes) : bytes, StandardCharsets.UTF_8)) {
+            HttpRepo.writeApps(tiles, writer);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int parse(byte[] body, boolean gzip) throws Exception {
+        InputStream in = new ByteArrayInputStream(body);
+        if (gzip) {
+            in = new GZIPInputStream(in, 8192);
+        }
+        return HttpRepo.readApps(new InputStreamReader(in, StandardCharsets.UTF_8)).size();
+    }
+
+    private static void live(String host, int rounds) throws Exception {
+        long[] wire = new long[rounds];
+        long[] decoded = new long[rounds];
+        long[] micros = new long[rounds];
+        int count = 0;
+        for (int i = 0; i < rounds; i++) {
+            long wireBefore = Metrics.counter("http.bytes_wire").get();
+            long decodedBefore = Metrics.counter("http.bytes_decoded").get();
+            long start = System.nanoTime();
+            count = HttpRepo.bootstrap(host, null, null, Duration.ofSeconds(10)).catalog().tiles().size();
+            micros[i] = (System.nanoTime() - start) / 1000L;
+            wire[i] = Metrics.counter("http.bytes_wire").get() - wireBefore;
+            decoded[i] = Metrics.counter("http.bytes_decoded").get() - decodedBefore;
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("format", "live-bootstrap");
+        row.put("host", host);
+        row.put("tiles", count);
+        row.put("wire_bytes", median(wire));
+        row.put("decoded_bytes", median(decoded));
+        row.put("load_micros_p50", median(micros));
+        System.out.println(MAPPER.writeValueAsString(row));
+    }
+
+    @FunctionalInterface
+    private interface Parse {
+        int run() throws Exception;
+    }
+
+    private static void report(String format, int tiles, long wireBytes, long decodedBytes, int rounds, Parse parse) throws Exception {
+        // Warm up the parser so the timed rounds measure steady state.
+        for (int i = 0; i < Math.max(5, rounds / 2); i++) {
+            parse.run();
+        }
+        long[] micros = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            if (parse.run() != tiles) {
+                throw new IllegalStateException(format + " parsed the wrong number of tiles");
+            }
+            micros[i] = (System.nanoTime() - start) / 1000L;
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("format", format);
+        row.put("tiles", tiles);
+        row.put("wire_bytes", wireBytes);
+        row.put("decoded_bytes", decodedBytes);
+        row.put("parse_micros_p50", median(micros));
+        row.put("parse_micros_max", Arrays.stream(micros).max().orElse(0));
+        System.out.println(MAPPER.writeValueAsString(row));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,118 @@
+package app;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request timeouts derived from observed latency. Every endpoint on every host keeps its last
+ * {@link #WINDOW} latencies to response headers. Its timeout is the window's p99 times
+ * {@link #HEADROOM}, clamped to the endpoint's {@link Policy}. Until {@link #MIN_SAMPLES}
+ * responses have been seen, the policy's initial timeout applies.
+ *
+ * <p>A request that times out enters the window at the timeout it was given, since its latency
+ * was at least that. The next attempt gets {@link #HEADROOM} times the room, up to the ceiling,
+ * instead of timing out again at the same value.
+ *
+ * <p>The timeout last handed out per endpoint is the gauge {@code http.timeout_ms.<endpoint>};
+ * latencies go to {@code http.latency.<endpoint>} and timeouts to {@code http.timeout.<endpoint>}.
+ */
+public final class AdaptiveTimeouts {
+
+    public record Policy(Duration floor, Duration initial, Duration ceiling) {
+        public static final Policy DEFAULT = new Policy(
+                Duration.ofMillis(750),
+                Duration.ofSeconds(6),
+                Duration.ofSeconds(15)
+        );
+    }
+
+    private static final int WINDOW = 64;
+    private static final int MIN_SAMPLES = 8;
+    private static final long HEADROOM = 3;
+
+    private final Policy defaultPolicy;
+    private final Map<String, Policy> policies;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> chosenMillis = new ConcurrentHashMap<>();
+
+    /** @param policies per-endpoint policies; other endpoints use {@code defaultPolicy} */
+    public AdaptiveTimeouts(Policy defaultPolicy, Map<String, Policy> policies) {
+        this.defaultPolicy = defaultPolicy;
+        this.policies = Map.copyOf(policies);
+    }
+
+    /**
+     * The timeout for the next request to {@code endpoint} on {@code target}'s host.
+     *
+     * @param cap a limit the caller imposes on top of the ceiling, or {@code null}
+     */
+    public Duration timeout(URI target, String endpoint, Duration cap) {
+        Policy policy = policies.getOrDefault(endpoint, defaultPolicy);
+        long ceiling = policy.ceiling().toMillis();
+        if (cap != null) {
+            ceiling = Math.min(ceiling, cap.toMillis());
+        }
+        long floor = Math.min(policy.floor().toMillis(), ceiling);
+        Window window = windows.get(key(target, endpoint));
+        long millis = window == null ? -1 : window.suggestedMillis();
+        if (millis < 0) {
+            millis = policy.initial().toMillis();
+        }
+        millis = Math.max(floor, Math.min(ceiling, millis));
+        chosenMillis.computeIfAbsent(endpoint, name -> {
+            AtomicLong chosen = new AtomicLong();
+            Metrics.gauge("http.timeout_ms." + name, chosen::get);
+            return chosen;
+        }).set(millis);
+        return Duration.ofMillis(millis);
+    }
+
+    /** Time from sending to response headers, which is what a request timeout bounds. */
+    public void recordLatency(URI target, String endpoint, long micros) {
+        Metrics.histogram("http.latency." + endpoint).record(micros);
+        window(target, endpoint).add(micros);
+    }
+
+    public void recordTimeout(URI target, String endpoint, Duration given) {
+        Metrics.increment("http.timeout." + endpoint);
+        window(target, endpoint).add(given.toNanos() / 1000L);
+    }
+
+    private Window window(URI target, String endpoint) {
+        return windows.computeIfAbsent(key(target, endpoint), key -> new Window());
+    }
+
+    private static String key(URI target, String endpoint) {
+        return target.getScheme() + "://" + target.getRawAuthority() + " " + endpoint;
+    }
+
+    private static final class Window {
+        // guarded by this
+        private final long[] micros = new long[WINDOW];
+        private int count;
+        private int next;
+        private long suggestedMillis = -1;
+
+        private synchronized void add(long value) {
+            micros[next] = value;
+            next = (next + 1) % WINDOW;
+            count = Math.min(WINDOW, count + 1);
+            if (count < MIN_SAMPLES) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(micros, count);
+            Arrays.sort(sorted);
+            long p99 = sorted[Math.min(count - 1, (int) Math.ceil(count * 0.99) - 1)];
+            suggestedMillis = Math.max(1, p99 * HEADROOM / 1000L);
+        }
+
+        /** -1 until the window has enough samples. */
+        private synchronized long suggestedMillis() {
+            return suggestedMillis;
+        }
+    }
+}
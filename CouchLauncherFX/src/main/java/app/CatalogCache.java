@@ -0,0 +1,86 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The last catalog the launcher got from couchserver, kept on disk so the hub can open without
+ * the server. {@link #load} is the hub's path to a catalog: the server while it answers in time,
+ * otherwise this copy.
+ */
+public final class CatalogCache {
+
+    /** Deadline for the hub's first catalog; the user is looking at a spinner and the cache is ready. */
+    public static final Duration FIRST_LOAD_TIMEOUT = Duration.ofSeconds(3);
+    /** Deadline for the startup route and for catalog refreshes. */
+    public static final Duration LOAD_TIMEOUT = Duration.ofSeconds(5);
+
+    /** @param presence {@code null} when the tiles came from the cache */
+    public record Loaded(List<AppTile> tiles, boolean fromCache, HttpRepo.UserPresence presence) {}
+
+    private final Path file;
+
+    public CatalogCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Bootstraps from {@code host} and keeps the catalog. If that fails, returns the cached
+     * catalog instead, or rethrows the failure when there is none.
+     *
+     * @param onFailure told about the failure before the cache is read
+     */
+    public Loaded load(String host, Integer userId, Integer orgId, Duration timeout,
+                       Consumer<List<AppTile>> onBatch, Consumer<Exception> onFailure) throws Exception {
+        try {
+            HttpRepo.Bootstrap bootstrap = HttpRepo.bootstrap(host, userId, orgId, timeout, onBatch);
+            List<AppTile> tiles = bootstrap.catalog().tiles();
+            save(tiles);
+            return new Loaded(tiles, false, bootstrap.presence());
+        } catch (InterruptedException interrupted) {
+            throw interrupted;
+        } catch (Exception ex) {
+            onFailure.accept(ex);
+            List<AppTile> cached = read();
+            if (cached != null) {
+                return new Loaded(cached, true, null);
+            }
+            throw ex;
+        }
+    }
+
+    public void save(List<AppTile> tiles) {
+        try {
+            Files.createDirectories(file.getParent());
+            // Written beside the cache and moved over it, so a crash never leaves half a file.
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                HttpRepo.writeApps(tiles, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Log.warn("cache", "Could not write catalog cache", ex, "file", file, "tiles", tiles.size());
+        }
+    }
+
+    /** The cached catalog, or {@code null} when there is none or it cannot be read. */
+    public List<AppTile> read() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return HttpRepo.readApps(reader);
+        } catch (Exception ex) {
+            Log.warn("cache", "Ignoring unreadable catalog cache", ex, "file", file);
+            return null;
+        }
+    }
+}
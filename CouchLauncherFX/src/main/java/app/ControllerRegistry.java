@@ -0,0 +1,330 @@
+package app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the set of connected controllers with stable ids, a coarse type, battery level where the
+ * kernel exposes one, and a player slot. The registry is fed incrementally from
+ * {@link ControllerService} hotplug events and publishes an immutable snapshot only when the set
+ * actually changes, so readers never allocate and idle consoles do no work.
+ *
+ * <p>Slots are sticky: a pad that drops and reconnects gets its previous slot back if nobody has
+ * taken it in the meantime.
+ */
+public final class ControllerRegistry {
+
+    public static final int MAX_PLAYERS = 4;
+    private static final Path POWER_SUPPLY = Path.of("/sys/class/power_supply");
+
+    public enum Type {
+        XBOX,
+        PLAYSTATION,
+        NINTENDO,
+        GENERIC
+    }
+
+    /**
+     * @param id stable identifier: the by-id device name or the Bluetooth address
+     * @param batteryPercent battery level, or {@code null} when the device reports none
+     */
+    public record Controller(String id, ControllerService.Source source, Type type, String label, int slot, Integer batteryPercent) {
+        public String playerLabel() {
+            return "P" + slot + " " + label;
+        }
+    }
+
+    private final Path powerSupplyRoot;
+    private final List<Consumer<List<Controller>>> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private final Map<String, Controller> devices = new LinkedHashMap<>();
+    private final Map<String, Integer> lastSlots = new HashMap<>();
+    // input node id -> Bluetooth address of the pad it was merged with
+    private final Map<String, String> pairedAddresses = new HashMap<>();
+
+    private volatile List<Controller> snapshot = List.of();
+    private volatile long version;
+
+    public ControllerRegistry(ControllerService controllerService) {
+        this(controllerService, POWER_SUPPLY);
+    }
+
+    public ControllerRegistry(ControllerService controllerService, Path powerSupplyRoot) {
+        this.powerSupplyRoot = powerSupplyRoot;
+        controllerService.addListener(this::onControllerEvent);
+    }
+
+    /**
+     * Subscribes to snapshot changes. The listener is called on the hotplug thread with the new
+     * snapshot and immediately with the current one.
+     */
+    public void addListener(Consumer<List<Controller>> listener) {
+        listeners.add(listener);
+        listener.accept(snapshot);
+    }
+
+    public void removeListener(Consumer<List<Controller>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the current immutable snapshot, ordered by player slot. The same instance is
+     * returned until the set changes.
+     */
+    public List<Controller> controllers() {
+        return snapshot;
+    }
+
+    /**
+     * Monotonic counter bumped on every change; cheap to compare for callers that poll.
+     */
+    public long version() {
+        return version;
+    }
+
+    public int playerCount() {
+        return snapshot.size();
+    }
+
+    /**
+     * Re-reads battery levels for connected devices; intended for an occasional UI refresh
+     * rather than the hotplug path.
+     */
+    public void refreshBattery() {
+        boolean changed = false;
+        synchronized (this) {
+            for (Map.Entry<String, Controller> entry : devices.entrySet()) {
+                Controller device = entry.getValue();
+                Integer battery = readBattery(device.id(), device.label());
+                if (battery == null ? device.batteryPercent() != null : !battery.equals(device.batteryPercent())) {
+                    entry.setValue(new Controller(device.id(), device.source(), device.type(), device.label(), device.slot(), battery));
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    void onControllerEvent(ControllerService.ControllerEvent event) {
+        if (event.source() == ControllerService.Source.OVERRIDE) {
+            return;
+        }
+        boolean changed;
+        synchronized (this) {
+            changed = event.connected() ? attach(event) : detach(event.device());
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    // caller holds this
+    private boolean attach(ControllerService.ControllerEvent event) {
+        if (devices.containsKey(event.device()) || ControllerService.isMotionSensor(event.device())) {
+            // Motion-sensor nodes belong to a pad that is already tracked through its joystick node.
+            return false;
+        }
+        String label = displayName(event);
+        // BlueZ and the kernel announce the same pad separately, in either order; it keeps one slot.
+        Controller twin = findTwin(event, label);
+        if (twin != null && event.source() == ControllerService.Source.BLUETOOTH) {
+            // The same pad is already tracked through its /dev/input node.
+            pairedAddresses.put(twin.id(), event.device());
+            return false;
+        }
+        int slot;
+        Integer battery;
+        if (twin != null) {
+            // Connected: yes came first; the input node takes over the Bluetooth entry's slot.
+            devices.remove(twin.id());
+            lastSlots.put(twin.id(), twin.slot());
+            pairedAddresses.put(event.device(), twin.id());
+            slot = twin.slot();
+            battery = twin.batteryPercent() != null ? twin.batteryPercent() : readBattery(event.device(), label);
+        } else {
+            slot = assignSlot(event.device());
+            battery = readBattery(event.device(), label);
+        }
+        devices.put(event.device(), new Controller(event.device(), event.source(), classify(label), label, slot, battery));
+        return true;
+    }
+
+    // caller holds this
+    private boolean detach(String id) {
+        Controller removed = devices.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        pairedAddresses.remove(id);
+        lastSlots.put(id, removed.slot());
+        return true;
+    }
+
+    // caller holds this
+    private int assignSlot(String id) {
+        boolean[] taken = new boolean[MAX_PLAYERS + 2];
+        for (Controller device : devices.values()) {
+            if (device.slot() < taken.length) {
+                taken[device.slot()] = true;
+            }
+        }
+        Integer previous = lastSlots.get(id);
+        if (previous != null && previous < taken.length && !taken[previous]) {
+            return previous;
+        }
+        for (int slot = 1; slot <= MAX_PLAYERS; slot++) {
+            if (!taken[slot]) {
+                return slot;
+            }
+        }
+        // More pads than players: park extras in a spectator slot.
+        return MAX_PLAYERS + 1;
+    }
+
+    // caller holds this
+    /**
+     * The tracked entry for the same pad from the other source. The pad's address inside the
+     * input device name decides when it is there. Otherwise the Bluetooth name appearing in the
+     * input device name does, but only when exactly one unmerged entry fits: two identical pads
+     * cannot be told apart by name, and guessing would swap their slots and batteries.
+     */
+    private Controller findTwin(ControllerService.ControllerEvent event, String label) {
+        boolean bluetooth = event.source() == ControllerService.Source.BLUETOOTH;
+        Controller named = null;
+        int namedCount = 0;
+        for (Controller device : devices.values()) {
+            if (device.source() == event.source()) {
+                continue;
+            }
+            String inputId = bluetooth ? device.id() : event.device();
+            String address = bluetooth ? event.device() : device.id();
+            String mac = hexDigits(address);
+            if (mac.length() == 12 && hexDigits(inputId).contains(mac)) {
+                return device;
+            }
+            String paired = pairedAddresses.get(inputId);
+            if (paired != null) {
+                // this input node is already merged with its own pad's entry
+                if (paired.equals(address)) {
+                    return device;
+                }
+                continue;
+            }
+            String inputLabel = bluetooth ? device.label() : label;
+            String needle = normalize(bluetooth ? label : device.label());
+            if (!needle.isEmpty() && normalize(inputLabel).contains(needle)) {
+                named = device;
+                namedCount++;
+            }
+        }
+        if (namedCount > 1) {
+            Log.debug("controller", "Several pads match by name; tracking separately", "device", event.device(), "matches", namedCount);
+        }
+        return namedCount == 1 ? named : null;
+    }
+
+    private void publish() {
+        List<Controller> next;
+        synchronized (this) {
+            List<Controller> ordered = new ArrayList<>(devices.values());
+            ordered.sort((left, right) -> Integer.compare(left.slot(), right.slot()));
+            next = List.copyOf(ordered);
+            snapshot = next;
+            version++;
+        }
+        for (Consumer<List<Controller>> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException ex) {
+                // a failing listener must not stop delivery to the others
+                Log.error("controller", "Controller registry listener failed", ex);
+            }
+        }
+    }
+
+    private Integer readBattery(String id, String label) {
+        if (!Files.isDirectory(powerSupplyRoot)) {
+            return null;
+        }
+        String address = id.toLowerCase(Locale.ENGLISH);
+        String name = normalize(label);
+        try (var stream = Files.list(powerSupplyRoot)) {
+            for (Path supply : (Iterable<Path>) stream::iterator) {
+                String entry = supply.getFileName().toString().toLowerCase(Locale.ENGLISH);
+                if (!entry.contains(address) && !matchesModelName(supply, name)) {
+                    continue;
+                }
+                Path capacity = supply.resolve("capacity");
+                if (Files.isReadable(capacity)) {
+                    return Integer.parseInt(Files.readString(capacity, StandardCharsets.UTF_8).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // battery level is best effort only
+        }
+        return null;
+    }
+
+    private static boolean matchesModelName(Path supply, String name) throws IOException {
+        Path modelName = supply.resolve("model_name");
+        if (name.isEmpty() || !Files.isReadable(modelName)) {
+            return false;
+        }
+        String model = normalize(Files.readString(modelName, StandardCharsets.UTF_8));
+        return !model.isEmpty() && name.contains(model);
+    }
+
+    static Type classify(String label) {
+        String lower = label.toLowerCase(Locale.ENGLISH);
+        if (lower.contains("xbox") || lower.contains("microsoft")) {
+            return Type.XBOX;
+        }
+        if (lower.contains("dualsense") || lower.contains("dual sense") || lower.contains("dualshock")
+                || lower.contains("sony") || lower.contains("playstation") || lower.contains("wireless controller")) {
+            return Type.PLAYSTATION;
+        }
+        if (lower.contains("joy-con") || lower.contains("nintendo") || lower.contains("pro controller")
+                || lower.contains("switch")) {
+            return Type.NINTENDO;
+        }
+        return Type.GENERIC;
+    }
+
+    private static String displayName(ControllerService.ControllerEvent event) {
+        if (event.source() != ControllerService.Source.INPUT) {
+            return event.label();
+        }
+        // bluetooth-Xbox_Wireless_Controller-event-joystick -> Xbox Wireless Controller
+        String name = event.device();
+        int suffix = name.lastIndexOf("-event-");
+        if (suffix > 0) {
+            name = name.substring(0, suffix);
+        }
+        if (name.toLowerCase(Locale.ENGLISH).startsWith("bluetooth-")) {
+            name = name.substring("bluetooth-".length());
+        }
+        name = name.replace('_', ' ').trim();
+        return name.isEmpty() ? event.device() : name;
+    }
+
+    private static String hexDigits(String value) {
+        return value.toLowerCase(Locale.ENGLISH).replaceAll("[^0-9a-f]", "");
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ENGLISH).replace('_', ' ').trim();
+    }
+}
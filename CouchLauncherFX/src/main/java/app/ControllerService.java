@@ -1,27 +1,52 @@
 package app;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Linux-focused helper that tries to determine whether a Bluetooth game controller is connected.
- * The implementation favours direct device discovery and falls back to "bluetoothctl" output.
+ * Linux-focused helper that tracks whether a Bluetooth game controller is connected.
+ * Once {@link #start()} is called the service is push based: a {@link WatchService} on
+ * {@code /dev/input/by-id} and one long-lived {@code bluetoothctl} monitor publish connect and
+ * disconnect events to listeners as they happen. {@link #detect()} remains available as a one-shot
+ * scan for callers that run before the service is started.
  * A development override is provided via DEV_FORCE_CONTROLLER=1/0.
  */
-public final class ControllerService {
+public final class ControllerService implements AutoCloseable {
 
     private static final String FORCE_FLAG = "DEV_FORCE_CONTROLLER";
-    private static final Path INPUT_BY_ID = Path.of("/dev/input/by-id");
+    private static final Path INPUT_ROOT = Path.of("/dev/input");
+    private static final String BY_ID = "by-id";
     private static final Duration BLUETOOTHCTL_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration MONITOR_RESTART_DELAY = Duration.ofSeconds(5);
+    private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[;\\d]*m|\u0001|\u0002");
+    private static final Pattern MONITOR_LINE = Pattern.compile("\\[(NEW|CHG|DEL)\\]\\s+Device\\s+([0-9A-Fa-f:]{17})\\s*(.*)");
+    private static final Pattern CONNECTED_LINE = Pattern.compile("^Device\\s+([0-9A-Fa-f:]{17})\\s+(.*)$");
     private static final List<String> CONTROLLER_KEYWORDS = List.of(
             "controller",
             "gamepad",
@@ -34,7 +59,120 @@ public final class ControllerService {
             "pro controller"
     );
 
+    public enum Source {
+        INPUT,
+        BLUETOOTH,
+        OVERRIDE
+    }
+
+    /**
+     * A single hotplug change. {@code device} is the by-id file name for input devices and the
+     * Bluetooth address for monitor events; {@code state} is the aggregate status after the change.
+     */
+    public record ControllerEvent(boolean connected, Source source, String device, String label, ControllerInfo state) {}
+
+    private final Path inputRoot;
+    private final Path inputById;
+    private final boolean bluetoothMonitorEnabled;
+    private final List<Consumer<ControllerEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private final Set<String> inputDevices = new LinkedHashSet<>();
+    private final Map<String, String> bluetoothNames = new HashMap<>();
+    private final Map<String, String> bluetoothDevices = new LinkedHashMap<>();
+
+    private volatile ControllerInfo current = ControllerInfo.DISCONNECTED;
+    private volatile boolean running;
+    private WatchService watchService;
+    private Thread watchThread;
+    private Thread monitorThread;
+    private volatile Process monitorProcess;
+
+    public ControllerService() {
+        this(INPUT_ROOT, true);
+    }
+
+    /**
+     * @param inputRoot directory standing in for {@code /dev/input}; its {@code by-id} child is watched
+     * @param bluetoothMonitorEnabled whether to spawn the long-lived {@code bluetoothctl} monitor
+     */
+    public ControllerService(Path inputRoot, boolean bluetoothMonitorEnabled) {
+        this.inputRoot = inputRoot;
+        this.inputById = inputRoot.resolve(BY_ID);
+        this.bluetoothMonitorEnabled = bluetoothMonitorEnabled;
+    }
+
+    public void addListener(Consumer<ControllerEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<ControllerEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Seeds the current state and starts the watcher and monitor threads. Safe to call once;
+     * subsequent calls are ignored until {@link #close()}.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        String forced = System.getenv(FORCE_FLAG);
+        if ("1".equals(forced) || "0".equals(forced)) {
+            boolean connected = "1".equals(forced);
+            current = connected
+                    ? new ControllerInfo(true, Optional.of("development override"))
+                    : ControllerInfo.DISCONNECTED;
+            publish(new ControllerEvent(connected, Source.OVERRIDE, "override", "development override", current));
+            return;
+        }
+
+        startInputWatcher();
+        if (bluetoothMonitorEnabled) {
+            monitorThread = new Thread(() -> {
+                seedBluetoothDevices();
+                monitorLoop();
+            }, "couchlauncherfx-bluetooth-monitor");
+            monitorThread.setDaemon(true);
+            monitorThread.start();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // already closed
+            }
+            watchService = null;
+        }
+        Process process = monitorProcess;
+        if (process != null) {
+            process.destroy();
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+        if (monitorThread != null) {
+            monitorThread.interrupt();
+            monitorThread = null;
+        }
+    }
+
+    /**
+     * Returns the pushed state when the service is running, otherwise performs a one-shot scan.
+     */
     public ControllerInfo detect() {
+        if (running) {
+            return current;
+        }
         String forced = System.getenv(FORCE_FLAG);
         if ("1".equals(forced)) {
             return new ControllerInfo(true, Optional.of("development override"));
@@ -54,63 +192,322 @@ public final class ControllerService {
         return detect().connected();
     }
 
-    private ControllerInfo detectInputDevice() {
-        if (!Files.isDirectory(INPUT_BY_ID)) {
-            return ControllerInfo.DISCONNECTED;
+    /**
+     * Resolves an {@link Source#INPUT} event device name to its path under {@code by-id}.
+     */
+    public Path devicePath(String device) {
+        return inputById.resolve(device);
+    }
+
+    // ------------------------------------------------------------ Input watch
+
+    private void startInputWatcher() {
+        if (!Files.isDirectory(inputRoot)) {
+            return;
         }
         try {
-            List<String> matches = new ArrayList<>();
-            try (var stream = Files.list(INPUT_BY_ID)) {
-                stream.filter(path -> {
-                            String name = path.getFileName().toString().toLowerCase(Locale.ENGLISH);
-                            if (!name.contains("bluetooth")) {
-                                return false;
+            watchService = FileSystems.getDefault().newWatchService();
+            inputRoot.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            registerById();
+        } catch (IOException ex) {
+            watchService = null;
+            return;
+        }
+        rescanInputDevices();
+        watchThread = new Thread(this::watchLoop, "couchlauncherfx-controller-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void registerById() throws IOException {
+        if (watchService != null && Files.isDirectory(inputById)) {
+            inputById.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+    }
+
+    private void watchLoop() {
+        WatchService service = watchService;
+        while (running && service != null) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    rescanInputDevices();
+                    continue;
+                }
+                String name = event.context().toString();
+                if (directory.equals(inputRoot)) {
+                    if (BY_ID.equals(name)) {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            try {
+                                registerById();
+                            } catch (IOException ignored) {
+                                // directory vanished again; the rescan below sees it empty
                             }
-                            return name.contains("-event-joystick")
-                                    || name.contains("-event-gamepad")
-                                    || name.contains("-gymotion");
-                        })
-                        .forEach(path -> matches.add(path.getFileName().toString()));
+                        }
+                        rescanInputDevices();
+                    }
+                } else if (isControllerDevice(name)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        inputChanged(name, true);
+                    } else {
+                        inputChanged(name, false);
+                    }
+                }
             }
-            if (!matches.isEmpty()) {
-                return new ControllerInfo(true, Optional.of(matches.get(0)));
+            key.reset();
+        }
+    }
+
+    private void rescanInputDevices() {
+        Set<String> found = new LinkedHashSet<>(listInputDevices());
+        List<ControllerEvent> events = new ArrayList<>();
+        synchronized (this) {
+            for (String existing : new ArrayList<>(inputDevices)) {
+                if (!found.contains(existing)) {
+                    inputDevices.remove(existing);
+                    events.add(new ControllerEvent(false, Source.INPUT, existing, existing, recompute()));
+                }
             }
+            for (String device : found) {
+                if (inputDevices.add(device)) {
+                    events.add(new ControllerEvent(true, Source.INPUT, device, device, recompute()));
+                }
+            }
+        }
+        events.forEach(this::publish);
+    }
+
+    private void inputChanged(String device, boolean connected) {
+        ControllerEvent event;
+        synchronized (this) {
+            boolean changed = connected ? inputDevices.add(device) : inputDevices.remove(device);
+            if (!changed) {
+                return;
+            }
+            event = new ControllerEvent(connected, Source.INPUT, device, device, recompute());
+        }
+        publish(event);
+    }
+
+    private List<String> listInputDevices() {
+        List<String> matches = new ArrayList<>();
+        if (!Files.isDirectory(inputById)) {
+            return matches;
+        }
+        try (var stream = Files.list(inputById)) {
+            stream.map(path -> path.getFileName().toString())
+                    .filter(ControllerService::isControllerDevice)
+                    .sorted()
+                    .forEach(matches::add);
         } catch (IOException ignored) {
-            // fall back to bluetoothctl detection
+            // directory removed mid-listing
         }
-        return ControllerInfo.DISCONNECTED;
+        return matches;
     }
 
-    private ControllerInfo detectBluetoothDevice() {
-        ProcessBuilder builder = new ProcessBuilder("bluetoothctl", "devices", "Connected");
+    private static boolean isControllerDevice(String fileName) {
+        String name = fileName.toLowerCase(Locale.ENGLISH);
+        if (!name.contains("bluetooth")) {
+            return false;
+        }
+        return name.contains("-event-joystick")
+                || name.contains("-event-gamepad")
+                || name.contains("-gymotion");
+    }
+
+    /**
+     * Whether an {@link Source#INPUT} device is a pad's motion-sensor node rather than its
+     * buttons and sticks. Such nodes count as a connected controller but carry no navigation.
+     */
+    public static boolean isMotionSensor(String device) {
+        return device.toLowerCase(Locale.ENGLISH).contains("-gymotion");
+    }
+
+    // ------------------------------------------------------- Bluetooth monitor
+
+    private void seedBluetoothDevices() {
+        for (String line : runBluetoothctl("devices", "Connected")) {
+            Matcher matcher = CONNECTED_LINE.matcher(line.trim());
+            if (matcher.matches()) {
+                String address = matcher.group(1).toUpperCase(Locale.ENGLISH);
+                String name = matcher.group(2).trim();
+                synchronized (this) {
+                    bluetoothNames.put(address, name);
+                }
+                if (isControllerName(name)) {
+                    bluetoothChanged(address, true);
+                }
+            }
+        }
+    }
+
+    private void monitorLoop() {
+        while (running) {
+            ProcessBuilder builder = new ProcessBuilder("bluetoothctl");
+            builder.redirectErrorStream(true);
+            try {
+                Process process = builder.start();
+                monitorProcess = process;
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while (running && (line = reader.readLine()) != null) {
+                        handleMonitorLine(line);
+                    }
+                }
+            } catch (IOException ex) {
+                // bluetoothctl not available; input watch remains the only source
+                return;
+            } finally {
+                Process process = monitorProcess;
+                if (process != null) {
+                    process.destroy();
+                }
+                monitorProcess = null;
+            }
+            try {
+                Thread.sleep(MONITOR_RESTART_DELAY.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void handleMonitorLine(String rawLine) {
+        String line = ANSI_ESCAPE.matcher(rawLine).replaceAll("");
+        Matcher matcher = MONITOR_LINE.matcher(line);
+        if (!matcher.find()) {
+            return;
+        }
+        String kind = matcher.group(1);
+        String address = matcher.group(2).toUpperCase(Locale.ENGLISH);
+        String rest = matcher.group(3).trim();
+        switch (kind) {
+            case "NEW" -> {
+                synchronized (this) {
+                    bluetoothNames.putIfAbsent(address, rest);
+                }
+            }
+            case "DEL" -> bluetoothChanged(address, false);
+            default -> {
+                if (rest.startsWith("Name: ") || rest.startsWith("Alias: ")) {
+                    synchronized (this) {
+                        bluetoothNames.put(address, rest.substring(rest.indexOf(':') + 1).trim());
+                    }
+                } else if (rest.equals("Connected: yes")) {
+                    String name;
+                    synchronized (this) {
+                        name = bluetoothNames.getOrDefault(address, address);
+                    }
+                    if (isControllerName(name)) {
+                        bluetoothChanged(address, true);
+                    }
+                } else if (rest.equals("Connected: no")) {
+                    bluetoothChanged(address, false);
+                }
+            }
+        }
+    }
+
+    private void bluetoothChanged(String address, boolean connected) {
+        ControllerEvent event;
+        synchronized (this) {
+            String name = bluetoothNames.getOrDefault(address, address);
+            boolean changed = connected
+                    ? bluetoothDevices.put(address, name) == null
+                    : bluetoothDevices.remove(address) != null;
+            if (!changed) {
+                return;
+            }
+            event = new ControllerEvent(connected, Source.BLUETOOTH, address, name, recompute());
+        }
+        publish(event);
+    }
+
+    private static boolean isControllerName(String name) {
+        String lower = name.toLowerCase(Locale.ENGLISH);
+        for (String keyword : CONTROLLER_KEYWORDS) {
+            if (lower.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --------------------------------------------------------------- Helpers
+
+    // caller holds this
+    private ControllerInfo recompute() {
+        if (!inputDevices.isEmpty()) {
+            current = new ControllerInfo(true, Optional.of(inputDevices.iterator().next()));
+        } else if (!bluetoothDevices.isEmpty()) {
+            current = new ControllerInfo(true, Optional.of(bluetoothDevices.values().iterator().next()));
+        } else {
+            current = ControllerInfo.DISCONNECTED;
+        }
+        return current;
+    }
+
+    private void publish(ControllerEvent event) {
+        for (Consumer<ControllerEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException ex) {
+                // a failing listener must not stop delivery to the others
+                Log.error("controller", "Controller listener failed", ex);
+            }
+        }
+    }
+
+    private List<String> runBluetoothctl(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("bluetoothctl");
+        command.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(command);
         builder.redirectErrorStream(true);
         try {
             Process process = builder.start();
             boolean finished = process.waitFor(BLUETOOTHCTL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
             if (!finished) {
                 process.destroyForcibly();
-                return ControllerInfo.DISCONNECTED;
+                return List.of();
             }
             try (InputStream stream = process.getInputStream()) {
-                String output = new String(stream.readAllBytes(), StandardCharsets.UTF_8).trim();
-                if (output.isEmpty()) {
-                    return ControllerInfo.DISCONNECTED;
-                }
-                String lower = output.toLowerCase(Locale.ENGLISH);
-                for (String keyword : CONTROLLER_KEYWORDS) {
-                    if (lower.contains(keyword)) {
-                        return new ControllerInfo(true, Optional.of(output.lines().findFirst().orElse("bluetooth controller")));
-                    }
-                }
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
             }
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
-        } catch (IOException ignored) {
+        } catch (IOException ex) {
             // bluetoothctl not available; ignore
+            Log.debug("controller", "bluetoothctl unavailable", "error", ex.toString());
+        }
+        return List.of();
+    }
+
+    private ControllerInfo detectInputDevice() {
+        List<String> matches = listInputDevices();
+        if (!matches.isEmpty()) {
+            return new ControllerInfo(true, Optional.of(matches.get(0)));
         }
         return ControllerInfo.DISCONNECTED;
     }
 
+    private ControllerInfo detectBluetoothDevice() {
+        List<String> lines = runBluetoothctl("devices", "Connected");
+        String output = String.join("\n", lines).trim();
+        if (output.isEmpty() || !isControllerName(output)) {
+            return ControllerInfo.DISCONNECTED;
+        }
+        return new ControllerInfo(true, Optional.of(output.lines().findFirst().orElse("bluetooth controller")));
+    }
+
     public record ControllerInfo(boolean connected, Optional<String> label) {
         private static final ControllerInfo DISCONNECTED = new ControllerInfo(false, Optional.empty());
 
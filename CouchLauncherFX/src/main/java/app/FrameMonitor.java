@@ -0,0 +1,180 @@
+package app;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Frame pacing for the JavaFX scene. An {@link AnimationTimer} sees every pulse, and the gap
+ * between pulse timestamps is the frame time. Frames go into {@code frame.time} and a per-screen
+ * {@code frame.time.<screen>} histogram. Frames that miss a vsync count as
+ * {@code frame.long.<screen>}. Frames rendered while an action is in flight (a fade, a tile
+ * rebuild) also go into {@code frame.time.action.<action>} and {@code frame.long.action.<action>}.
+ *
+ * <p>The optional HUD shows frame rate, recent p99 and long frames. All methods are for the
+ * JavaFX application thread.
+ */
+public final class FrameMonitor {
+
+    private static final long FRAME_BUDGET_NANOS = 16_666_667L;
+    private static final long LONG_FRAME_NANOS = FRAME_BUDGET_NANOS * 3 / 2;
+    private static final long HUD_INTERVAL_NANOS = 500_000_000L;
+    private static final int RECENT_FRAMES = 120;
+    private static final int ONE_SHOT_FRAMES = 2;
+
+    private final Label hud = new Label();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            onPulse(now);
+        }
+    };
+    // name -> nesting depth, in the order the actions started
+    private final Map<String, Integer> actions = new LinkedHashMap<>();
+    // name -> frames still to attribute
+    private final Map<String, Integer> oneShots = new LinkedHashMap<>();
+    private final long[] recent = new long[RECENT_FRAMES];
+    private int recentCount;
+    private int recentNext;
+    private String screen = "none";
+    private long lastPulseNanos;
+    private long windowStartNanos;
+    private int windowFrames;
+    private long longFrames;
+    private volatile long fps;
+    private boolean running;
+
+    public FrameMonitor() {
+        hud.getStyleClass().add("perf-hud");
+        hud.setMouseTransparent(true);
+        hud.setVisible(false);
+        StackPane.setAlignment(hud, Pos.TOP_LEFT);
+        Metrics.gauge("frame.fps", () -> fps);
+    }
+
+    /** The HUD label; add it on top of the scene. */
+    public Node hud() {
+        return hud;
+    }
+
+    public void start() {
+        if (!running) {
+            running = true;
+            lastPulseNanos = 0;
+            timer.start();
+        }
+    }
+
+    /** Stops sampling, e.g. while a stream is in front; keeping the timer would force pulses. */
+    public void stop() {
+        if (running) {
+            running = false;
+            timer.stop();
+            fps = 0;
+        }
+    }
+
+    public void setScreen(String name) {
+        screen = name;
+    }
+
+    /** Attributes frames to {@code name} until the matching {@link #endAction}. */
+    public void beginAction(String name) {
+        actions.merge(name, 1, Integer::sum);
+    }
+
+    public void endAction(String name) {
+        actions.computeIfPresent(name, (key, depth) -> depth > 1 ? depth - 1 : null);
+    }
+
+    /**
+     * Attributes the next two frames to {@code name}: the one the work runs in and the one whose
+     * pulse lays out and renders the result. For work done in one go on the application thread.
+     */
+    public void markAction(String name) {
+        oneShots.put(name, ONE_SHOT_FRAMES);
+    }
+
+    public boolean isHudVisible() {
+        return hud.isVisible();
+    }
+
+    public void setHudVisible(boolean visible) {
+        hud.setVisible(visible);
+        if (visible) {
+            hud.setText("measuring...");
+        }
+    }
+
+    private void onPulse(long now) {
+        if (lastPulseNanos == 0) {
+            lastPulseNanos = now;
+            windowStartNanos = now;
+            return;
+        }
+        long frameNanos = now - lastPulseNanos;
+        lastPulseNanos = now;
+        record(frameNanos);
+
+        windowFrames++;
+        if (now - windowStartNanos >= HUD_INTERVAL_NANOS) {
+            fps = Math.round(windowFrames * 1_000_000_000.0 / (now - windowStartNanos));
+            if (hud.isVisible()) {
+                hud.setText(hudText());
+            }
+            windowStartNanos = now;
+            windowFrames = 0;
+        }
+    }
+
+    private void record(long frameNanos) {
+        long micros = frameNanos / 1000L;
+        boolean longFrame = frameNanos > LONG_FRAME_NANOS;
+        Metrics.histogram("frame.time").record(micros);
+        Metrics.histogram("frame.time." + screen).record(micros);
+        if (longFrame) {
+            longFrames++;
+            Metrics.increment("frame.long");
+            Metrics.increment("frame.long." + screen);
+            // Whole vsync intervals the frame overran, i.e. frames the display repeated.
+            Metrics.counter("frame.dropped").addAndGet(frameNanos / FRAME_BUDGET_NANOS - 1);
+        }
+        attribute(actions, micros, longFrame);
+        attribute(oneShots, micros, longFrame);
+        oneShots.replaceAll((name, frames) -> frames - 1);
+        oneShots.values().removeIf(frames -> frames <= 0);
+
+        recent[recentNext] = micros;
+        recentNext = (recentNext + 1) % RECENT_FRAMES;
+        recentCount = Math.min(RECENT_FRAMES, recentCount + 1);
+    }
+
+    private static void attribute(Map<String, Integer> inFlight, long micros, boolean longFrame) {
+        for (String action : inFlight.keySet()) {
+            Metrics.histogram("frame.time.action." + action).record(micros);
+            if (longFrame) {
+                Metrics.increment("frame.long.action." + action);
+            }
+        }
+    }
+
+    private String hudText() {
+        long[] sorted = Arrays.copyOf(recent, recentCount);
+        Arrays.sort(sorted);
+        long p99 = sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        long max = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%d fps  p99 %.1f ms  max %.1f ms  long %d  %s",
+                fps, p99 / 1000.0, max / 1000.0, longFrames, screen));
+        if (!actions.isEmpty()) {
+            text.append("  [").append(String.join(", ", actions.keySet())).append(']');
+        }
+        return text.toString();
+    }
+}
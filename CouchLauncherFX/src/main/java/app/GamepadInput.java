@@ -0,0 +1,377 @@
+package app;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Reads Linux evdev {@code input_event} structs from a gamepad device and translates D-pad, stick
+ * and button events into navigation {@link Action}s. Events are decoded straight out of a reused
+ * direct {@link ByteBuffer}, so the read loop does not allocate per event.
+ *
+ * <p>The same translator drives {@link #replay}, which feeds a recorded event file (for example the
+ * output of {@code cat /dev/input/eventN}) through using the recorded timestamps as the clock, so
+ * dead-zone and key-repeat behaviour is deterministic.
+ *
+ * <p>Stick ranges differ between drivers (signed 16-bit on xpad, {@code 0..255} on hid-sony), so
+ * a live device is asked for its own range with {@code EVIOCGABS} unless the config pins one.
+ */
+public final class GamepadInput implements AutoCloseable {
+
+    public enum Action {
+        UP,
+        DOWN,
+        LEFT,
+        RIGHT,
+        ACTIVATE,
+        BACK,
+        MENU;
+
+        boolean repeats() {
+            return ordinal() <= RIGHT.ordinal();
+        }
+    }
+
+    /**
+     * Receives translated actions on the reader thread. {@code eventTimeMicros} is the kernel
+     * timestamp of the triggering event (wall clock), or the scheduled time of a repeat.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void onAction(Action action, long eventTimeMicros);
+    }
+
+    /**
+     * @param axisMin stick minimum, used for replays and for devices that cannot be asked
+     * @param axisRangeFromDevice whether {@link #open} replaces the range with the one the device reports
+     */
+    public record Config(double deadZone, int axisMin, int axisMax, boolean axisRangeFromDevice,
+                         Duration repeatDelay, Duration repeatInterval) {
+        public static final Config DEFAULT = new Config(0.5, -32768, 32767, true, Duration.ofMillis(400), Duration.ofMillis(120));
+    }
+
+    private static final int EV_KEY = 0x01;
+    private static final int EV_ABS = 0x03;
+
+    private static final int ABS_X = 0x00;
+    private static final int ABS_Y = 0x01;
+    private static final int ABS_HAT0X = 0x10;
+    private static final int ABS_HAT0Y = 0x11;
+
+    private static final int BTN_SOUTH = 0x130;
+    private static final int BTN_EAST = 0x131;
+    private static final int BTN_START = 0x13b;
+    private static final int BTN_DPAD_UP = 0x220;
+    private static final int BTN_DPAD_DOWN = 0x221;
+    private static final int BTN_DPAD_LEFT = 0x222;
+    private static final int BTN_DPAD_RIGHT = 0x223;
+
+    private static final double RELEASE_RATIO = 0.8;
+    private static final int BATCH_EVENTS = 64;
+
+    /** {@code EVIOCGABS(0)}: {@code _IOR('E', 0x40 + axis, struct input_absinfo)}; add the axis code. */
+    private static final long EVIOCGABS = 0x80184540L;
+    /** {@code struct input_absinfo}: value, minimum, maximum, fuzz, flat, resolution. */
+    private static final long ABSINFO_SIZE = 24;
+    private static final int O_RDONLY = 0;
+
+    /** {@code sizeof(struct input_event)}: two native longs for the timeval plus type, code and value. */
+    static final int EVENT_SIZE = "32".equals(System.getProperty("sun.arch.data.model")) ? 16 : 24;
+
+    private final Path device;
+    private final Config config;
+    private final Sink sink;
+    private final long repeatDelayMicros;
+    private final long repeatIntervalMicros;
+    private final int[] axisState = new int[ABS_HAT0Y + 1];
+    private final int[] axisMin = new int[ABS_Y + 1];
+    private final int[] axisMax = new int[ABS_Y + 1];
+
+    private FileChannel channel;
+    private Thread readerThread;
+    private Thread repeatThread;
+    private volatile boolean running;
+
+    // guarded by this
+    private Action held;
+    private long nextRepeatMicros;
+
+    private GamepadInput(Path device, Config config, Sink sink) {
+        this.device = device;
+        this.config = config == null ? Config.DEFAULT : config;
+        this.sink = sink;
+        this.repeatDelayMicros = this.config.repeatDelay().toNanos() / 1000;
+        this.repeatIntervalMicros = Math.max(1, this.config.repeatInterval().toNanos() / 1000);
+        Arrays.fill(axisMin, this.config.axisMin());
+        Arrays.fill(axisMax, this.config.axisMax());
+    }
+
+    /**
+     * Opens {@code device} and starts reading on a daemon thread until {@link #close()} or until
+     * the device goes away.
+     */
+    public static GamepadInput open(Path device, Config config, Sink sink) throws IOException {
+        GamepadInput input = new GamepadInput(device, config, sink);
+        input.channel = FileChannel.open(device, StandardOpenOption.READ);
+        if (input.config.axisRangeFromDevice()) {
+            for (int axis = ABS_X; axis <= ABS_Y; axis++) {
+                int[] range = queryAxisRange(device, axis);
+                if (range != null && range[1] > range[0]) {
+                    input.axisMin[axis] = range[0];
+                    input.axisMax[axis] = range[1];
+                }
+            }
+        }
+        input.running = true;
+        String suffix = device.getFileName().toString();
+        input.readerThread = new Thread(input::readLoop, "couchlauncherfx-gamepad-" + suffix);
+        input.readerThread.setDaemon(true);
+        input.repeatThread = new Thread(input::repeatLoop, "couchlauncherfx-gamepad-repeat-" + suffix);
+        input.repeatThread.setDaemon(true);
+        input.readerThread.start();
+        input.repeatThread.start();
+        return input;
+    }
+
+    /**
+     * Synchronously feeds a recorded event file through the translator. Key repeats are emitted
+     * according to the recorded timestamps rather than the wall clock.
+     */
+    public static void replay(Path recording, Config config, Sink sink) throws IOException {
+        GamepadInput input = new GamepadInput(recording, config, sink);
+        try (FileChannel file = FileChannel.open(recording, StandardOpenOption.READ)) {
+            input.channel = file;
+            input.running = true;
+            input.drain(true);
+        }
+    }
+
+    public Path device() {
+        return device;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        synchronized (this) {
+            held = null;
+            notifyAll();
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+            // already closed
+        }
+        if (repeatThread != null) {
+            repeatThread.interrupt();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            drain(false);
+        } catch (IOException ignored) {
+            // device removed or channel closed
+        } finally {
+            close();
+        }
+    }
+
+    private void drain(boolean replay) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EVENT_SIZE * BATCH_EVENTS).order(ByteOrder.nativeOrder());
+        boolean wide = EVENT_SIZE == 24;
+        while (running) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                return;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= EVENT_SIZE) {
+                int base = buffer.position();
+                long seconds = wide ? buffer.getLong(base) : buffer.getInt(base);
+                long micros = wide ? buffer.getLong(base + 8) : buffer.getInt(base + 4);
+                int offset = wide ? 16 : 8;
+                int type = buffer.getShort(base + offset) & 0xFFFF;
+                int code = buffer.getShort(base + offset + 2) & 0xFFFF;
+                int value = buffer.getInt(base + offset + 4);
+                buffer.position(base + EVENT_SIZE);
+                long timeMicros = seconds * 1_000_000L + micros;
+                if (replay) {
+                    advance(timeMicros);
+                }
+                handle(type, code, value, timeMicros);
+            }
+            buffer.compact();
+        }
+    }
+
+    private synchronized void handle(int type, int code, int value, long timeMicros) {
+        // EV_SYN frames and every other event type carry nothing navigation needs
+        if (type == EV_KEY) {
+            handleKey(code, value, timeMicros);
+        } else if (type == EV_ABS && code < axisState.length) {
+            handleAxis(code, value, timeMicros);
+        }
+    }
+
+    private void handleKey(int code, int value, long timeMicros) {
+        Action action = switch (code) {
+            case BTN_SOUTH -> Action.ACTIVATE;
+            case BTN_EAST -> Action.BACK;
+            case BTN_START -> Action.MENU;
+            case BTN_DPAD_UP -> Action.UP;
+            case BTN_DPAD_DOWN -> Action.DOWN;
+            case BTN_DPAD_LEFT -> Action.LEFT;
+            case BTN_DPAD_RIGHT -> Action.RIGHT;
+            default -> null;
+        };
+        if (action == null || value == 2) {
+            // value 2 is the kernel's own autorepeat; repeat is handled here instead
+            return;
+        }
+        if (value == 1) {
+            press(action, timeMicros);
+        } else {
+            release(action);
+        }
+    }
+
+    private void handleAxis(int code, int value, long timeMicros) {
+        int previous = axisState[code];
+        int direction;
+        if (code == ABS_HAT0X || code == ABS_HAT0Y) {
+            direction = Integer.signum(value);
+        } else if (code == ABS_X || code == ABS_Y) {
+            double half = (axisMax[code] - (double) axisMin[code]) / 2.0;
+            double normalized = half <= 0 ? 0 : (value - (axisMin[code] + half)) / half;
+            double magnitude = Math.abs(normalized);
+            if (magnitude >= config.deadZone()) {
+                direction = normalized > 0 ? 1 : -1;
+            } else if (magnitude < config.deadZone() * RELEASE_RATIO) {
+                direction = 0;
+            } else {
+                direction = previous;
+            }
+        } else {
+            return;
+        }
+        if (direction == previous) {
+            return;
+        }
+        axisState[code] = direction;
+        boolean horizontal = code == ABS_X || code == ABS_HAT0X;
+        if (previous != 0) {
+            release(directionAction(horizontal, previous));
+        }
+        if (direction != 0) {
+            press(directionAction(horizontal, direction), timeMicros);
+        }
+    }
+
+    /**
+     * The minimum and maximum the kernel reports for one absolute axis, or {@code null} when the
+     * device cannot be asked. Only tried on 64-bit, where {@code unsigned long} is a Java long.
+     */
+    private static int[] queryAxisRange(Path device, int axis) {
+        if (EVENT_SIZE != 24) {
+            return null;
+        }
+        try (Arena arena = Arena.ofConfined()) {
+            int fd = (int) Native.OPEN.invokeExact(arena.allocateFrom(device.toString()), O_RDONLY);
+            if (fd < 0) {
+                return null;
+            }
+            try {
+                MemorySegment info = arena.allocate(ABSINFO_SIZE, 4);
+                int result = (int) Native.IOCTL.invokeExact(fd, EVIOCGABS + axis, info);
+                return result < 0 ? null : new int[]{info.get(ValueLayout.JAVA_INT, 4), info.get(ValueLayout.JAVA_INT, 8)};
+            } finally {
+                int ignored = (int) Native.CLOSE.invokeExact(fd);
+            }
+        } catch (Throwable ex) {
+            // No native access or not Linux; the configured range stands.
+            Log.debug("gamepad", "Cannot read axis range", "device", device, "axis", axis, "error", ex.toString());
+            return null;
+        }
+    }
+
+    /** libc entry points, bound on first use so replays never touch native code. */
+    private static final class Native {
+        private static final Linker LINKER = Linker.nativeLinker();
+        static final MethodHandle OPEN = bind("open",
+                FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT));
+        static final MethodHandle IOCTL = bind("ioctl",
+                FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+                Linker.Option.firstVariadicArg(2));
+        static final MethodHandle CLOSE = bind("close",
+                FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+
+        private static MethodHandle bind(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+            return LINKER.downcallHandle(LINKER.defaultLookup().find(name).orElseThrow(), descriptor, options);
+        }
+    }
+
+    private static Action directionAction(boolean horizontal, int sign) {
+        if (horizontal) {
+            return sign < 0 ? Action.LEFT : Action.RIGHT;
+        }
+        return sign < 0 ? Action.UP : Action.DOWN;
+    }
+
+    private void press(Action action, long timeMicros) {
+        sink.onAction(action, timeMicros);
+        if (action.repeats()) {
+            held = action;
+            nextRepeatMicros = timeMicros + repeatDelayMicros;
+            notifyAll();
+        }
+    }
+
+    private void release(Action action) {
+        if (held == action) {
+            held = null;
+        }
+    }
+
+    private synchronized void advance(long nowMicros) {
+        while (held != null && nowMicros >= nextRepeatMicros) {
+            sink.onAction(held, nextRepeatMicros);
+            nextRepeatMicros += repeatIntervalMicros;
+        }
+    }
+
+    private void repeatLoop() {
+        synchronized (this) {
+            while (running) {
+                try {
+                    if (held == null) {
+                        wait();
+                        continue;
+                    }
+                    long nowMicros = System.currentTimeMillis() * 1000L;
+                    long remainingMicros = nextRepeatMicros - nowMicros;
+                    if (remainingMicros > 0) {
+                        wait((remainingMicros + 999) / 1000);
+                    } else {
+                        advance(nowMicros);
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package app;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * Watches the couchserver host with {@code GET /health} so the launcher learns it went away
+ * before a user-visible request has to time out. Probes run slowly while the host is healthy and
+ * quickly once a probe fails. Two consecutive failures mark the host down and notify listeners at
+ * once; the first success brings it back.
+ *
+ * <p>Round-trip time and availability are kept as exponentially weighted averages. Foreground
+ * code can check {@link #isDown()} to go straight to cached data instead of running a retry chain
+ * that is known to fail, and can {@link #reportFailure() report} failures it saw itself so the
+ * monitor re-probes immediately. A user asking to retry gets {@link #probeNow()}, which also cuts
+ * short the backoff of a host that is down.
+ */
+public final class HealthMonitor implements AutoCloseable {
+
+    public enum State {
+        UNKNOWN,
+        HEALTHY,
+        DEGRADED,
+        DOWN
+    }
+
+    public record Status(State state, double rttMillis, double availability) {}
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration HEALTHY_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration DEGRADED_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration MAX_DOWN_INTERVAL = Duration.ofSeconds(15);
+    private static final int DOWN_AFTER_FAILURES = 2;
+    private static final double ALPHA = 0.2;
+
+    private final TaskScheduler scheduler;
+    private final List<Consumer<Status>> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private String host;
+    private State state = State.UNKNOWN;
+    private double rttMillis = Double.NaN;
+    private double availability = 1.0;
+    private int consecutiveFailures;
+    private ScheduledFuture<?> nextProbe;
+    private boolean closed;
+
+    public HealthMonitor(TaskScheduler scheduler) {
+        this.scheduler = scheduler;
+        Metrics.gauge("health.state", () -> status().state().ordinal());
+        Metrics.gauge("health.availability_permille", () -> Math.round(status().availability() * 1000));
+    }
+
+    /**
+     * Listeners are told about state changes, on the probing thread.
+     */
+    public void addListener(Consumer<Status> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts monitoring {@code baseUrl}, or switches to it. Estimates from a previous host are discarded.
+     */
+    public synchronized void monitor(String baseUrl) {
+        if (closed || baseUrl.equals(host)) {
+            return;
+        }
+        host = baseUrl;
+        state = State.UNKNOWN;
+        rttMillis = Double.NaN;
+        availability = 1.0;
+        consecutiveFailures = 0;
+        scheduleProbe(0);
+    }
+
+    public synchronized Status status() {
+        return new Status(state, rttMillis, availability);
+    }
+
+    public synchronized boolean isDown() {
+        return state == State.DOWN;
+    }
+
+    /**
+     * A foreground request to the monitored host failed; probe now rather than at the next tick.
+     */
+    public synchronized void reportFailure() {
+        if (!closed && host != null && state != State.DOWN) {
+            scheduleProbe(0);
+        }
+    }
+
+    /**
+     * Probes now, whatever the state, and completes with the status afterwards. Listeners are
+     * told about a change before the returned future completes.
+     */
+    public CompletableFuture<Status> probeNow() {
+        String target;
+        synchronized (this) {
+            if (closed || host == null) {
+                return CompletableFuture.completedFuture(new Status(state, rttMillis, availability));
+            }
+            target = host;
+            if (nextProbe != null) {
+                // The probe below schedules the next one itself.
+                nextProbe.cancel(false);
+            }
+        }
+        return scheduler.submit(TaskScheduler.Lane.INTERACTIVE, "health-probe", () -> {
+            probe(target);
+            return status();
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (nextProbe != null) {
+            nextProbe.cancel(false);
+        }
+        scheduler.cancel("health-probe");
+    }
+
+    // caller holds this
+    private void scheduleProbe(long delayMillis) {
+        if (nextProbe != null) {
+            nextProbe.cancel(false);
+        }
+        String target = host;
+        nextProbe = scheduler.schedule(TaskScheduler.Lane.REFRESH, "health-probe", delayMillis, () -> {
+            probe(target);
+            return null;
+        });
+    }
+
+    private void probe(String target) throws InterruptedException {
+        boolean ok;
+        long start = System.nanoTime();
+        try {
+            HttpRepo.ping(target, PROBE_TIMEOUT);
+            ok = true;
+        } catch (InterruptedException interrupted) {
+            throw interrupted;
+        } catch (Exception ex) {
+            ok = false;
+        }
+        long elapsedMicros = (System.nanoTime() - start) / 1000L;
+        Status changed = null;
+        synchronized (this) {
+            if (closed || !target.equals(host)) {
+                return;
+            }
+            State previous = state;
+            availability = availability * (1 - ALPHA) + (ok ? ALPHA : 0);
+            if (ok) {
+                Metrics.histogram("health.rtt").record(elapsedMicros);
+                double sample = elapsedMicros / 1000.0;
+                rttMillis = Double.isNaN(rttMillis) ? sample : rttMillis * (1 - ALPHA) + sample * ALPHA;
+                consecutiveFailures = 0;
+                state = State.HEALTHY;
+                scheduleProbe(HEALTHY_INTERVAL.toMillis());
+            } else {
+                Metrics.increment("health.probe_failed");
+                consecutiveFailures++;
+                state = consecutiveFailures >= DOWN_AFTER_FAILURES ? State.DOWN : State.DEGRADED;
+                long backoff = DEGRADED_INTERVAL.toMillis() << Math.min(consecutiveFailures - 1, 4);
+                scheduleProbe(Math.min(backoff, MAX_DOWN_INTERVAL.toMillis()));
+            }
+            if (state != previous) {
+                Metrics.increment("health.transitions");
+                changed = new Status(state, rttMillis, availability);
+            }
+        }
+        if (changed != null) {
+            for (Consumer<Status> listener : listeners) {
+                listener.accept(changed);
+            }
+        }
+    }
+}
@@ -1,28 +1,80 @@
 package app;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 public final class HttpRepo {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
-    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(6);
     private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final int CATALOG_BATCH = 12;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String ACCEPT_ENCODING = "gzip";
     public static final String DEFAULT_BASE_URL = "http://192.168.5.12:8080";
 
+    private static final Set<String> COMPOSITE_UNSUPPORTED = ConcurrentHashMap.newKeySet();
+    private static final int PEER_CAPTURE_LIMIT = 4 * 1024 * 1024;
+
+    private static volatile PeerCache peerCache;
+
+    // Request timeouts also cover connecting, so a dead host is given up on well before CONNECT_TIMEOUT.
+    private static final AdaptiveTimeouts TIMEOUTS = new AdaptiveTimeouts(AdaptiveTimeouts.Policy.DEFAULT, Map.of(
+            "users.exists", new AdaptiveTimeouts.Policy(Duration.ofMillis(500), Duration.ofSeconds(4), Duration.ofSeconds(8)),
+            "library", new AdaptiveTimeouts.Policy(Duration.ofSeconds(1), Duration.ofSeconds(6), Duration.ofSeconds(30)),
+            "health", new AdaptiveTimeouts.Policy(Duration.ofMillis(500), Duration.ofSeconds(2), Duration.ofSeconds(5))
+    ));
+
+    // Request timeouts stop at the response headers; this closes bodies whose reads outlive a deadline.
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "couchlauncherfx-http-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static final HttpClient CLIENT = HttpClient.newBuilder()
             .connectTimeout(CONNECT_TIMEOUT)
             .followRedirects(HttpClient.Redirect.NORMAL)
@@ -51,8 +103,21 @@ public final class HttpRepo {
     public record UserPresence(boolean hasUsers) {
     }
 
+    /** {@code rawJson} is {@code null} when the catalog was streamed rather than read as one body. */
     public record CatalogResult(List<AppTile> tiles, boolean fromCache, String rawJson) {}
 
+    /**
+     * What the hub needs at boot. {@code composite} tells whether it came from a single
+     * {@code /bootstrap} request or from individual calls.
+     */
+    public record Bootstrap(UserPresence presence, CatalogResult catalog, boolean composite) {}
+
+    /**
+     * One change pushed on {@code /events}. {@code app} is set for {@code "app"} events and
+     * {@code session} for {@code "session"} events; {@code "reset"} carries neither.
+     */
+    public record ServerEvent(String id, String type, AppTile app, SessionResponse session) {}
+
     private record LibraryRecord(String slug, int gameId, boolean installReady) {
         String slugKey() {
             return slug != null && !slug.isBlank() ? slug : null;
@@ -63,8 +128,27 @@ public final class HttpRepo {
         }
     }
 
-    public record SessionResponse(int id, String status, String streamUrl) {}
+    public record SessionResponse(int id, String status, String streamUrl) {
+        public boolean ready() {
+            return "ready".equals(status) || "running".equals(status) || "active".equals(status)
+                    || (streamUrl != null && !streamUrl.isBlank() && !failed());
+        }
+
+        public boolean failed() {
+            return "failed".equals(status) || "error".equals(status) || "terminated".equals(status);
+        }
+    }
+
+    /**
+     * Shares responses that are the same for every console with other launchers on the network.
+     * A peer's copy is used when the origin confirms it is current, which costs a round trip but
+     * not the body. {@code null} turns sharing off.
+     */
+    public static void usePeerCache(PeerCache cache) {
+        peerCache = cache;
+    }
 
+    /** @param requestTimeout upper bound on the adaptive timeout for each attempt */
     public static String fetchChartsJson(String baseUrl, Duration requestTimeout, int maxRetries) throws Exception {
         String resolvedBase = resolveBase(baseUrl);
         String target = resolvedBase + "/charts/top10";
@@ -73,26 +157,209 @@ public final class HttpRepo {
                 .GET()
                 .header("Accept", "application/json")
                 .build();
-        return sendForBody(request, maxRetries);
+        return sendForBody(request, "charts", maxRetries);
     }
 
-    public static List<AppTile> listDefaultApps(String baseUrl) throws Exception {
-        String json = fetchChartsJson(baseUrl, DEFAULT_REQUEST_TIMEOUT, DEFAULT_MAX_RETRIES);
-        return parseApps(json);
+    /**
+     * Loads presence and the catalog, merged with the user's library when {@code userId} and
+     * {@code orgId} are known. Uses the composite {@code /bootstrap} endpoint when the server has
+     * it; otherwise, and for servers already seen without it, issues the individual requests in
+     * parallel.
+     *
+     * @param timeout deadline for the whole load, fallback requests included; each attempt also
+     *                gets the adaptive timeout
+     */
+    public static Bootstrap bootstrap(String baseUrl, Integer userId, Integer orgId, Duration timeout) throws Exception {
+        return bootstrap(baseUrl, userId, orgId, timeout, null);
     }
 
-    public static CatalogResult loadCatalog(String baseUrl, Integer userId, Integer orgId, Duration timeout, int retries) throws Exception {
-        String json = fetchChartsJson(baseUrl, timeout, retries);
-        List<AppTile> charts = parseApps(json);
-        if (userId != null && orgId != null) {
-            List<AppTile> merged = mergeWithLibrary(baseUrl, charts, userId, orgId);
-            return new CatalogResult(merged, false, json);
+    /**
+     * As {@link #bootstrap(String, Integer, Integer, Duration)}, but asks for the catalog as
+     * newline-delimited JSON and hands tiles to {@code onBatch} in server order while the rest of
+     * the body is still arriving. Nothing larger than one tile is buffered on the way.
+     *
+     * @param onBatch receives successive tiles a screenful at a time on the calling thread, or
+     *                {@code null}; after a retried attempt it starts again from the first tile
+     */
+    public static Bootstrap bootstrap(String baseUrl, Integer userId, Integer orgId, Duration timeout,
+                                      Consumer<List<AppTile>> onBatch) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (!COMPOSITE_UNSUPPORTED.contains(resolvedBase)) {
+            StringBuilder target = new StringBuilder(resolvedBase).append("/bootstrap");
+            boolean anonymous = userId == null || orgId == null;
+            if (!anonymous) {
+                target.append("?user_id=").append(userId).append("&org_id=").append(orgId);
+            }
+            // Only the anonymous catalog is shared; a user's ownership stays between them and the server.
+            PeerCache peers = anonymous ? peerCache : null;
+            PeerCache.Entry candidate = peers != null ? peers.fetch(target.toString()) : null;
+            URI uri = URI.create(target.toString());
+            long backoffMillis = 250;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    Bootstrap result = fetchBootstrap(uri, peers, candidate, remaining(deadline), onBatch);
+                    if (result == null) {
+                        break;
+                    }
+                    return result;
+                } catch (InterruptedException interrupted) {
+                    throw interrupted;
+                } catch (Exception ex) {
+                    // 5xx, resets and truncated bodies, as in sendForBody, but only while the caller's deadline allows.
+                    if (attempt >= DEFAULT_MAX_RETRIES || deadline - System.nanoTime() <= TimeUnit.MILLISECONDS.toNanos(backoffMillis)) {
+                        throw ex;
+                    }
+                    Log.debug("http", "Retrying bootstrap", "uri", uri, "attempt", attempt, "error", ex.toString());
+                    Thread.sleep(backoffMillis);
+                    backoffMillis = Math.min(500, backoffMillis + 100);
+                }
+            }
+            COMPOSITE_UNSUPPORTED.add(resolvedBase);
+        }
+        return bootstrapIndividually(baseUrl, userId, orgId, deadline);
+    }
+
+    /** Time left before {@code deadline}, never less than a millisecond so it stays a valid timeout. */
+    private static Duration remaining(long deadline) {
+        return Duration.ofNanos(Math.max(1_000_000, deadline - System.nanoTime()));
+    }
+
+    /**
+     * One {@code /bootstrap} attempt. Returns {@code null} when the server has no such endpoint;
+     * a body cut short fails with the {@link IOException} the client raises for it.
+     *
+     * @param candidate body a peer offered, used only if the origin answers {@code 304} to its
+     *                  hash; otherwise the origin's own body is used. May be {@code null}.
+     */
+    private static Bootstrap fetchBootstrap(URI uri, PeerCache peers, PeerCache.Entry candidate, Duration cap,
+                                            Consumer<List<AppTile>> onBatch) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUTS.timeout(uri, "bootstrap", cap))
+                .GET()
+                .header("Accept", NDJSON + ", application/json")
+                .header("Accept-Encoding", ACCEPT_ENCODING);
+        if (candidate != null) {
+            // couchserver tags the uncompressed body with its SHA-256, the same hash the peer copy carries
+            builder.header("If-None-Match", "W/\"" + candidate.sha256() + "\"");
+        }
+        HttpRequest request = builder.build();
+        HttpResponse<InputStream> response = send(request, "bootstrap");
+        try (InputStream body = decodedBody(response)) {
+            int status = response.statusCode();
+            if (status == 304 && candidate != null) {
+                peers.confirm(candidate);
+                return parseBootstrapBody(new ByteArrayInputStream(candidate.body()), candidate.contentType(), onBatch);
+            }
+            if (candidate != null && status >= 200 && status < 300) {
+                // the peer copy is out of date, or the server does not tag bodies; this one replaces it
+                Metrics.increment("peercache.stale");
+            }
+            if (status >= 200 && status < 300) {
+                String contentType = response.headers().firstValue("Content-Type").orElse("application/json");
+                if (peers == null) {
+                    return parseBootstrapBody(body, contentType, onBatch);
+                }
+                CapturingInputStream captured = new CapturingInputStream(body, (int) Math.min(PEER_CAPTURE_LIMIT, peers.maxEntryBytes()));
+                Bootstrap result = parseBootstrapBody(captured, contentType, onBatch);
+                byte[] copy = captured.captured();
+                if (copy != null) {
+                    peers.put(uri.toString(), copy, contentType);
+                }
+                return result;
+            }
+            if (status != 404 && status != 405) {
+                throw new IllegalStateException("Request failed with status " + status + " for " + request.uri());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The requests {@code /bootstrap} stands in for, issued in parallel against what is left of
+     * {@code deadline}. A request still running when the deadline passes is abandoned; its own
+     * timeout, capped the same way, ends it shortly after.
+     */
+    private static Bootstrap bootstrapIndividually(String baseUrl, Integer userId, Integer orgId, long deadline) throws Exception {
+        Duration cap = remaining(deadline);
+        CompletableFuture<UserPresence> presence = supplyAsync(() -> fetchUserPresence(baseUrl, cap));
+        CompletableFuture<String> charts = supplyAsync(() -> fetchChartsJson(baseUrl, cap, DEFAULT_MAX_RETRIES));
+        CompletableFuture<Map<String, LibraryRecord>> library = userId != null && orgId != null
+                ? supplyAsync(() -> fetchLibraryMap(baseUrl, userId, orgId, cap))
+                : CompletableFuture.completedFuture(null);
+        try {
+            String json = await(charts, deadline, "charts");
+            List<AppTile> tiles = parseApps(json);
+            Map<String, LibraryRecord> records = await(library, deadline, "library");
+            if (records != null) {
+                tiles = applyLibrary(tiles, records);
+            }
+            return new Bootstrap(await(presence, deadline, "users.exists"), new CatalogResult(tiles, false, json), false);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        } finally {
+            presence.cancel(true);
+            charts.cancel(true);
+            library.cancel(true);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long deadline, String endpoint) throws Exception {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            throw new HttpTimeoutException("No " + endpoint + " response before the bootstrap deadline");
+        }
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Callable<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread.ofVirtual().name("couchlauncherfx-bootstrap").start(() -> {
+            try {
+                future.complete(work.call());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    private static Bootstrap parseBootstrapBody(InputStream body, String contentType, Consumer<List<AppTile>> onBatch) throws Exception {
+        return contentType.startsWith(NDJSON) ? parseBootstrapStream(body, onBatch) : parseBootstrap(MAPPER.readTree(body));
+    }
+
+    private static Bootstrap parseBootstrap(JsonNode node) throws Exception {
+        JsonNode appsNode = node.path("apps");
+        // Ownership is already merged server side; the apps array doubles as the offline cache.
+        String appsJson = MAPPER.writeValueAsString(appsNode.isArray() ? appsNode : MAPPER.createArrayNode());
+        UserPresence presence = new UserPresence(node.path("has_users").asBoolean(false));
+        return new Bootstrap(presence, new CatalogResult(parseApps(appsJson), false, appsJson), true);
+    }
+
+    /**
+     * First line: {@code {"server", "has_users"}}; every following line is one catalog entry.
+     */
+    private static Bootstrap parseBootstrapStream(InputStream body, Consumer<List<AppTile>> onBatch) throws Exception {
+        try (MappingIterator<JsonNode> lines = MAPPER.readerFor(JsonNode.class).readValues(body)) {
+            JsonNode header = lines.hasNextValue() ? lines.nextValue() : MAPPER.createObjectNode();
+            UserPresence presence = new UserPresence(header.path("has_users").asBoolean(false));
+            List<AppTile> tiles = new ArrayList<>();
+            int delivered = 0;
+            while (lines.hasNextValue()) {
+                tiles.add(toTile(lines.nextValue()));
+                if (onBatch != null && tiles.size() - delivered >= CATALOG_BATCH) {
+                    onBatch.accept(List.copyOf(tiles.subList(delivered, tiles.size())));
+                    delivered = tiles.size();
+                }
+            }
+            if (onBatch != null && delivered < tiles.size()) {
+                onBatch.accept(List.copyOf(tiles.subList(delivered, tiles.size())));
+            }
+            return new Bootstrap(presence, new CatalogResult(tiles, false, null), true);
         }
-        return new CatalogResult(charts, false, json);
     }
 
-    public static List<AppTile> mergeWithLibrary(String baseUrl, List<AppTile> source, int userId, int orgId) throws Exception {
-        Map<String, LibraryRecord> records = fetchLibraryMap(baseUrl, userId, orgId);
+    private static List<AppTile> applyLibrary(List<AppTile> source, Map<String, LibraryRecord> records) {
         List<AppTile> merged = new ArrayList<>(source.size());
         for (AppTile tile : source) {
             LibraryRecord record = records.get(tile.id);
@@ -109,16 +376,19 @@ public final class HttpRepo {
         return merged;
     }
 
-    private static Map<String, LibraryRecord> fetchLibraryMap(String baseUrl, int userId, int orgId) throws Exception {
+    private static Map<String, LibraryRecord> fetchLibraryMap(String baseUrl, int userId, int orgId, Duration requestTimeout) throws Exception {
         String resolvedBase = resolveBase(baseUrl);
         String target = resolvedBase + "/users/" + userId + "/library?org_id=" + orgId;
         HttpRequest request = HttpRequest.newBuilder(URI.create(target))
-                .timeout(DEFAULT_REQUEST_TIMEOUT)
+                .timeout(requestTimeout)
                 .GET()
                 .header("Accept", "application/json")
                 .build();
-        String body = sendForBody(request, DEFAULT_MAX_RETRIES);
-        JsonNode node = MAPPER.readTree(body);
+        String body = sendForBody(request, "library", DEFAULT_MAX_RETRIES);
+        return parseLibraryMap(MAPPER.readTree(body));
+    }
+
+    private static Map<String, LibraryRecord> parseLibraryMap(JsonNode node) {
         Map<String, LibraryRecord> map = new HashMap<>();
         if (!node.isArray()) {
             return map;
@@ -141,14 +411,19 @@ public final class HttpRepo {
     }
 
     public static UserPresence fetchUserPresence(String baseUrl) throws Exception {
+        return fetchUserPresence(baseUrl, AdaptiveTimeouts.Policy.DEFAULT.ceiling());
+    }
+
+    /** @param requestTimeout upper bound on the adaptive timeout for each attempt */
+    public static UserPresence fetchUserPresence(String baseUrl, Duration requestTimeout) throws Exception {
         String resolvedBase = resolveBase(baseUrl);
         String target = resolvedBase + "/users/exists";
         HttpRequest request = HttpRequest.newBuilder(URI.create(target))
-                .timeout(Duration.ofSeconds(4))
+                .timeout(requestTimeout)
                 .GET()
                 .header("Accept", "application/json")
                 .build();
-        String body = sendForBody(request, DEFAULT_MAX_RETRIES);
+        String body = sendForBody(request, "users.exists", DEFAULT_MAX_RETRIES);
         JsonNode node = MAPPER.readTree(body);
         boolean hasUsers = node.path("has_users").asBoolean(node.path("hasUsers").asBoolean(false));
         return new UserPresence(hasUsers);
@@ -169,12 +444,11 @@ public final class HttpRepo {
         payload.put("installed", installed);
         String json = MAPPER.writeValueAsString(payload);
         HttpRequest request = HttpRequest.newBuilder(URI.create(target))
-                .timeout(DEFAULT_REQUEST_TIMEOUT)
                 .PUT(HttpRequest.BodyPublishers.ofString(json))
                 .header("Accept", "application/json")
                 .header("Content-Type", "application/json")
                 .build();
-        sendForBody(request, DEFAULT_MAX_RETRIES);
+        sendForBody(request, "apps.installed", DEFAULT_MAX_RETRIES);
     }
 
     public static void updateSettings(String baseUrl, int userId, Map<String, Object> settings) throws Exception {
@@ -183,12 +457,63 @@ public final class HttpRepo {
         Map<String, Object> payload = Map.of("settings", settings);
         String json = MAPPER.writeValueAsString(payload);
         HttpRequest request = HttpRequest.newBuilder(URI.create(target))
-                .timeout(DEFAULT_REQUEST_TIMEOUT)
                 .PUT(HttpRequest.BodyPublishers.ofString(json))
                 .header("Accept", "application/json")
                 .header("Content-Type", "application/json")
                 .build();
-        sendForBody(request, DEFAULT_MAX_RETRIES);
+        sendForBody(request, "settings", DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * Writes tiles in the {@code /repo/default} shape, one entry at a time, so the result can be
+     * read back with {@link #readApps(Reader)} or {@link #parseApps(String)}.
+     */
+    public static void writeApps(List<AppTile> tiles, Writer out) throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (AppTile tile : tiles) {
+                generator.writeStartObject();
+                generator.writeStringField("id", tile.id);
+                generator.writeStringField("name", tile.name);
+                generator.writeStringField("moonlight_name", tile.moonlightName);
+                generator.writeBooleanField("enabled", tile.enabled);
+                generator.writeNumberField("sort_order", tile.sortOrder);
+                generator.writeBooleanField("installed", tile.installed);
+                generator.writeBooleanField("owned", tile.owned);
+                writeNullable(generator, "chart_rank", tile.chartRank);
+                generator.writeStringField("chart_date", tile.chartDate);
+                generator.writeStringField("description", tile.description);
+                generator.writeStringField("cover_url", tile.coverUrl);
+                writeNullable(generator, "steam_appid", tile.steamAppId);
+                writeNullable(generator, "game_id", tile.gameId);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static void writeNullable(JsonGenerator generator, String field, Integer value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeNumberField(field, value);
+        }
+    }
+
+    /**
+     * Reads a JSON array of apps element by element instead of building the whole tree first.
+     */
+    public static List<AppTile> readApps(Reader in) throws Exception {
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Unsupported apps payload format");
+            }
+            List<AppTile> tiles = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                tiles.add(toTile(parser.readValueAsTree()));
+            }
+            return tiles;
+        }
     }
 
     public static List<AppTile> parseApps(String json) throws Exception {
@@ -212,12 +537,11 @@ public final class HttpRepo {
         );
         String json = MAPPER.writeValueAsString(payload);
         HttpRequest request = HttpRequest.newBuilder(URI.create(target))
-                .timeout(DEFAULT_REQUEST_TIMEOUT)
                 .POST(HttpRequest.BodyPublishers.ofString(json))
                 .header("Accept", "application/json")
                 .header("Content-Type", "application/json")
                 .build();
-        String body = sendForBody(request, DEFAULT_MAX_RETRIES);
+        String body = sendForBody(request, "auth", DEFAULT_MAX_RETRIES);
         return parseUserProfile(body);
     }
 
@@ -231,29 +555,235 @@ public final class HttpRepo {
         );
         String json = MAPPER.writeValueAsString(payload);
         HttpRequest request = HttpRequest.newBuilder(URI.create(target))
-                .timeout(DEFAULT_REQUEST_TIMEOUT)
                 .POST(HttpRequest.BodyPublishers.ofString(json))
                 .header("Accept", "application/json")
                 .header("Content-Type", "application/json")
                 .build();
-        String body = sendForBody(request, DEFAULT_MAX_RETRIES);
-        JsonNode node = MAPPER.readTree(body);
+        String body = sendForBody(request, "sessions.start", DEFAULT_MAX_RETRIES);
+        return parseSession(body);
+    }
+
+    public static SessionResponse fetchSession(String baseUrl, int sessionId) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        String target = resolvedBase + "/sessions/" + sessionId;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target))
+                .GET()
+                .header("Accept", "application/json")
+                .build();
+        String body = sendForBody(request, "sessions.get", 1);
+        return parseSession(body);
+    }
+
+    public static SessionResponse terminateSession(String baseUrl, int sessionId) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        String target = resolvedBase + "/sessions/" + sessionId;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target))
+                .DELETE()
+                .header("Accept", "application/json")
+                .build();
+        String body = sendForBody(request, "sessions.delete", DEFAULT_MAX_RETRIES);
+        return parseSession(body);
+    }
+
+    public static void warm(String baseUrl, String appId) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        String target = resolvedBase + "/warm/" + URLEncoder.encode(appId, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .header("Accept", "application/json")
+                .build();
+        sendForBody(request, "warm", 1);
+    }
+
+    /**
+     * Single {@code GET /health} with no retries, for round-trip measurements. {@code timeout}
+     * caps the adaptive one.
+     */
+    public static void ping(String baseUrl, Duration timeout) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(resolvedBase + "/health"))
+                .timeout(timeout)
+                .GET()
+                .header("Accept", "application/json")
+                .build();
+        sendForBody(request, "health", 1);
+    }
+
+    /**
+     * Downloads up to {@code size} bytes from {@code /probe/payload} and discards them, returning
+     * the number of bytes received. The whole transfer, body included, ends at {@code deadline};
+     * on a link too slow to finish, whatever arrived by then is counted.
+     */
+    public static long downloadProbe(String baseUrl, int size, Duration deadline) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(resolvedBase + "/probe/payload?size=" + size))
+                .timeout(deadline)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        InputStream body = response.body();
+        ScheduledFuture<?> cutoff = closeAt(body, deadlineNanos);
+        long total = 0;
+        try (body) {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new IllegalStateException("Request failed with status " + response.statusCode() + " for " + request.uri());
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while (total < size && (read = body.read(buffer, 0, (int) Math.min(buffer.length, size - total))) != -1) {
+                total += read;
+            }
+            return total;
+        } catch (IOException ex) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                // Cut off by the deadline: the bytes that made it are the measurement.
+                return total;
+            }
+            throw ex;
+        } finally {
+            cutoff.cancel(false);
+        }
+    }
+
+    /**
+     * Opens the {@code /events} stream for the user and organization and hands each event to
+     * {@code sink} until the server closes it. Blocks; interrupt the calling thread to stop.
+     *
+     * @param lastEventId id of the last event seen, to resume after it, or {@code null} to start now
+     * @param idleTimeout longest wait for any line, keepalives included; a half-open connection
+     *                    that stays silent this long fails with {@link HttpTimeoutException}
+     * @return {@code false} when the server has no {@code /events} endpoint
+     */
+    public static boolean streamEvents(String baseUrl, Integer userId, Integer orgId, String lastEventId,
+                                       Duration idleTimeout, Consumer<ServerEvent> sink) throws Exception {
+        String resolvedBase = resolveBase(baseUrl);
+        StringBuilder target = new StringBuilder(resolvedBase).append("/events");
+        if (userId != null && orgId != null) {
+            target.append("?user_id=").append(userId).append("&org_id=").append(orgId);
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target.toString()))
+                .timeout(idleTimeout)
+                .GET()
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        HttpRequest request = builder.build();
+        HttpResponse<InputStream> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        InputStream body = response.body();
+        // No FIN arrives on a half-open connection, so silence is the only sign; closing the body ends the read.
+        AtomicBoolean idle = new AtomicBoolean();
+        Runnable expire = () -> {
+            idle.set(true);
+            closeQuietly(body);
+        };
+        ScheduledFuture<?> cutoff = WATCHDOG.schedule(expire, idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            int status = response.statusCode();
+            if (status == 404 || status == 405) {
+                return false;
+            }
+            if (status < 200 || status >= 300) {
+                throw new IllegalStateException("Request failed with status " + status + " for " + request.uri());
+            }
+            String id = null;
+            String type = "message";
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                cutoff.cancel(false);
+                cutoff = WATCHDOG.schedule(expire, idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+                if (line.isEmpty()) {
+                    if (data.length() > 0 || "reset".equals(type)) {
+                        sink.accept(parseEvent(id, type, data.toString()));
+                    }
+                    id = null;
+                    type = "message";
+                    data.setLength(0);
+                } else if (line.startsWith("id:")) {
+                    id = fieldValue(line, 3);
+                } else if (line.startsWith("event:")) {
+                    type = fieldValue(line, 6);
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(fieldValue(line, 5));
+                }
+                // comment lines (":") are keepalives; "retry:" is ignored, the caller owns backoff
+            }
+            if (idle.get()) {
+                throw idleTimeout(request, idleTimeout);
+            }
+            return true;
+        } catch (IOException ex) {
+            if (idle.get()) {
+                throw idleTimeout(request, idleTimeout);
+            }
+            throw ex;
+        } finally {
+            cutoff.cancel(false);
+        }
+    }
+
+    private static HttpTimeoutException idleTimeout(HttpRequest request, Duration idleTimeout) {
+        return new HttpTimeoutException("Nothing received on " + request.uri() + " for " + idleTimeout.toSeconds() + "s");
+    }
+
+    private static String fieldValue(String line, int prefixLength) {
+        String value = line.substring(prefixLength);
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+
+    private static ServerEvent parseEvent(String id, String type, String data) {
+        try {
+            JsonNode node = data.isEmpty() ? MAPPER.createObjectNode() : MAPPER.readTree(data);
+            AppTile app = node.hasNonNull("app") ? toTile(node.get("app")) : null;
+            SessionResponse session = node.hasNonNull("session") ? parseSession(node.get("session")) : null;
+            return new ServerEvent(id, type, app, session);
+        } catch (IOException | IllegalStateException ex) {
+            // Still passed on so the id advances and a resume does not replay the bad event.
+            return new ServerEvent(id, type, null, null);
+        }
+    }
+
+    private static SessionResponse parseSession(String body) throws Exception {
+        return parseSession(MAPPER.readTree(body));
+    }
+
+    private static SessionResponse parseSession(JsonNode node) {
         int id = node.path("id").asInt();
         String status = node.path("status").asText("provisioning");
         String streamUrl = node.path("stream_url").isMissingNode() ? null : node.get("stream_url").asText(null);
         return new SessionResponse(id, status, streamUrl);
     }
 
-    private static String sendForBody(HttpRequest request, int maxRetries) throws Exception {
+    /**
+     * Sends {@code original} with retries. Each attempt gets the adaptive timeout for
+     * {@code endpoint}; a timeout set on {@code original} only caps it.
+     */
+    private static String sendForBody(HttpRequest original, String endpoint, int maxRetries) throws Exception {
+        Duration cap = original.timeout().orElse(null);
         int attempts = Math.max(1, maxRetries);
         long backoffMillis = 250;
         Exception lastError = null;
+        HttpRequest request = original;
         for (int attempt = 1; attempt <= attempts; attempt++) {
+            // Rebuilt every attempt: a timeout widens the next one.
+            request = HttpRequest.newBuilder(original, (name, value) -> true)
+                    .header("Accept-Encoding", ACCEPT_ENCODING)
+                    .timeout(TIMEOUTS.timeout(original.uri(), endpoint, cap))
+                    .build();
             try {
-                HttpResponse<String> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<InputStream> response = send(request, endpoint);
+                String body;
+                try (InputStream in = decodedBody(response)) {
+                    body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
                 int status = response.statusCode();
                 if (status >= 200 && status < 300) {
-                    return response.body();
+                    return body;
                 }
                 throw new IllegalStateException("Request failed with status " + status + " for " + request.uri());
             } catch (InterruptedException interrupted) {
@@ -279,6 +809,119 @@ public final class HttpRepo {
         throw new IllegalStateException("Failed to execute request " + request.uri());
     }
 
+    /** Sends {@code request}, feeding the time to response headers, or its timeout, back into {@link #TIMEOUTS}. */
+    private static HttpResponse<InputStream> send(HttpRequest request, String endpoint) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            TIMEOUTS.recordLatency(request.uri(), endpoint, (System.nanoTime() - started) / 1000L);
+            return response;
+        } catch (HttpTimeoutException ex) {
+            TIMEOUTS.recordTimeout(request.uri(), endpoint, request.timeout().orElseThrow());
+            throw ex;
+        }
+    }
+
+    /** Closes {@code stream} at {@code deadlineNanos}, ending a read blocked on it. Cancel once done. */
+    private static ScheduledFuture<?> closeAt(Closeable stream, long deadlineNanos) {
+        return WATCHDOG.schedule(() -> closeQuietly(stream), deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+    }
+
+    /**
+     * The response body, inflated on the fly when the server gzip-encoded it. Bytes as received
+     * and as decoded are counted under {@code http.bytes_wire} and {@code http.bytes_decoded}.
+     */
+    private static InputStream decodedBody(HttpResponse<InputStream> response) throws IOException {
+        InputStream wire = new CountingInputStream(response.body(), Metrics.counter("http.bytes_wire"));
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(value -> value.trim().equalsIgnoreCase("gzip"))
+                .orElse(false);
+        InputStream decoded = gzip ? new GZIPInputStream(wire, 8192) : wire;
+        return new CountingInputStream(decoded, Metrics.counter("http.bytes_decoded"));
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        private CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                counter.incrementAndGet();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                counter.addAndGet(count);
+            }
+            return count;
+        }
+    }
+
+    /** Keeps a copy of what was read, up to a limit, so a parsed body can be shared afterwards. */
+    private static final class CapturingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final int limit;
+        private boolean overflowed;
+
+        private CapturingInputStream(InputStream in, int limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                keep(new byte[]{(byte) value}, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                keep(buffer, offset, count);
+            }
+            return count;
+        }
+
+        private void keep(byte[] buffer, int offset, int count) {
+            if (overflowed) {
+                return;
+            }
+            if (copy.size() + count > limit) {
+                overflowed = true;
+                copy.reset();
+                return;
+            }
+            copy.write(buffer, offset, count);
+        }
+
+        /** Everything the parser consumed, or {@code null} if that was too large to keep. */
+        private byte[] captured() {
+            return overflowed ? null : copy.toByteArray();
+        }
+    }
+
     private static UserProfile parseUserProfile(String json) throws Exception {
         JsonNode node = MAPPER.readTree(json);
         int userId = node.path("user_id").asInt(node.path("userId").asInt(-1));
@@ -0,0 +1,250 @@
+package app;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Staged game launch: allocate a session, wait for it to become ready, spawn the stream client
+ * and confirm it stayed up. A {@link NetworkProbe} runs alongside allocation and picks the stream
+ * settings. {@link #run} blocks and is meant for a worker thread; interrupting
+ * that thread cancels the launch, tearing down whatever the earlier stages created.
+ * Per-stage durations are returned with the result and recorded under {@code launch.stage.*}.
+ */
+public final class LaunchPipeline {
+
+    public enum Stage {
+        ALLOCATE("Session allocation"),
+        WAIT_READY("Session provisioning"),
+        SPAWN("Client start"),
+        CONFIRM("Stream confirmation");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /** Progress callback, invoked on the launching thread as each stage begins. */
+    @FunctionalInterface
+    public interface Listener {
+        void onStage(Stage stage, String message);
+    }
+
+    @FunctionalInterface
+    public interface ClientSpawner {
+        /**
+         * @param profile stream settings chosen from the network probe, or {@code null} to use the client's defaults
+         */
+        Process spawn(Request request, HttpRepo.SessionResponse session, NetworkProbe.StreamProfile profile) throws IOException;
+    }
+
+    /**
+     * Stops a client {@link ClientSpawner} started when the launch is rolled back. Whoever
+     * supervises the client should record the exit as a stop, not a crash.
+     */
+    @FunctionalInterface
+    public interface ClientStopper {
+        void stop(Process process);
+    }
+
+    /**
+     * @param orgId organization to allocate in, or {@code null} to skip session allocation
+     * @param userId signed-in user, or {@code null} to skip session allocation
+     */
+    public record Request(String host, Integer orgId, Integer userId, AppTile app) {
+        boolean allocatesSession() {
+            return orgId != null && userId != null && app.gameId != null;
+        }
+    }
+
+    public record Result(Request request,
+                         HttpRepo.SessionResponse session,
+                         NetworkProbe.StreamProfile profile,
+                         Process process,
+                         Map<Stage, Long> stageMillis,
+                         long totalMillis) {}
+
+    public static final class StageFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final Stage stage;
+
+        private StageFailure(Stage stage, Throwable cause) {
+            super(stage.label() + " failed", cause);
+            this.stage = stage;
+        }
+
+        public Stage stage() {
+            return stage;
+        }
+    }
+
+    private static final Duration READY_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration CONFIRM_WINDOW = Duration.ofSeconds(3);
+    private static final long INITIAL_POLL_MILLIS = 250;
+    private static final long MAX_POLL_MILLIS = 2_000;
+    private static final Duration PROBE_GRACE = Duration.ofSeconds(2);
+
+    private final ClientSpawner spawner;
+    private final ClientStopper stopper;
+    private final NetworkProbe probe;
+
+    /**
+     * @param probe measures the link while the session is allocated, or {@code null} to launch with client defaults
+     */
+    public LaunchPipeline(ClientSpawner spawner, ClientStopper stopper, NetworkProbe probe) {
+        this.spawner = spawner;
+        this.stopper = stopper;
+        this.probe = probe;
+    }
+
+    public Result run(Request request, Listener listener) throws Exception {
+        long started = System.nanoTime();
+        Map<Stage, Long> timings = new EnumMap<>(Stage.class);
+        HttpRepo.SessionResponse session = null;
+        Process process = null;
+        boolean succeeded = false;
+        FutureTask<NetworkProbe.StreamProfile> probeTask = startProbe(request.host());
+        try {
+            if (request.allocatesSession()) {
+                listener.onStage(Stage.ALLOCATE, "Allocating session for " + request.app().name);
+                long stageStart = System.nanoTime();
+                session = runStage(Stage.ALLOCATE, () -> HttpRepo.startSession(
+                        request.host(), request.orgId(), request.userId(), request.app().gameId));
+                record(timings, Stage.ALLOCATE, stageStart);
+
+                listener.onStage(Stage.WAIT_READY, "Provisioning session (" + session.status() + ")");
+                stageStart = System.nanoTime();
+                session = awaitReady(request.host(), session);
+                record(timings, Stage.WAIT_READY, stageStart);
+            }
+
+            listener.onStage(Stage.SPAWN, "Starting stream client");
+            long stageStart = System.nanoTime();
+            HttpRepo.SessionResponse allocated = session;
+            NetworkProbe.StreamProfile profile = awaitProfile(probeTask);
+            process = runStage(Stage.SPAWN, () -> spawner.spawn(request, allocated, profile));
+            record(timings, Stage.SPAWN, stageStart);
+
+            listener.onStage(Stage.CONFIRM, "Waiting for stream");
+            stageStart = System.nanoTime();
+            Process spawned = process;
+            runStage(Stage.CONFIRM, () -> {
+                if (spawned.waitFor(CONFIRM_WINDOW.toMillis(), TimeUnit.MILLISECONDS) && spawned.exitValue() != 0) {
+                    throw new IllegalStateException("Stream client exited with status " + spawned.exitValue());
+                }
+                return spawned;
+            });
+            record(timings, Stage.CONFIRM, stageStart);
+
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            Metrics.histogram("launch.total").record(totalMillis * 1000L);
+            succeeded = true;
+            return new Result(request, session, profile, process, Collections.unmodifiableMap(timings), totalMillis);
+        } finally {
+            // A probe still running is left to finish: it caches what it measures for the next launch.
+            if (!succeeded) {
+                Metrics.increment("launch.failed");
+                rollback(request, session, process);
+            }
+        }
+    }
+
+    private FutureTask<NetworkProbe.StreamProfile> startProbe(String host) {
+        if (probe == null) {
+            return null;
+        }
+        FutureTask<NetworkProbe.StreamProfile> task = new FutureTask<>(() -> probe.assess(host));
+        Thread.ofVirtual().name("couchlauncherfx-netprobe").start(task);
+        return task;
+    }
+
+    /**
+     * The probe runs alongside allocation, so it has usually finished by now. When it has not,
+     * it gets a short grace period; a probe still running after that is itself a sign of a poor
+     * link, so the launch gets the probe's conservative fallback rather than client defaults.
+     * Only the wait is given up; interrupting the probe would leave slow hosts unmeasured forever.
+     */
+    private static NetworkProbe.StreamProfile awaitProfile(FutureTask<NetworkProbe.StreamProfile> task) throws InterruptedException {
+        if (task == null) {
+            return null;
+        }
+        try {
+            return task.get(PROBE_GRACE.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException ex) {
+            Metrics.increment("launch.probe_skipped");
+            return NetworkProbe.fallbackProfile();
+        }
+    }
+
+    private HttpRepo.SessionResponse awaitReady(String host, HttpRepo.SessionResponse initial) throws Exception {
+        HttpRepo.SessionResponse current = initial;
+        long deadline = System.nanoTime() + READY_TIMEOUT.toNanos();
+        long pollMillis = INITIAL_POLL_MILLIS;
+        while (!current.ready()) {
+            if (current.failed()) {
+                throw new StageFailure(Stage.WAIT_READY, new IllegalStateException("Session " + current.status()));
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new StageFailure(Stage.WAIT_READY, new IllegalStateException("Session not ready after "
+                        + READY_TIMEOUT.toSeconds() + "s"));
+            }
+            Thread.sleep(pollMillis);
+            pollMillis = Math.min(MAX_POLL_MILLIS, pollMillis * 2);
+            int sessionId = current.id();
+            current = runStage(Stage.WAIT_READY, () -> HttpRepo.fetchSession(host, sessionId));
+        }
+        return current;
+    }
+
+    private void rollback(Request request, HttpRepo.SessionResponse session, Process process) {
+        if (process != null && process.isAlive()) {
+            stopper.stop(process);
+        }
+        if (session == null) {
+            return;
+        }
+        // Release the allocation even when the launch was cancelled by interrupt.
+        boolean interrupted = Thread.interrupted();
+        try {
+            HttpRepo.terminateSession(request.host(), session.id());
+        } catch (Exception ex) {
+            // best effort; the launch already failed or was cancelled
+            Log.warn("launch", "Could not release session", ex, "session", session.id());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void record(Map<Stage, Long> timings, Stage stage, long stageStartNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stageStartNanos);
+        timings.put(stage, millis);
+        Metrics.histogram("launch.stage." + stage.name().toLowerCase(Locale.ENGLISH)).record(millis * 1000L);
+    }
+
+    private static <T> T runStage(Stage stage, Callable<T> work) throws Exception {
+        try {
+            return work.call();
+        } catch (InterruptedException | StageFailure ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new StageFailure(stage, ex);
+        }
+    }
+}
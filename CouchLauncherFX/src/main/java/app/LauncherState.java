@@ -0,0 +1,60 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the launcher shares between the FX thread and background work, as one immutable
+ * snapshot held by a {@link StateStore}. Each {@code with} method returns a new snapshot, or this
+ * one when nothing would change.
+ *
+ * @param catalogLoadedNanos when {@code tiles} last came from the server, 0 for cache or unknown
+ */
+public record LauncherState(List<AppTile> tiles,
+                            long catalogLoadedNanos,
+                            HttpRepo.UserProfile session,
+                            boolean offline,
+                            boolean controllerConnected,
+                            HttpRepo.UserPresence presence) {
+
+    public static final LauncherState INITIAL = new LauncherState(List.of(), 0, null, false, false, null);
+
+    public LauncherState {
+        tiles = List.copyOf(tiles);
+    }
+
+    /**
+     * @param fromServer the tiles were just fetched, so entering the hub need not fetch them again
+     */
+    public LauncherState withCatalog(List<AppTile> catalog, boolean fromServer) {
+        return new LauncherState(catalog, fromServer ? System.nanoTime() : 0, session, offline, controllerConnected, presence);
+    }
+
+    /** Replaces the tile with the same id, if the catalog has one. */
+    public LauncherState withTile(AppTile patch) {
+        for (int i = 0; i < tiles.size(); i++) {
+            if (tiles.get(i).id.equals(patch.id)) {
+                List<AppTile> updated = new ArrayList<>(tiles);
+                updated.set(i, patch);
+                return new LauncherState(updated, catalogLoadedNanos, session, offline, controllerConnected, presence);
+            }
+        }
+        return this;
+    }
+
+    public LauncherState withSession(HttpRepo.UserProfile value) {
+        return value == session ? this : new LauncherState(tiles, catalogLoadedNanos, value, offline, controllerConnected, presence);
+    }
+
+    public LauncherState withOffline(boolean value) {
+        return value == offline ? this : new LauncherState(tiles, catalogLoadedNanos, session, value, controllerConnected, presence);
+    }
+
+    public LauncherState withControllerConnected(boolean value) {
+        return value == controllerConnected ? this : new LauncherState(tiles, catalogLoadedNanos, session, offline, value, presence);
+    }
+
+    public LauncherState withPresence(HttpRepo.UserPresence value) {
+        return value == presence ? this : new LauncherState(tiles, catalogLoadedNanos, session, offline, controllerConnected, value);
+    }
+}
@@ -0,0 +1,171 @@
+package app;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Keeps a {@code GET /events} subscription open to couchserver for the signed-in user and
+ * organization, so ownership, install and session changes reach the hub as they happen rather
+ * than on the next full catalog pull. A dropped connection is resumed from the last event id
+ * after a short backoff; when the server no longer holds the missed events it sends a reset and
+ * the listener is expected to reload the catalog.
+ *
+ * <p>The server sends a keepalive every 15 seconds. A connection that goes quiet for three of
+ * those is taken as half-open, e.g. after a Wi-Fi or NAT drop, and is closed and reconnected
+ * with backoff.
+ */
+public final class LiveUpdates implements AutoCloseable {
+
+    /** Called on the subscription thread. */
+    public interface Listener {
+        void onApp(AppTile tile);
+
+        void onSession(HttpRepo.SessionResponse session);
+
+        void onReset();
+    }
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration UNSUPPORTED_RETRY = Duration.ofMinutes(10);
+    private static final Duration IDLE_TIMEOUT = Duration.ofSeconds(45);
+
+    private record Target(String baseUrl, Integer userId, Integer orgId) {}
+
+    private final Listener listener;
+
+    // guarded by this
+    private Target target;
+    private Thread worker;
+    private String lastEventId;
+    private boolean closed;
+
+    public LiveUpdates(Listener listener) {
+        this.listener = listener;
+        Metrics.gauge("live.connected", () -> isSubscribed() ? 1 : 0);
+    }
+
+    /**
+     * Subscribes to changes for the user and organization on {@code baseUrl}, replacing any
+     * earlier subscription. Does nothing if that is already the current one.
+     */
+    public synchronized void subscribe(String baseUrl, Integer userId, Integer orgId) {
+        Target next = new Target(baseUrl, userId, orgId);
+        if (closed || next.equals(target)) {
+            return;
+        }
+        stopWorker();
+        target = next;
+        lastEventId = null;
+        startWorker();
+    }
+
+    /**
+     * Drops the current connection and reconnects at once, resuming after the last event seen.
+     * Used when the host comes back so the stream does not wait out its backoff.
+     */
+    public synchronized void reconnect() {
+        if (closed || target == null) {
+            return;
+        }
+        stopWorker();
+        startWorker();
+    }
+
+    public synchronized boolean isSubscribed() {
+        return worker != null && worker.isAlive();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        stopWorker();
+        target = null;
+    }
+
+    // caller holds this
+    private void startWorker() {
+        Target current = target;
+        worker = Thread.ofVirtual().name("couchlauncherfx-live").start(() -> run(current));
+    }
+
+    // caller holds this
+    private void stopWorker() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private synchronized boolean isCurrent(Target candidate) {
+        return !closed && Objects.equals(candidate, target) && worker == Thread.currentThread();
+    }
+
+    private synchronized String resumeId() {
+        return lastEventId;
+    }
+
+    private void run(Target current) {
+        long backoffMillis = MIN_BACKOFF.toMillis();
+        while (isCurrent(current)) {
+            long delayMillis;
+            try {
+                boolean supported = HttpRepo.streamEvents(current.baseUrl(), current.userId(), current.orgId(), resumeId(),
+                        IDLE_TIMEOUT, event -> deliver(current, event));
+                if (supported) {
+                    // The server closed a healthy stream, e.g. on restart; come back quickly.
+                    Metrics.increment("live.disconnected");
+                    backoffMillis = MIN_BACKOFF.toMillis();
+                    delayMillis = backoffMillis;
+                } else {
+                    // older couchserver without /events; the scheduled refreshes still apply
+                    delayMillis = UNSUPPORTED_RETRY.toMillis();
+                }
+            } catch (InterruptedException interrupted) {
+                return;
+            } catch (Exception ex) {
+                if (!isCurrent(current)) {
+                    // interrupted mid-read by a new subscription or close()
+                    return;
+                }
+                Metrics.increment(ex instanceof HttpTimeoutException ? "live.idle_timeout" : "live.failed");
+                delayMillis = backoffMillis;
+                backoffMillis = Math.min(MAX_BACKOFF.toMillis(), backoffMillis * 2);
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException interrupted) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(Target current, HttpRepo.ServerEvent event) {
+        synchronized (this) {
+            if (!isCurrent(current)) {
+                return;
+            }
+            if (event.id() != null) {
+                lastEventId = event.id();
+            }
+        }
+        Metrics.increment("live.events");
+        switch (event.type()) {
+            case "app" -> {
+                if (event.app() != null) {
+                    listener.onApp(event.app());
+                }
+            }
+            case "session" -> {
+                if (event.session() != null) {
+                    listener.onSession(event.session());
+                }
+            }
+            case "reset" -> listener.onReset();
+            default -> {
+                // unknown event types from newer servers are skipped
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package app;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured, asynchronous logging. A call puts the event into a fixed-size lock-free ring and
+ * returns; formatting and disk I/O happen on a background writer, so logging from the FX thread
+ * or a request path cannot stall it. The writer drains the ring into JSON lines in
+ * {@code launcher.log}, rotating at {@link #MAX_FILE_BYTES} and keeping {@link #KEEP_FILES} old
+ * files. Warnings and errors are echoed to stderr. When the ring is full, events are dropped and
+ * counted as {@code log.dropped} rather than blocking the caller.
+ *
+ * <p>Levels can be changed at runtime with {@link #configure}, e.g. {@code "info"} or
+ * {@code "warn,http=debug"}: a default followed by per-component overrides.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+
+    private record Event(long epochMillis, Level level, String component, String thread, String message,
+                         Throwable error, Object[] fields) {}
+
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final long MAX_FILE_BYTES = 1024L * 1024;
+    private static final int KEEP_FILES = 3;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Bounded multi-producer, single-consumer ring. Producers claim a sequence number with a CAS
+    // on tail and then publish into the slot; the writer only advances head past published slots.
+    private static final AtomicReferenceArray<Event> SLOTS = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong TAIL = new AtomicLong();
+    private static final AtomicLong HEAD = new AtomicLong();
+
+    private static final Map<String, Level> COMPONENT_LEVELS = new ConcurrentHashMap<>();
+    private static volatile Level defaultLevel = Level.INFO;
+    private static volatile Thread writer;
+    private static volatile boolean closed;
+
+    private Log() {
+    }
+
+    /**
+     * Starts the writer for {@code directory}/launcher.log. Events logged earlier are kept in the
+     * ring and written once it runs.
+     */
+    public static synchronized void start(Path directory) {
+        if (writer != null) {
+            return;
+        }
+        closed = false;
+        Path file = directory.resolve("launcher.log");
+        Thread thread = new Thread(() -> drainLoop(file), "couchlauncherfx-log");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        writer = thread;
+        thread.start();
+        Metrics.gauge("log.queued", () -> TAIL.get() - HEAD.get());
+    }
+
+    /** Writes whatever is queued and stops the writer. */
+    public static void close() {
+        Thread thread;
+        synchronized (Log.class) {
+            thread = writer;
+            writer = null;
+            closed = true;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Applies a level spec: a default level, then {@code component=level} overrides, comma
+     * separated. Unknown entries are ignored.
+     *
+     * @return whether anything in the spec was understood
+     */
+    public static boolean configure(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return false;
+        }
+        boolean understood = false;
+        for (String part : spec.split(",")) {
+            String entry = part.trim();
+            int equals = entry.indexOf('=');
+            Level level = parseLevel(equals < 0 ? entry : entry.substring(equals + 1));
+            if (level == null) {
+                continue;
+            }
+            if (equals < 0) {
+                defaultLevel = level;
+                COMPONENT_LEVELS.clear();
+            } else {
+                COMPONENT_LEVELS.put(entry.substring(0, equals).trim(), level);
+            }
+            understood = true;
+        }
+        return understood;
+    }
+
+    public static boolean isEnabled(String component, Level level) {
+        return level.compareTo(COMPONENT_LEVELS.getOrDefault(component, defaultLevel)) >= 0;
+    }
+
+    /** {@code fields} are alternating names and values. */
+    public static void debug(String component, String message, Object... fields) {
+        log(Level.DEBUG, component, message, null, fields);
+    }
+
+    public static void info(String component, String message, Object... fields) {
+        log(Level.INFO, component, message, null, fields);
+    }
+
+    public static void warn(String component, String message, Throwable error, Object... fields) {
+        log(Level.WARN, component, message, error, fields);
+    }
+
+    public static void error(String component, String message, Throwable error, Object... fields) {
+        log(Level.ERROR, component, message, error, fields);
+    }
+
+    public static void log(Level level, String component, String message, Throwable error, Object... fields) {
+        if (!isEnabled(component, level)) {
+            return;
+        }
+        Event event = new Event(System.currentTimeMillis(), level, component, Thread.currentThread().getName(),
+                message, error, fields);
+        long queued;
+        while (true) {
+            long tail = TAIL.get();
+            queued = tail - HEAD.get();
+            if (queued >= CAPACITY) {
+                Metrics.increment("log.dropped");
+                return;
+            }
+            if (TAIL.compareAndSet(tail, tail + 1)) {
+                SLOTS.set((int) (tail & MASK), event);
+                break;
+            }
+        }
+        Thread thread = writer;
+        if (thread != null && (level == Level.ERROR || queued >= CAPACITY / 2)) {
+            // Flush errors early and drain a filling ring before it drops; unpark never blocks.
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static Level parseLevel(String value) {
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static void drainLoop(Path file) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(16 * 1024);
+        while (true) {
+            boolean stopping = closed;
+            batch.reset();
+            int written = drainInto(batch);
+            if (written > 0) {
+                append(file, batch.toByteArray());
+            }
+            if (stopping && HEAD.get() == TAIL.get()) {
+                return;
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+            }
+        }
+    }
+
+    private static int drainInto(OutputStream out) {
+        int count = 0;
+        long head = HEAD.get();
+        while (count < CAPACITY) {
+            int index = (int) (head & MASK);
+            Event event = SLOTS.get(index);
+            if (event == null) {
+                // empty, or claimed but not yet published; picked up on the next pass
+                break;
+            }
+            SLOTS.set(index, null);
+            HEAD.set(++head);
+            count++;
+            try {
+                writeEvent(event, out);
+            } catch (IOException | RuntimeException ex) {
+                Metrics.increment("log.format_failed");
+            }
+            if (event.level().compareTo(Level.WARN) >= 0) {
+                System.err.println(event.level() + " [" + event.component() + "] " + event.message()
+                        + (event.error() != null ? ": " + event.error() : ""));
+            }
+        }
+        return count;
+    }
+
+    private static void writeEvent(Event event, OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeStringField("ts", Instant.ofEpochMilli(event.epochMillis()).toString());
+            json.writeStringField("level", event.level().name());
+            json.writeStringField("component", event.component());
+            json.writeStringField("thread", event.thread());
+            json.writeStringField("msg", event.message());
+            Object[] fields = event.fields();
+            for (int i = 0; fields != null && i + 1 < fields.length; i += 2) {
+                json.writeFieldName(String.valueOf(fields[i]));
+                Object value = fields[i + 1];
+                if (value == null) {
+                    json.writeNull();
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    json.writeObject(value);
+                } else {
+                    json.writeString(value.toString());
+                }
+            }
+            if (event.error() != null) {
+                StringWriter trace = new StringWriter();
+                event.error().printStackTrace(new PrintWriter(trace));
+                json.writeStringField("error", event.error().toString());
+                json.writeStringField("stack", trace.toString());
+            }
+            json.writeEndObject();
+        }
+        out.write('\n');
+    }
+
+    private static void append(Path file, byte[] lines) {
+        try {
+            Files.createDirectories(file.getParent());
+            if (Files.exists(file) && Files.size(file) + lines.length > MAX_FILE_BYTES) {
+                rotate(file);
+            }
+            Files.write(file, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Metrics.counter("log.bytes_written").addAndGet(lines.length);
+        } catch (IOException ex) {
+            // Nowhere left to report this but the metrics file.
+            Metrics.increment("log.write_failed");
+        }
+    }
+
+    private static void rotate(Path file) throws IOException {
+        for (int i = KEEP_FILES - 1; i >= 1; i--) {
+            Path older = file.resolveSibling(file.getFileName() + "." + i);
+            if (Files.exists(older)) {
+                Files.move(older, file.resolveSibling(file.getFileName() + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
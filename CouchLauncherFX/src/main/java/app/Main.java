@@ -2,8 +2,6 @@ package app;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import javafx.animation.FadeTransition;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.HPos;
@@ -12,13 +10,14 @@ import javafx.geometry.Pos;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.Node;
-import javafx.scene.control.Alert;
+import javafx.scene.TraversalDirection;
 import javafx.scene.control.Button;
-import javafx.scene.control.ButtonType;
+import javafx.scene.control.ButtonBase;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
+import javafx.scene.control.Toggle;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.effect.DropShadow;
@@ -39,21 +38,27 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
@@ -64,22 +69,63 @@ public class Main extends Application {
     private static final Path CONFIG_DIR = Path.of(System.getProperty("user.home"), ".config", "couchlauncherfx");
     private static final Path CONFIG_FILE = CONFIG_DIR.resolve("config.json");
     private static final Path CACHE_FILE = CONFIG_DIR.resolve("apps_cache.json");
+    private static final Path METRICS_FILE = CONFIG_DIR.resolve("metrics.json");
+    private static final Path STREAMS_DIR = CONFIG_DIR.resolve("streams");
+    private static final Path HISTORY_FILE = CONFIG_DIR.resolve("play_history.log");
+    private static final long METRICS_FLUSH_MILLIS = 60_000;
+    private static final int HISTORY_SECTION_TILES = 10;
+    private static final long CATALOG_FRESH_MILLIS = 120_000;
+    private static final java.time.Duration PEER_CACHE_MAX_AGE = java.time.Duration.ofMinutes(10);
+    private static final long RESIDENT_TRIM_DELAY_MILLIS = 2_000;
+    private static final long PEER_CACHE_PRESSURE_BYTES = 2L * 1024 * 1024;
     private static final int TOTAL_STEPS = 3;
-    private static final java.time.Duration INITIAL_TIMEOUT = java.time.Duration.ofSeconds(3);
     private static final ObjectMapper CONFIG_MAPPER = new ObjectMapper();
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
-        Thread thread = new Thread(runnable, "couchlauncherfx-worker");
-        thread.setDaemon(true);
-        return thread;
+    private final TaskScheduler scheduler = new TaskScheduler();
+    private final CatalogCache catalogCache = new CatalogCache(CACHE_FILE);
+    private final StreamSupervisor streamSupervisor = new StreamSupervisor(STREAMS_DIR);
+    private final LaunchPipeline launchPipeline = new LaunchPipeline(this::spawnStreamClient, streamSupervisor::stop, new NetworkProbe());
+    private final PrewarmEngine prewarmEngine = new PrewarmEngine(scheduler, PrewarmEngine.Policy.DEFAULT, this::predictNextLaunches);
+    private RefreshPlanner refreshPlanner;
+    private ScheduledFuture<?> autoRefresh;
+    // FX thread only; the refresh the user is waiting on, until its outcome is shown
+    private Object foregroundRefresh;
+    private final HealthMonitor healthMonitor = new HealthMonitor(scheduler);
+    private final ResourceGovernor resourceGovernor = new ResourceGovernor();
+    private final MemoryGovernor memoryGovernor = new MemoryGovernor(MemoryGovernor.Policy.DEFAULT);
+    private final FrameMonitor frameMonitor = new FrameMonitor();
+    private final PlayHistory playHistory = new PlayHistory(HISTORY_FILE, scheduler);
+    private Process launchedStream;
+    private Integer launchedSessionId;
+    private String launchedAppId;
+    private PeerCache peerCache;
+    private ResidentControl residentControl;
+    private volatile boolean hidden;
+    private final LiveUpdates liveUpdates = new LiveUpdates(new LiveUpdates.Listener() {
+        @Override
+        public void onApp(AppTile tile) {
+            Platform.runLater(() -> applyTilePatch(tile));
+        }
+
+        @Override
+        public void onSession(HttpRepo.SessionResponse response) {
+            Platform.runLater(() -> onSessionChanged(response));
+        }
+
+        @Override
+        public void onReset() {
+            // Missed more changes than the server keeps; reload the catalog instead.
+            Platform.runLater(() -> refreshData(true));
+        }
     });
 
     private final ControllerService controllerService = new ControllerService();
+    private final ControllerRegistry controllerRegistry = new ControllerRegistry(controllerService);
     private ControllerService.ControllerInfo lastControllerInfo = new ControllerService.ControllerInfo(false, Optional.empty());
     private boolean firstLaunchFlow;
     private boolean hasUsersAvailable;
-    private boolean controllerConnected;
 
+    private Stage stage;
     private Scene scene;
     private StackPane root;
     private final StackPane overlayLayer = new StackPane();
@@ -89,11 +135,10 @@ public class Main extends Application {
     private HubPane hubPane;
     private HostSettingsOverlay hostSettingsOverlay;
     private LoginOverlay loginOverlay;
+    private GamepadNavigator gamepadNavigator;
 
     private LauncherConfig config;
-    private HttpRepo.UserProfile session;
-    private boolean offlineMode;
-    private List<AppTile> currentTiles = new ArrayList<>();
+    private final StateStore<LauncherState> state = new StateStore<>(LauncherState.INITIAL, Platform::requestNextPulse);
 
     private TextField hostField;
 
@@ -112,25 +157,41 @@ public class Main extends Application {
         OTHER
     }
 
-    private record RepoResult(List<AppTile> apps, boolean fromCache, String rawJson) {
-    }
-
     public static void main(String[] args) {
+        // A resident launcher is already warm; bring its window back instead of starting a second one.
+        if (ResidentControl.signal("show", ResidentControl.port())) {
+            return;
+        }
         launch(args);
     }
 
     @Override
     public void start(Stage stage) {
+        this.stage = stage;
+        Log.start(CONFIG_DIR);
+        Log.configure(System.getenv("COUCH_LOG_LEVEL"));
         config = LauncherConfig.load();
+        if (config.consoleIdUnsaved) {
+            // The refresh spread is keyed on this id; it has to survive restarts from the first boot on.
+            saveConfig();
+        }
+        playHistory.load();
+        refreshPlanner = new RefreshPlanner(config.consoleId, RefreshPlanner.Policy.DEFAULT);
+        if (config.peerCache || "1".equals(System.getenv("COUCH_PEER_CACHE"))) {
+            startPeerCache();
+        }
 
         root = new StackPane();
         root.getStyleClass().add("root-container");
 
         overlayLayer.setMouseTransparent(true);
 
-        scene = new Scene(new StackPane(root, overlayLayer), 1280, 800);
+        scene = new Scene(new StackPane(root, overlayLayer, frameMonitor.hud()), 1280, 800);
         scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/application.css")).toExternalForm());
 
+        // State changes reach the UI once per pulse, however many arrived since the last one.
+        scene.addPreLayoutPulseListener(state::deliver);
+
         stage.setScene(scene);
         stage.setTitle("Couch Launcher");
         stage.setFullScreenExitHint("Press ESC to exit");
@@ -139,13 +200,19 @@ public class Main extends Application {
 
         scene.setOnKeyPressed(event -> {
             if (event.getCode() == KeyCode.ESCAPE) {
-                stage.close();
+                if (residentControl != null) {
+                    hideWindow();
+                } else {
+                    stage.close();
+                }
+            } else if (event.getCode() == KeyCode.F3) {
+                frameMonitor.setHudVisible(!frameMonitor.isHudVisible());
             }
         });
 
-        connectPane = new ConnectPane(executor, controllerService, this::handleConnectContinue, this::openSettings);
+        connectPane = new ConnectPane(controllerService, this::handleConnectContinue, this::openSettings);
         userSelectPane = new UserSelectPane(this::handleUserContinue, this::openCreateAccount, this::openLogin, this::openSettings);
-        hubPane = new HubPane(this::openSettings, this::refreshData, this::openLoginFromHub);
+        hubPane = new HubPane(this::openSettings, this::refreshData, this::openLoginFromHub, () -> scheduler.cancel("launch"));
 
         hostSettingsOverlay = new HostSettingsOverlay(() -> overlayLayer.setMouseTransparent(true), this::applyHostChanges, this::refreshData);
         loginOverlay = new LoginOverlay(() -> overlayLayer.setMouseTransparent(true), this::attemptLogin, this::attemptCreateAccount);
@@ -153,20 +220,52 @@ public class Main extends Application {
         root.getChildren().setAll(connectPane.getNode(), userSelectPane.getNode(), hubPane.getNode());
         overlayLayer.getChildren().addAll(hostSettingsOverlay.getNode(), loginOverlay.getNode());
 
+        gamepadNavigator = new GamepadNavigator();
+        state.addListener(this::onStateChanged);
+
         initializeFormValues();
         showScreen(Screen.CONNECT, false);
+        controllerService.start();
+        streamSupervisor.addListener(stream -> Platform.runLater(() -> onStreamExit(stream)));
+        healthMonitor.addListener(status -> Platform.runLater(() -> onHealthChanged(status)));
+        healthMonitor.monitor(resolvedHost());
+        frameMonitor.setHudVisible("1".equals(System.getenv("COUCH_FRAME_HUD")));
+        frameMonitor.start();
+        registerQuietParticipants();
+        registerMemorySteps();
+        if (config.resident || getParameters().getRaw().contains("--resident") || "1".equals(System.getenv("COUCH_RESIDENT"))) {
+            startResident();
+        }
         evaluateStartupRoute();
+        scheduleMetricsFlush();
     }
 
     @Override
     public void stop() {
-        executor.shutdownNow();
+        if (residentControl != null) {
+            residentControl.close();
+        }
+        memoryGovernor.close();
+        liveUpdates.close();
+        if (peerCache != null) {
+            HttpRepo.usePeerCache(null);
+            peerCache.close();
+        }
+        healthMonitor.close();
+        controllerService.close();
+        gamepadNavigator.close();
+        playHistory.flush();
+        scheduler.close();
+        flushMetrics();
+        Log.close();
     }
 
     // --------------------------------------------------------------------- UI
 
     private void showScreen(Screen screen, boolean animate) {
         this.currentScreen = screen;
+        frameMonitor.setScreen(screen.name().toLowerCase(Locale.ENGLISH));
+        frameMonitor.markAction("show-screen");
         connectPane.setVisible(screen == Screen.CONNECT);
         userSelectPane.setVisible(screen == Screen.USER_SELECT);
         hubPane.setVisible(screen == Screen.HUB);
@@ -188,6 +287,7 @@ public class Main extends Application {
             }
             case USER_SELECT -> {
                 userSelectPane.prepare(config.username);
+                boolean controllerConnected = state.get().controllerConnected();
                 userSelectPane.configure(firstLaunchFlow, controllerConnected);
                 userSelectPane.setHasUsers(hasUsersAvailable);
                 userSelectPane.updateControllerPresence(controllerConnected, lastControllerInfo.label());
@@ -195,9 +295,17 @@ public class Main extends Application {
             case HUB -> {
                 overlayLayer.setMouseTransparent(true);
                 hubPane.onShown();
-                refreshDefaultRepo(true);
-                if (!offlineMode) {
-                    fetchUserPresence();
+                subscribeLiveUpdates();
+                if (catalogFresh()) {
+                    // Loaded moments ago by the startup bootstrap or the login response.
+                    LauncherState current = state.get();
+                    hubPane.displayTiles(current.tiles());
+                    if (current.presence() != null) {
+                        applyPresence(current.presence());
+                    }
+                    scheduleAutoRefresh(refreshPlanner.afterSuccess(Instant.now(), latestChartDate()));
+                } else {
+                    refreshDefaultRepo(true, false);
                 }
             }
         }
@@ -207,6 +315,8 @@ public class Main extends Application {
         FadeTransition transition = new FadeTransition(Duration.millis(350), node);
         transition.setFromValue(0.0);
         transition.setToValue(1.0);
+        frameMonitor.beginAction("fade");
+        transition.setOnFinished(event -> frameMonitor.endAction("fade"));
         transition.play();
     }
 
@@ -217,6 +327,7 @@ public class Main extends Application {
         }
         onControllerStatus(info);
         userSelectPane.prepare(config.username);
+        boolean controllerConnected = state.get().controllerConnected();
         userSelectPane.configure(firstLaunchFlow, controllerConnected);
         userSelectPane.setHasUsers(hasUsersAvailable);
         userSelectPane.updateControllerPresence(controllerConnected, info.label());
@@ -227,7 +338,7 @@ public class Main extends Application {
     }
 
     private void handleUserContinue() {
-        if (session == null) {
+        if (state.get().session() == null) {
             openLogin();
             return;
         }
@@ -236,7 +347,7 @@ public class Main extends Application {
 
     private void openSettings() {
         overlayLayer.setMouseTransparent(false);
-        hostSettingsOverlay.show(resolvedHost(), offlineMode);
+        hostSettingsOverlay.show(resolvedHost(), state.get().offline());
     }
 
     private void applyHostChanges(String host) {
@@ -247,6 +358,8 @@ public class Main extends Application {
         hostField.setText(sanitized);
         config.host = sanitized;
         saveConfig();
+        healthMonitor.monitor(sanitized);
+        subscribeLiveUpdates();
         refreshData();
     }
 
@@ -274,127 +387,289 @@ public class Main extends Application {
         hostField.setText(initialHost);
     }
 
+    /**
+     * A refresh the user asked for. While the health monitor has the host down, foreground
+     * requests fail fast without touching the network, so probe the host first instead.
+     */
     private void refreshData() {
-        if (session == null) {
-            refreshDefaultRepo(false);
+        if (!healthMonitor.isDown()) {
+            refreshData(false);
+            return;
+        }
+        if (currentScreen != Screen.HUB) {
+            return;
+        }
+        hubPane.showLoading();
+        healthMonitor.probeNow().whenComplete((status, throwable) -> Platform.runLater(() -> {
+            if (status != null && status.state() != HealthMonitor.State.DOWN) {
+                // Supersedes the background refresh onHealthChanged just queued, so the user sees the outcome.
+                refreshData(false);
+            } else {
+                handleRepoFailure(new IllegalStateException("Server unreachable"), false);
+            }
+        }));
+    }
+
+    /**
+     * @param background a scheduled refresh: no loading indicator, and failures only mark the hub offline
+     */
+    private void refreshData(boolean background) {
+        if (state.get().session() == null) {
+            refreshDefaultRepo(false, background);
         } else {
-            refreshUserRepo();
+            refreshUserRepo(background);
         }
     }
 
-    private void refreshDefaultRepo(boolean initial) {
-        if (currentScreen != Screen.HUB) {
+    private void refreshDefaultRepo(boolean initial, boolean background) {
+        if (currentScreen != Screen.HUB || yieldsToUser(background)) {
             return;
         }
-        hubPane.showLoading();
-        CompletableFuture.supplyAsync(() -> {
-            String host = resolvedHost();
+        Object token = beginRefresh(background);
+        String host = resolvedHost();
+        HttpRepo.UserProfile session = state.get().session();
+        Consumer<List<AppTile>> onBatch = firstScreenful(background);
+        scheduler.submit(TaskScheduler.Lane.REFRESH, "catalog", () -> {
+            Integer preloadUser = session != null ? session.userId() : config.userId;
+            Integer preloadOrg = session != null && session.primaryOrgId() != null
+                    ? session.primaryOrgId()
+                    : config.orgId;
+            if (healthMonitor.isDown()) {
+                // already known to be unreachable, so no point waiting out the timeout
+                List<AppTile> cachedApps = catalogCache.read();
+                if (cachedApps != null) {
+                    return new CatalogCache.Loaded(cachedApps, true, null);
+                }
+                throw new CompletionException(new IllegalStateException("Server unreachable"));
+            }
             try {
-                Integer preloadUser = session != null ? session.userId() : config.userId;
-                Integer preloadOrg = session != null && session.primaryOrgId() != null
-                        ? session.primaryOrgId()
-                        : config.orgId;
-                HttpRepo.CatalogResult catalog = HttpRepo.loadCatalog(
+                return catalogCache.load(
                         host,
                         preloadUser,
                         preloadOrg,
-                        initial ? INITIAL_TIMEOUT : java.time.Duration.ofSeconds(5),
-                        3
+                        initial ? CatalogCache.FIRST_LOAD_TIMEOUT : CatalogCache.LOAD_TIMEOUT,
+                        onBatch,
+                        ex -> {
+                            healthMonitor.reportFailure();
+                            Log.warn("catalog", "Catalog load failed, falling back to cache", ex, "host", host);
+                        }
                 );
-                CacheManager.save(catalog.rawJson());
-                return new RepoResult(catalog.tiles(), false, catalog.rawJson());
+            } catch (InterruptedException superseded) {
+                throw superseded;
             } catch (Exception ex) {
-                String cached = CacheManager.read();
-                if (cached != null) {
-                    try {
-                        List<AppTile> cachedApps = HttpRepo.parseApps(cached);
-                        return new RepoResult(cachedApps, true, cached);
-                    } catch (Exception ignored) {
-                    }
-                }
                 throw new CompletionException(ex);
             }
-        }, executor).whenComplete((result, throwable) -> Platform.runLater(() -> {
+        }).whenComplete((result, throwable) -> Platform.runLater(() -> {
+            endRefresh(token);
+            if (TaskScheduler.isCancellation(throwable)) {
+                return;
+            }
             if (throwable != null) {
-                handleRepoFailure(throwable);
+                handleRepoFailure(throwable, background);
             } else {
-                offlineMode = result.fromCache();
-                hubPane.setOffline(offlineMode);
-                currentTiles = result.apps();
-                hubPane.displayTiles(currentTiles);
-                hubPane.showStatus(offlineMode ? "Offline mode (cache)" : "Loaded default charts");
-                if (!offlineMode) {
-                    fetchUserPresence();
+                boolean fromCache = result.fromCache();
+                LauncherState current = state.update(s -> s.withOffline(fromCache).withCatalog(result.tiles(), !fromCache));
+                hubPane.showStatus(fromCache ? "Offline mode (cache)" : "Loaded default charts");
+                if (!fromCache) {
+                    prewarmEngine.predict(host, current.tiles());
+                    applyPresence(result.presence());
                 }
+                scheduleAutoRefresh(fromCache ? refreshPlanner.afterFailure() : refreshPlanner.afterSuccess(Instant.now(), latestChartDate()));
             }
         }));
     }
 
-    private void refreshUserRepo() {
-        if (session == null || currentScreen != Screen.HUB) {
+    private void refreshUserRepo(boolean background) {
+        HttpRepo.UserProfile session = state.get().session();
+        if (session == null || currentScreen != Screen.HUB || yieldsToUser(background)) {
             return;
         }
-        hubPane.showLoading();
-        CompletableFuture.supplyAsync(() -> {
+        Object token = beginRefresh(background);
+        String host = resolvedHost();
+        Consumer<List<AppTile>> onBatch = firstScreenful(background);
+        scheduler.submit(TaskScheduler.Lane.REFRESH, "catalog", () -> {
             try {
                 Integer orgId = session.primaryOrgId() != null ? session.primaryOrgId() : config.orgId;
-                HttpRepo.CatalogResult catalog = HttpRepo.loadCatalog(
-                        resolvedHost(),
-                        session.userId(),
-                        orgId,
-                        java.time.Duration.ofSeconds(5),
-                        3
-                );
-                CacheManager.save(catalog.rawJson());
-                return new RepoResult(catalog.tiles(), false, catalog.rawJson());
+                if (healthMonitor.isDown()) {
+                    throw new IllegalStateException("Server unreachable");
+                }
+                HttpRepo.Bootstrap bootstrap = HttpRepo.bootstrap(host, session.userId(), orgId, CatalogCache.LOAD_TIMEOUT, onBatch);
+                List<AppTile> tiles = bootstrap.catalog().tiles();
+                catalogCache.save(tiles);
+                return new CatalogCache.Loaded(tiles, false, bootstrap.presence());
+            } catch (InterruptedException superseded) {
+                // a newer refresh took over; not a failure of the host
+                throw superseded;
             } catch (Exception ex) {
+                healthMonitor.reportFailure();
+                Log.warn("catalog", "User catalog load failed", ex, "host", host, "user", session.userId());
                 throw new CompletionException(ex);
             }
-        }, executor).whenComplete((result, throwable) -> Platform.runLater(() -> {
+        }).whenComplete((result, throwable) -> Platform.runLater(() -> {
+            endRefresh(token);
+            if (TaskScheduler.isCancellation(throwable)) {
+                return;
+            }
             if (throwable != null) {
-                handleRepoFailure(throwable);
+                handleRepoFailure(throwable, background);
             } else {
-                offlineMode = false;
-                hubPane.setOffline(false);
-                currentTiles = result.apps();
-                hubPane.displayTiles(currentTiles);
+                LauncherState current = state.update(s -> s.withOffline(false).withCatalog(result.tiles(), true));
                 hubPane.showStatus("Loaded catalog for " + session.username());
+                prewarmEngine.predict(host, current.tiles());
+                scheduleAutoRefresh(refreshPlanner.afterSuccess(Instant.now(), latestChartDate()));
             }
         }));
     }
 
-    private void handleRepoFailure(Throwable throwable) {
-        offlineMode = true;
-        hubPane.setOffline(true);
-        if (!currentTiles.isEmpty()) {
-            hubPane.displayTiles(currentTiles);
+    /**
+     * Background refreshes share the {@code "catalog"} key with the user's, so one started while
+     * the user's is in flight would cancel it and leave the hub on its spinner. They wait instead;
+     * the user's refresh schedules the next one when it finishes.
+     */
+    private boolean yieldsToUser(boolean background) {
+        if (background && foregroundRefresh != null) {
+            Metrics.increment("catalog.background_yielded");
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns the token of a user refresh, for {@link #endRefresh}, or {@code null} for a background one. */
+    private Object beginRefresh(boolean background) {
+        if (background) {
+            return null;
+        }
+        hubPane.showLoading();
+        Object token = new Object();
+        foregroundRefresh = token;
+        return token;
+    }
+
+    private void endRefresh(Object token) {
+        if (token != null && foregroundRefresh == token) {
+            foregroundRefresh = null;
+        }
+    }
+
+    /**
+     * Shows the first batch of a catalog that is still streaming in, but only on an empty hub;
+     * an existing catalog stays up until the new one is complete.
+     */
+    private Consumer<List<AppTile>> firstScreenful(boolean background) {
+        if (background || !state.get().tiles().isEmpty()) {
+            return null;
+        }
+        AtomicBoolean shown = new AtomicBoolean();
+        return batch -> {
+            if (shown.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    if (state.get().tiles().isEmpty() && currentScreen == Screen.HUB) {
+                        hubPane.displayTiles(batch);
+                    }
+                });
+            }
+        };
+    }
+
+    private void handleRepoFailure(Throwable throwable, boolean background) {
+        List<AppTile> tiles = state.update(s -> s.withOffline(true)).tiles();
+        scheduleAutoRefresh(refreshPlanner.afterFailure());
+        if (background) {
+            return;
+        }
+        if (!tiles.isEmpty()) {
+            hubPane.displayTiles(tiles);
         }
         hubPane.showServerError("Server unavailable", this::refreshData);
         hubPane.showStatus("Failed to contact server: " + throwable.getClass().getSimpleName());
     }
 
-    private void fetchUserPresence() {
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return HttpRepo.fetchUserPresence(resolvedHost());
-            } catch (Exception ex) {
-                throw new CompletionException(ex);
+    private void onHealthChanged(HealthMonitor.Status status) {
+        if (status.state() == HealthMonitor.State.DOWN) {
+            state.update(s -> s.withOffline(true));
+            if (currentScreen == Screen.HUB) {
+                hubPane.showStatus("Server unreachable; showing cached catalog");
             }
-        }, executor).whenComplete((presence, throwable) -> Platform.runLater(() -> {
-            if (throwable != null) {
-                loginOverlay.showPresenceMessage("Server unavailable for account check");
-            } else if (!presence.hasUsers()) {
-                loginOverlay.showPresenceMessage("No users found. Create the first account.");
-                userSelectPane.setHasUsers(false);
-            } else {
-                loginOverlay.showPresenceMessage("Sign in to load your library.");
-                userSelectPane.setHasUsers(true);
+        } else if (status.state() == HealthMonitor.State.HEALTHY && state.get().offline()) {
+            state.update(s -> s.withOffline(false));
+            liveUpdates.reconnect();
+            refreshData(true);
+        }
+    }
+
+    private void subscribeLiveUpdates() {
+        HttpRepo.UserProfile session = state.get().session();
+        if (session != null) {
+            liveUpdates.subscribe(resolvedHost(), session.userId(), session.primaryOrgId());
+        }
+    }
+
+    /**
+     * Replaces one catalog entry with the version pushed by the server. The hub picks it up on the
+     * next pulse, patching the buttons in place unless the change moves the tile.
+     */
+    private void applyTilePatch(AppTile patch) {
+        if (state.update(s -> s.withTile(patch)).tiles().contains(patch)) {
+            Metrics.increment("live.tile_patched");
+        }
+        // otherwise not in the loaded catalog; the next refresh brings it in if it belongs there
+    }
+
+    private void onStateChanged(LauncherState previous, LauncherState current) {
+        if (previous.offline() != current.offline()) {
+            hubPane.setOffline(current.offline());
+        }
+        if (previous.tiles() != current.tiles() && currentScreen == Screen.HUB) {
+            hubPane.showCatalog(previous.tiles(), current.tiles());
+        }
+    }
+
+    private void onSessionChanged(HttpRepo.SessionResponse response) {
+        if (launchedSessionId != null && launchedSessionId == response.id() && response.failed()) {
+            launchedSessionId = null;
+            hubPane.showStatus("Session " + response.status() + " by the server");
+        }
+    }
+
+    private void scheduleAutoRefresh(java.time.Duration delay) {
+        if (autoRefresh != null) {
+            autoRefresh.cancel(false);
+        }
+        autoRefresh = scheduler.schedule(TaskScheduler.Lane.REFRESH, "catalog-auto", delay.toMillis(), () -> {
+            Platform.runLater(() -> refreshData(true));
+            return null;
+        });
+    }
+
+    private String latestChartDate() {
+        String latest = null;
+        for (AppTile tile : state.get().tiles()) {
+            if (tile.chartDate != null && (latest == null || tile.chartDate.compareTo(latest) > 0)) {
+                latest = tile.chartDate;
             }
-        }));
+        }
+        return latest;
+    }
+
+    private void applyPresence(HttpRepo.UserPresence presence) {
+        state.update(s -> s.withPresence(presence));
+        if (!presence.hasUsers()) {
+            loginOverlay.showPresenceMessage("No users found. Create the first account.");
+            userSelectPane.setHasUsers(false);
+        } else {
+            loginOverlay.showPresenceMessage("Sign in to load your library.");
+            userSelectPane.setHasUsers(true);
+        }
+    }
+
+    private boolean catalogFresh() {
+        long loadedNanos = state.get().catalogLoadedNanos();
+        return loadedNanos != 0
+                && System.nanoTime() - loadedNanos < java.time.Duration.ofMillis(CATALOG_FRESH_MILLIS).toNanos();
     }
 
     private void attemptLogin(String username, String password) {
-        if (offlineMode) {
+        if (state.get().offline()) {
             loginOverlay.showError("Offline mode. Connect to server to sign in.");
             return;
         }
@@ -403,13 +678,14 @@ public class Main extends Application {
             return;
         }
         loginOverlay.setBusy(true, "Signing in...");
-        CompletableFuture.supplyAsync(() -> {
+        String host = resolvedHost();
+        scheduler.submit(TaskScheduler.Lane.INTERACTIVE, "auth", () -> {
             try {
-                return HttpRepo.login(resolvedHost(), username, password);
+                return HttpRepo.login(host, username, password);
             } catch (Exception ex) {
                 throw new CompletionException(ex);
             }
-        }, executor).whenComplete((profile, throwable) -> Platform.runLater(() -> {
+        }).whenComplete((profile, throwable) -> Platform.runLater(() -> {
             loginOverlay.setBusy(false, "");
             if (throwable != null) {
                 loginOverlay.showError(summarizeError(throwable));
@@ -420,7 +696,7 @@ public class Main extends Application {
     }
 
     private void attemptCreateAccount(String username, String password) {
-        if (offlineMode) {
+        if (state.get().offline()) {
             loginOverlay.showError("Offline mode. Connect to server to create accounts.");
             return;
         }
@@ -429,13 +705,14 @@ public class Main extends Application {
             return;
         }
         loginOverlay.setBusy(true, "Creating account...");
-        CompletableFuture.supplyAsync(() -> {
+        String host = resolvedHost();
+        scheduler.submit(TaskScheduler.Lane.INTERACTIVE, "auth", () -> {
             try {
-                return HttpRepo.register(resolvedHost(), username, password);
+                return HttpRepo.register(host, username, password);
             } catch (Exception ex) {
                 throw new CompletionException(ex);
             }
-        }, executor).whenComplete((profile, throwable) -> Platform.runLater(() -> {
+        }).whenComplete((profile, throwable) -> Platform.runLater(() -> {
             loginOverlay.setBusy(false, "");
             if (throwable != null) {
                 loginOverlay.showError(summarizeError(throwable));
@@ -446,13 +723,13 @@ public class Main extends Application {
     }
 
     private void handleLoginSuccess(HttpRepo.UserProfile profile) {
-        session = profile;
-        offlineMode = false;
-        hubPane.setOffline(false);
+        // The login response already carries the user's merged catalog.
+        state.update(s -> s.withSession(profile)
+                .withOffline(false)
+                .withControllerConnected(true)
+                .withCatalog(profile.apps(), true));
         loginOverlay.hide();
         overlayLayer.setMouseTransparent(true);
-        currentTiles = profile.apps();
-        hubPane.displayTiles(currentTiles);
         hubPane.showStatus("Welcome, " + profile.username());
         config.username = profile.username();
         config.userId = profile.userId();
@@ -462,9 +739,7 @@ public class Main extends Application {
         userSelectPane.prepare(profile.username());
         firstLaunchFlow = false;
         hasUsersAvailable = true;
-        controllerConnected = true;
         showScreen(Screen.HUB, true);
-        refreshUserRepo();
     }
 
     private void launch(AppTile app) {
@@ -473,64 +748,343 @@ public class Main extends Application {
             return;
         }
         String hostValue = resolvedHost();
-        boolean stubLaunch = false;
-        HttpRepo.SessionResponse sessionResponse = null;
-        if (session != null && session.primaryOrgId() != null && app.gameId != null) {
-            try {
-                sessionResponse = HttpRepo.startSession(hostValue, session.primaryOrgId(), session.userId(), app.gameId);
-                if (sessionResponse.streamUrl() != null && !sessionResponse.streamUrl().isBlank()) {
-                    hubPane.showStatus("Session ready: " + sessionResponse.streamUrl());
-                } else {
-                    hubPane.showStatus("Provisioning session (" + sessionResponse.status() + ")");
-                }
-            } catch (Exception ex) {
-                hubPane.showStatus("Session allocation failed: " + summarizeError(ex));
+        HttpRepo.UserProfile session = state.get().session();
+        LaunchPipeline.Request request = new LaunchPipeline.Request(
+                hostValue,
+                session != null ? session.primaryOrgId() : null,
+                session != null ? session.userId() : null,
+                app
+        );
+        boolean warmHit = prewarmEngine.claim(app);
+        hubPane.showLaunchProgress("Launching " + app.name);
+        scheduler.submit(TaskScheduler.Lane.INTERACTIVE, "launch", () -> launchPipeline.run(request,
+                (stage, message) -> Platform.runLater(() -> hubPane.showLaunchProgress(message))
+        )).whenComplete((result, throwable) -> Platform.runLater(() -> {
+            hubPane.hideLaunchProgress();
+            if (TaskScheduler.isCancellation(throwable)) {
+                Log.info("launch", "Launch cancelled", "app", app.id);
+                hubPane.showStatus("Launch of '" + app.name + "' cancelled");
                 return;
             }
+            if (throwable instanceof LaunchPipeline.StageFailure failure) {
+                Log.warn("launch", "Launch failed", failure.getCause(), "app", app.id, "stage", failure.stage().name());
+                hubPane.showStatus(failure.stage().label() + " failed: " + summarizeError(failure.getCause()));
+                return;
+            }
+            if (throwable != null) {
+                Log.warn("launch", "Launch failed", throwable, "app", app.id);
+                hubPane.showStatus("Launch failed: " + summarizeError(throwable));
+                return;
+            }
+            prewarmEngine.recordLaunch(warmHit, result.totalMillis());
+            onLaunched(result);
+        }));
+    }
+
+    private Process spawnStreamClient(LaunchPipeline.Request request,
+                                      HttpRepo.SessionResponse sessionResponse,
+                                      NetworkProbe.StreamProfile profile) throws IOException {
+        String hostOnly = stripScheme(request.host());
+        List<String> streamArguments = new ArrayList<>(List.of("stream", hostOnly, "--app", request.app().moonlightName));
+        if (profile != null) {
+            streamArguments.addAll(profile.clientArguments());
+        }
+        ProcessBuilder builder;
+        String clientOverride = System.getenv("DEV_STREAM_CLIENT");
+        if (clientOverride != null && !clientOverride.isBlank()) {
+            builder = new ProcessBuilder(clientOverride);
+            builder.command().addAll(streamArguments);
+        } else if (detectOperatingSystem() == OperatingSystem.MAC) {
+            builder = new ProcessBuilder("open", "-a", "TextEdit");
+        } else if (!isStubLaunch()) {
+            builder = new ProcessBuilder("flatpak", "run", "com.moonlight_stream.Moonlight");
+            builder.command().addAll(streamArguments);
+        } else {
+            builder = new ProcessBuilder("echo", "Stub launch for " + request.app().name + " -> " + hostOnly);
         }
+        Process process = builder.start();
+        streamSupervisor.attach(request.app().name, process);
+        return process;
+    }
+
+    private void startPeerCache() {
+        PeerCache cache = new PeerCache(PEER_CACHE_MAX_AGE);
         try {
-            OperatingSystem os = detectOperatingSystem();
-            String hostOnly = stripScheme(hostValue);
-            if (os == OperatingSystem.MAC) {
-                new ProcessBuilder("open", "-a", "TextEdit").start();
-                stubLaunch = true;
-            } else if (os == OperatingSystem.LINUX && !forceStub()) {
-                new ProcessBuilder(
-                        "flatpak",
-                        "run",
-                        "com.moonlight_stream.Moonlight",
-                        "stream",
-                        hostOnly,
-                        "--app",
-                        app.moonlightName
-                ).start();
-            } else {
-                new ProcessBuilder("echo", "Stub launch for " + app.name + " -> " + hostOnly).start();
-                stubLaunch = true;
+            // A fixed port lets COUCH_PEERS point several launchers on one machine at each other.
+            String port = System.getenv("COUCH_PEER_PORT");
+            cache.start(port != null ? Integer.parseInt(port.trim()) : 0);
+        } catch (IOException | NumberFormatException ex) {
+            Log.warn("peer-cache", "Peer cache unavailable", ex);
+            cache.close();
+            return;
+        }
+        peerCache = cache;
+        HttpRepo.usePeerCache(cache);
+    }
+
+    private void registerQuietParticipants() {
+        if (peerCache != null) {
+            resourceGovernor.register("peer-cache", new ResourceGovernor.Participant() {
+                @Override
+                public void quiet() {
+                    peerCache.setServing(false);
+                }
+
+                @Override
+                public void resume() {
+                    peerCache.setServing(true);
+                }
+            });
+        }
+        resourceGovernor.register("background-tasks", new ResourceGovernor.Participant() {
+            @Override
+            public void quiet() {
+                scheduler.holdBackground(true);
+            }
+
+            @Override
+            public void resume() {
+                scheduler.holdBackground(false);
+            }
+        });
+        resourceGovernor.register("gamepads", new ResourceGovernor.Participant() {
+            @Override
+            public void quiet() {
+                gamepadNavigator.suspend();
+            }
+
+            @Override
+            public void resume() {
+                if (!hidden) {
+                    gamepadNavigator.resume();
+                }
+            }
+        });
+        resourceGovernor.register("frame-monitor", new ResourceGovernor.Participant() {
+            @Override
+            public void quiet() {
+                Platform.runLater(frameMonitor::stop);
             }
+
+            @Override
+            public void resume() {
+                Platform.runLater(() -> {
+                    if (!hidden) {
+                        frameMonitor.start();
+                    }
+                });
+            }
+        });
+        // Nothing visible means no layout, CSS or render passes while the stream is in front.
+        resourceGovernor.register("scene", new ResourceGovernor.Participant() {
+            @Override
+            public void quiet() {
+                Platform.runLater(() -> scene.getRoot().setVisible(false));
+            }
+
+            @Override
+            public void resume() {
+                Platform.runLater(() -> {
+                    scene.getRoot().setVisible(true);
+                    hubPane.redrawIfReleased();
+                });
+            }
+        });
+        streamSupervisor.addListener(new StreamSupervisor.Listener() {
+            @Override
+            public void onStart(StreamSupervisor.StreamSession stream) {
+                resourceGovernor.setQuiet(true);
+            }
+
+            @Override
+            public void onExit(StreamSupervisor.StreamSession stream) {
+                resourceGovernor.setQuiet(streamSupervisor.hasActiveStream());
+            }
+        });
+    }
+
+    private void registerMemorySteps() {
+        // Speculative work goes first, then shared cache space, then what is drawn on screen.
+        memoryGovernor.register("prefetch", new MemoryGovernor.Participant() {
+            @Override
+            public void shrink() {
+                prewarmEngine.pausePredictions(true);
+            }
+
+            @Override
+            public void restore() {
+                prewarmEngine.pausePredictions(false);
+            }
+        });
+        if (peerCache != null) {
+            memoryGovernor.register("peer-cache", new MemoryGovernor.Participant() {
+                @Override
+                public void shrink() {
+                    peerCache.setByteLimit(PEER_CACHE_PRESSURE_BYTES);
+                }
+
+                @Override
+                public void restore() {
+                    peerCache.setByteLimit(0);
+                }
+            });
+        }
+        // The hub redraws from the state store, so its nodes can go while a stream or nothing is in
+        // front. Ones on screen stay; there is nothing smaller to show instead.
+        memoryGovernor.register("hub-nodes", new MemoryGovernor.Participant() {
+            @Override
+            public void shrink() {
+                Platform.runLater(() -> {
+                    if (hidden || resourceGovernor.isQuiet()) {
+                        hubPane.releaseTiles();
+                    }
+                });
+            }
+
+            @Override
+            public void restore() {
+                Platform.runLater(hubPane::redrawIfReleased);
+            }
+        });
+        memoryGovernor.start();
+    }
+
+    private void startResident() {
+        try {
+            residentControl = new ResidentControl(ResidentControl.port(), new ResidentControl.Handler() {
+                @Override
+                public void show() {
+                    Platform.runLater(Main.this::showWindow);
+                }
+
+                @Override
+                public void hide() {
+                    Platform.runLater(Main.this::hideWindow);
+                }
+
+                @Override
+                public void quit() {
+                    Platform.runLater(Platform::exit);
+                }
+            });
         } catch (IOException ex) {
-            ex.printStackTrace();
-            hubPane.showStatus("Launch failed: " + ex.getMessage());
-            new Alert(Alert.AlertType.ERROR, "Failed to launch: " + ex.getMessage(), ButtonType.OK).showAndWait();
+            // Port already taken, most likely by another resident launcher; run as a normal window.
+            Log.warn("resident", "Control port unavailable, running as a normal window", ex, "port", ResidentControl.port());
+            return;
+        }
+        Platform.setImplicitExit(false);
+        stage.setFullScreenExitHint("Press ESC to hide");
+        stage.setOnCloseRequest(event -> {
+            event.consume();
+            hideWindow();
+        });
+    }
+
+    private void hideWindow() {
+        if (hidden) {
             return;
         }
+        hidden = true;
+        stage.hide();
+        gamepadNavigator.suspend();
+        frameMonitor.stop();
+        Metrics.increment("resident.hidden");
+        // Tiles are text buttons without cover images, but each carries a skin and CSS state and
+        // they are the part of the scene that grows with the catalog. The catalog, caches and HTTP
+        // connections stay, so showing again only rebuilds nodes. Collect once the hidden window
+        // has let go of them, so the JVM can hand the freed heap back to the OS.
+        hubPane.releaseTiles();
+        scheduler.schedule(TaskScheduler.Lane.PREFETCH, "resident-trim", RESIDENT_TRIM_DELAY_MILLIS, () -> {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            long before = memory.getHeapMemoryUsage().getCommitted();
+            System.gc();
+            long after = memory.getHeapMemoryUsage().getCommitted();
+            Metrics.counter("resident.heap_released_kb").addAndGet(Math.max(0, before - after) / 1024);
+            return null;
+        });
+    }
+
+    private void showWindow() {
+        long started = System.nanoTime();
+        if (hidden) {
+            hidden = false;
+            scheduler.cancel("resident-trim");
+            if (currentScreen == Screen.HUB) {
+                LauncherState current = state.get();
+                hubPane.displayTiles(current.tiles());
+                if (current.presence() != null) {
+                    applyPresence(current.presence());
+                }
+                if (!catalogFresh()) {
+                    refreshData(true);
+                }
+            }
+            if (!resourceGovernor.isQuiet()) {
+                gamepadNavigator.resume();
+                frameMonitor.start();
+            }
+            frameMonitor.markAction("show-window");
+        }
+        stage.show();
+        stage.setFullScreen(true);
+        stage.toFront();
+        stage.requestFocus();
+        Metrics.histogram("resident.show").record((System.nanoTime() - started) / 1000L);
+    }
+
+    private void onStreamExit(StreamSupervisor.StreamSession stream) {
+        if (stream.process() != launchedStream) {
+            return;
+        }
+        launchedStream = null;
+        if (launchedAppId != null) {
+            playHistory.recordSession(launchedAppId, stream.durationMillis());
+            launchedAppId = null;
+        }
+        long seconds = stream.durationMillis() / 1000;
+        String message = switch (stream.state()) {
+            case CRASHED -> "Stream of '" + stream.title() + "' crashed after " + seconds + " s (exit " + stream.exitCode() + ")";
+            case STOPPED -> "Stream of '" + stream.title() + "' stopped";
+            default -> "Stream of '" + stream.title() + "' ended after " + seconds + " s";
+        };
+        hubPane.showStatus(message);
+    }
+
+    private List<String> predictNextLaunches(int limit) {
+        return playHistory.top(limit, appId -> true);
+    }
+
+    private boolean isStubLaunch() {
+        return detectOperatingSystem() != OperatingSystem.LINUX || forceStub();
+    }
 
-        config.host = hostValue;
+    private void onLaunched(LaunchPipeline.Result result) {
+        launchedStream = result.process();
+        launchedSessionId = result.session() != null ? result.session().id() : null;
+        config.host = result.request().host();
+        HttpRepo.UserProfile session = state.get().session();
         if (session != null) {
             config.userId = session.userId();
             config.username = session.username();
         }
+        launchedAppId = result.request().app().id;
+        playHistory.recordLaunch(launchedAppId);
         saveConfig();
 
         StringBuilder message = new StringBuilder();
-        message.append(stubLaunch ? "Stub launch" : "Launching");
-        message.append(" '").append(app.name).append("' against host: ").append(hostValue);
+        message.append(isStubLaunch() ? "Stub launch" : "Launched");
+        message.append(" '").append(result.request().app().name).append("' against host: ").append(result.request().host());
+        HttpRepo.SessionResponse sessionResponse = result.session();
         if (sessionResponse != null && sessionResponse.streamUrl() != null) {
-            message.append("\nStream URL: ").append(sessionResponse.streamUrl());
+            message.append(" | stream: ").append(sessionResponse.streamUrl());
         }
-        Alert alert = new Alert(Alert.AlertType.INFORMATION, message.toString(), ButtonType.OK);
-        alert.setHeaderText("Launch");
-        alert.showAndWait();
+        if (result.profile() != null) {
+            message.append(" | ").append(result.profile().label());
+        }
+        message.append(" | ").append(result.totalMillis()).append(" ms");
+        result.stageMillis().forEach((stage, millis) ->
+                message.append(", ").append(stage.name().toLowerCase(Locale.ENGLISH)).append(' ').append(millis).append(" ms"));
+        hubPane.showStatus(message.toString());
     }
 
     private OperatingSystem detectOperatingSystem() {
@@ -553,22 +1107,26 @@ public class Main extends Application {
     }
 
     private void evaluateStartupRoute() {
-        CompletableFuture.supplyAsync(() -> {
+        String host = resolvedHost();
+        scheduler.submit(TaskScheduler.Lane.INTERACTIVE, "startup", () -> {
             boolean controllerConnected = controllerService.isControllerConnected();
             boolean hasUsers = config.hasKnownUser();
             boolean offline = false;
+            HttpRepo.Bootstrap bootstrap = null;
             try {
-                HttpRepo.UserPresence presence = HttpRepo.fetchUserPresence(resolvedHost());
-                hasUsers = presence.hasUsers();
+                bootstrap = HttpRepo.bootstrap(host, config.userId, config.orgId, CatalogCache.LOAD_TIMEOUT);
+                hasUsers = bootstrap.presence().hasUsers();
+                catalogCache.save(bootstrap.catalog().tiles());
             } catch (Exception ex) {
+                Log.info("startup", "Server unreachable, starting offline", "host", host, "error", ex.toString());
                 offline = true;
             }
-            return new StartupState(controllerConnected, hasUsers, offline);
-        }, executor).whenComplete((state, throwable) -> Platform.runLater(() -> handleStartupState(state, throwable)));
+            return new StartupState(controllerConnected, hasUsers, offline, bootstrap);
+        }).whenComplete((state, throwable) -> Platform.runLater(() -> handleStartupState(state, throwable)));
     }
 
-    private void handleStartupState(StartupState state, Throwable throwable) {
-        if (throwable != null || state == null) {
+    private void handleStartupState(StartupState startup, Throwable throwable) {
+        if (throwable != null || startup == null) {
             firstLaunchFlow = !config.hasKnownUser();
             hasUsersAvailable = config.hasKnownUser();
             ControllerService.ControllerInfo info = controllerService.detect();
@@ -579,14 +1137,18 @@ public class Main extends Application {
             return;
         }
 
-        offlineMode = state.offline();
-        firstLaunchFlow = !state.hasUsers();
-        hasUsersAvailable = state.hasUsers();
+        firstLaunchFlow = !startup.hasUsers();
+        hasUsersAvailable = startup.hasUsers();
+        state.update(s -> {
+            LauncherState next = s.withOffline(startup.offline());
+            HttpRepo.Bootstrap bootstrap = startup.bootstrap();
+            return bootstrap == null ? next : next.withPresence(bootstrap.presence()).withCatalog(bootstrap.catalog().tiles(), true);
+        });
 
         ControllerService.ControllerInfo info = controllerService.detect();
         onControllerStatus(info);
 
-        if (!controllerConnected) {
+        if (!state.get().controllerConnected()) {
             if (firstLaunchFlow) {
                 preloadDefaultRepo();
             }
@@ -609,21 +1171,43 @@ public class Main extends Application {
             return;
         }
         lastControllerInfo = info;
-        controllerConnected = info.connected();
-        userSelectPane.updateControllerPresence(controllerConnected, info.label());
+        state.update(s -> s.withControllerConnected(info.connected()));
+        userSelectPane.updateControllerPresence(info.connected(), info.label());
     }
 
     private void preloadDefaultRepo() {
-        CompletableFuture.runAsync(() -> {
+        if (catalogFresh()) {
+            return;
+        }
+        String host = resolvedHost();
+        scheduler.submit(TaskScheduler.Lane.PREFETCH, "catalog-preload", () -> {
             try {
-                String json = HttpRepo.fetchChartsJson(resolvedHost(), INITIAL_TIMEOUT, 3);
-                CacheManager.save(json);
-                List<AppTile> apps = HttpRepo.parseApps(json);
-                currentTiles = apps;
-            } catch (Exception ignored) {
+                List<AppTile> apps = HttpRepo.bootstrap(host, null, null, CatalogCache.FIRST_LOAD_TIMEOUT).catalog().tiles();
+                catalogCache.save(apps);
+                // Only fills an empty slot: a signed-in or fresher catalog that landed meanwhile wins.
+                state.update(s -> s.session() == null && s.catalogLoadedNanos() == 0 ? s.withCatalog(apps, false) : s);
+            } catch (Exception ex) {
                 // Cache warm-up best effort only.
+                Log.info("catalog", "Catalog preload failed", "host", host, "error", ex.toString());
             }
-        }, executor);
+            return null;
+        });
+    }
+
+    private void scheduleMetricsFlush() {
+        scheduler.schedule(TaskScheduler.Lane.PREFETCH, "metrics-flush", METRICS_FLUSH_MILLIS, () -> {
+            flushMetrics();
+            scheduleMetricsFlush();
+            return null;
+        });
+    }
+
+    private void flushMetrics() {
+        try {
+            Metrics.writeJson(METRICS_FILE);
+        } catch (IOException ex) {
+            Log.warn("metrics", "Could not write metrics", ex, "file", METRICS_FILE);
+        }
     }
 
     private void saveConfig() {
@@ -634,13 +1218,23 @@ public class Main extends Application {
             payload.put("username", config.username);
             payload.put("userId", config.userId);
             payload.put("orgId", config.orgId);
+            payload.put("consoleId", config.consoleId);
+            payload.put("peerCache", config.peerCache);
+            payload.put("resident", config.resident);
+            payload.put("gamepadDeadZone", config.gamepadDeadZone);
+            payload.put("gamepadRepeatDelayMs", config.gamepadRepeatDelayMs);
+            payload.put("gamepadRepeatIntervalMs", config.gamepadRepeatIntervalMs);
+            if (config.gamepadAxisMin != null && config.gamepadAxisMax != null) {
+                payload.put("gamepadAxisMin", config.gamepadAxisMin);
+                payload.put("gamepadAxisMax", config.gamepadAxisMax);
+            }
             if (config.token != null && !config.token.isBlank()) {
                 payload.put("token", config.token);
             }
             String json = CONFIG_MAPPER.writeValueAsString(payload);
             Files.writeString(CONFIG_FILE, json, StandardCharsets.UTF_8);
         } catch (IOException ex) {
-            ex.printStackTrace();
+            Log.error("config", "Could not save config", ex, "file", CONFIG_FILE);
         }
     }
 
@@ -700,6 +1294,60 @@ public class Main extends Application {
         return null;
     }
 
+    // -------------------------------------------------------------- Benchmarks
+
+    /**
+     * The hub on its own, for {@code HubBenchmark} in the bench source set: no config file,
+     * network, controllers or streams. Call on the JavaFX application thread of a fresh
+     * {@code Main}, instead of {@link #start}.
+     */
+    HubHarness hubHarness() {
+        config = new LauncherConfig();
+        hubPane = new HubPane(() -> { }, () -> { }, createAccount -> { }, () -> { });
+        state.addListener(this::onStateChanged);
+        currentScreen = Screen.HUB;
+        hubPane.setVisible(true);
+        return new HubHarness();
+    }
+
+    /** See {@link #hubHarness()}. */
+    final class HubHarness {
+        private HubHarness() {
+        }
+
+        Node node() {
+            return hubPane.getNode();
+        }
+
+        /** Makes {@code tiles} the catalog and rebuilds the hub from it, as a refresh does. */
+        void displayTiles(List<AppTile> tiles) {
+            // Draws the store's copy, so the state listener sees it drawn and does not redraw.
+            hubPane.displayTiles(state.update(s -> s.withCatalog(tiles, true)).tiles());
+        }
+
+        /** Selects the tab labelled {@code name}, which redraws through the tab listener. */
+        void selectTab(String name) {
+            for (Toggle toggle : hubPane.tabGroup.getToggles()) {
+                if (toggle instanceof ToggleButton button && button.getText().equalsIgnoreCase(name)) {
+                    button.setSelected(true);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("No tab " + name);
+        }
+
+        void recordLaunch(String appId) {
+            playHistory.recordLaunch(appId);
+        }
+
+        /** The tile buttons currently built, across all sections. */
+        List<Button> tileButtons() {
+            List<Button> buttons = new ArrayList<>();
+            hubPane.tileButtons.values().forEach(buttons::addAll);
+            return buttons;
+        }
+    }
+
     // ------------------------------------------------------------ Nested types
 
     private final class ConnectPane {
@@ -707,20 +1355,14 @@ public class Main extends Application {
         private final Label controllerStatus;
         private final Button continueButton;
         private final Button settingsButton;
-        private final ExecutorService executorService;
-        private final ControllerService controllerService;
         private final Runnable onContinue;
-        private final Timeline poller;
         private boolean firstLaunchMode;
         private boolean autoAdvanced;
-        private boolean pollInFlight;
+        private boolean active;
 
-        private ConnectPane(ExecutorService executorService,
-                             ControllerService controllerService,
+        private ConnectPane(ControllerService controllerService,
                              Runnable onContinue,
                              Runnable onSettings) {
-            this.executorService = executorService;
-            this.controllerService = controllerService;
             this.onContinue = onContinue;
 
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/app/ConnectPane.fxml"));
@@ -737,8 +1379,7 @@ public class Main extends Application {
             continueButton.setOnAction(event -> onContinue.run());
             settingsButton.setOnAction(event -> onSettings.run());
 
-            poller = new Timeline(new KeyFrame(Duration.seconds(2), event -> pollController()));
-            poller.setCycleCount(Timeline.INDEFINITE);
+            controllerService.addListener(event -> Platform.runLater(() -> onControllerEvent(event.state())));
         }
 
         private void configure(boolean firstLaunch, ControllerService.ControllerInfo info) {
@@ -747,19 +1388,22 @@ public class Main extends Application {
             continueButton.setVisible(!firstLaunch);
             settingsButton.setVisible(!firstLaunch);
             settingsButton.setManaged(!firstLaunch);
-            poller.stop();
+            active = false;
             updateStatus(info);
             if (firstLaunch) {
                 continueButton.setDisable(true);
             } else {
                 continueButton.setDisable(!info.connected());
             }
-            poller.playFromStart();
+            active = !autoAdvanced;
         }
 
         private void updateStatus(ControllerService.ControllerInfo info) {
             if (info.connected()) {
-                String label = info.label().orElse("controller connected");
+                List<ControllerRegistry.Controller> players = controllerRegistry.controllers();
+                String label = players.size() > 1
+                        ? players.stream().map(ControllerRegistry.Controller::playerLabel).collect(Collectors.joining("  |  "))
+                        : info.label().orElse("controller connected");
                 controllerStatus.setText(label);
                 if (!firstLaunchMode) {
                     continueButton.setDisable(false);
@@ -767,7 +1411,7 @@ public class Main extends Application {
                 onControllerStatus(info);
                 if (firstLaunchMode && !autoAdvanced) {
                     autoAdvanced = true;
-                    poller.stop();
+                    active = false;
                     onContinue.run();
                 }
             } else {
@@ -779,19 +1423,12 @@ public class Main extends Application {
             }
         }
 
-        private void pollController() {
-            if (pollInFlight) {
-                return;
+        private void onControllerEvent(ControllerService.ControllerInfo info) {
+            if (active) {
+                updateStatus(info);
+            } else {
+                onControllerStatus(info);
             }
-            pollInFlight = true;
-            CompletableFuture.supplyAsync(controllerService::detect, executorService)
-                    .whenComplete((info, throwable) -> Platform.runLater(() -> {
-                        pollInFlight = false;
-                        if (throwable != null || info == null) {
-                            return;
-                        }
-                        updateStatus(info);
-                    }));
         }
 
         private BorderPane getNode() {
@@ -802,7 +1439,7 @@ public class Main extends Application {
             container.setVisible(visible);
             container.setManaged(visible);
             if (!visible) {
-                poller.stop();
+                active = false;
             }
         }
     }
@@ -964,6 +1601,8 @@ public class Main extends Application {
     private final class HubPane {
         private final BorderPane container;
         private final Label status;
+        private final HBox launchProgress;
+        private final Label launchStage;
         private final Label offlineBadge;
         private final VBox serverErrorPane;
         private final Label serverErrorMessage;
@@ -975,8 +1614,11 @@ public class Main extends Application {
         private final ImageView wifiIcon;
         private final Image wifiOnlineImage;
         private final Image wifiSearchingImage;
+        private final Map<String, List<Button>> tileButtons = new HashMap<>();
+        // the catalog the buttons were last built from; null once released
+        private List<AppTile> drawnTiles;
 
-        private HubPane(Runnable onSettings, Runnable onRefresh, Consumer<Boolean> onLogin) {
+        private HubPane(Runnable onSettings, Runnable onRefresh, Consumer<Boolean> onLogin, Runnable onCancelLaunch) {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/app/HubPane.fxml"));
             try {
                 container = loader.load();
@@ -985,6 +1627,9 @@ public class Main extends Application {
             }
 
             status = (Label) loader.getNamespace().get("status");
+            launchProgress = (HBox) loader.getNamespace().get("launchProgress");
+            launchStage = (Label) loader.getNamespace().get("launchStage");
+            Button launchCancel = (Button) loader.getNamespace().get("launchCancel");
             offlineBadge = (Label) loader.getNamespace().get("offlineBadge");
             contentColumns = (VBox) loader.getNamespace().get("contentColumns");
             serverErrorPane = (VBox) loader.getNamespace().get("serverErrorPane");
@@ -1016,7 +1661,7 @@ public class Main extends Application {
             tabGroup.selectedToggleProperty().addListener((observable, oldValue, newValue) -> {
                 if (newValue != null) {
                     updateHeaderGlyph((ToggleButton) newValue);
-                    displayTiles(currentTiles);
+                    displayTiles(state.get().tiles());
                 }
             });
 
@@ -1037,6 +1682,7 @@ public class Main extends Application {
             createButton.setOnAction(event -> onLogin.accept(true));
 
             serverErrorRetry.setOnAction(event -> onRefresh.run());
+            launchCancel.setOnAction(event -> onCancelLaunch.run());
 
             serverErrorPane.setVisible(false);
             serverErrorPane.setManaged(false);
@@ -1077,6 +1723,17 @@ public class Main extends Application {
             status.setText(message);
         }
 
+        private void showLaunchProgress(String message) {
+            launchStage.setText(message);
+            launchProgress.setVisible(true);
+            launchProgress.setManaged(true);
+        }
+
+        private void hideLaunchProgress() {
+            launchProgress.setVisible(false);
+            launchProgress.setManaged(false);
+        }
+
         private void setOffline(boolean offline) {
             offlineBadge.setVisible(offline);
             if (wifiIcon != null) {
@@ -1099,11 +1756,15 @@ public class Main extends Application {
         }
 
         private void displayTiles(List<AppTile> tiles) {
-            if (!container.isVisible()) {
+            if (!container.isVisible() || hidden) {
+                // showWindow() redraws from the state store
                 return;
             }
+            frameMonitor.markAction("display-tiles");
+            drawnTiles = tiles;
             hideServerError();
             contentColumns.getChildren().clear();
+            tileButtons.clear();
             if (tiles == null || tiles.isEmpty()) {
                 Label empty = new Label("No applications available");
                 empty.getStyleClass().add("empty-label");
@@ -1130,13 +1791,50 @@ public class Main extends Application {
                 Label heading = new Label(section.title);
                 heading.getStyleClass().add("section-title");
 
-                FlowGrid grid = new FlowGrid(section.tiles);
+                FlowGrid grid = new FlowGrid(section.tiles, tileButtons);
 
                 sectionBox.getChildren().addAll(heading, grid.getNode());
                 contentColumns.getChildren().add(sectionBox);
             }
         }
 
+        /**
+         * Updates the buttons for {@code tile} in place. Returns {@code false} when the change
+         * affects filtering or ordering and the caller has to redraw.
+         */
+        private boolean patchTile(AppTile previous, AppTile tile) {
+            if (!previous.name.equals(tile.name) || previous.enabled != tile.enabled || previous.sortOrder != tile.sortOrder) {
+                return false;
+            }
+            for (Button button : tileButtons.getOrDefault(tile.id, List.of())) {
+                FlowGrid.applyTileState(button, tile);
+            }
+            return true;
+        }
+
+        /**
+         * Brings the hub from {@code previous} to {@code current}. Nothing is rebuilt when the hub
+         * already shows {@code current}; when only tile state changed, the buttons are patched.
+         */
+        private void showCatalog(List<AppTile> previous, List<AppTile> current) {
+            if (current == drawnTiles) {
+                return;
+            }
+            if (previous == drawnTiles && previous.size() == current.size()) {
+                boolean patched = true;
+                for (int i = 0; i < current.size() && patched; i++) {
+                    AppTile before = previous.get(i);
+                    AppTile after = current.get(i);
+                    patched = before == after || before.id.equals(after.id) && patchTile(before, after);
+                }
+                if (patched) {
+                    drawnTiles = current;
+                    return;
+                }
+            }
+            displayTiles(current);
+        }
+
         private List<AppTile> filterForTab(String tabKey, List<AppTile> tiles) {
             return switch (tabKey.toLowerCase(Locale.ENGLISH)) {
                 case "gaming" -> tiles.stream()
@@ -1156,13 +1854,43 @@ public class Main extends Application {
                     .comparingInt((AppTile tile) -> tile.sortOrder)
                     .thenComparing(tile -> tile.name.toLowerCase(Locale.ENGLISH)));
 
+            Map<String, AppTile> byId = new HashMap<>();
+            for (AppTile tile : tiles) {
+                byId.put(tile.id, tile);
+            }
             List<Section> sections = new ArrayList<>();
-            sections.add(new Section("recents", sorted));
-            sections.add(new Section("top picks", sorted));
+            sections.add(new Section("recents", fromHistory(playHistory.recent(HISTORY_SECTION_TILES, byId::containsKey), byId, sorted)));
+            sections.add(new Section("top picks", fromHistory(playHistory.top(HISTORY_SECTION_TILES, byId::containsKey), byId, sorted)));
             sections.add(new Section(tabKey.equalsIgnoreCase("tv") ? "top 10 must watch" : "new releases", sorted));
             return sections;
         }
 
+        /** The tiles for {@code appIds}, or {@code fallback} while nothing here has been played. */
+        private List<AppTile> fromHistory(List<String> appIds, Map<String, AppTile> byId, List<AppTile> fallback) {
+            if (appIds.isEmpty()) {
+                return fallback;
+            }
+            List<AppTile> picked = new ArrayList<>(appIds.size());
+            for (String appId : appIds) {
+                picked.add(byId.get(appId));
+            }
+            return picked;
+        }
+
+        /** Drops the tile nodes while nothing shows them; {@link #displayTiles} rebuilds them. */
+        private void releaseTiles() {
+            contentColumns.getChildren().clear();
+            tileButtons.clear();
+            drawnTiles = null;
+        }
+
+        /** Rebuilds the tiles {@link #releaseTiles} dropped, if the hub is the current screen. */
+        private void redrawIfReleased() {
+            if (drawnTiles == null && currentScreen == Screen.HUB) {
+                displayTiles(state.get().tiles());
+            }
+        }
+
         private void resetState() {
             contentColumns.getChildren().clear();
             showStatus("Idle");
@@ -1182,7 +1910,7 @@ public class Main extends Application {
     private final class FlowGrid {
         private final GridPane grid = new GridPane();
 
-        private FlowGrid(List<AppTile> tiles) {
+        private FlowGrid(List<AppTile> tiles, Map<String, List<Button>> registry) {
             grid.getStyleClass().add("tile-grid");
             grid.setHgap(24);
             grid.setVgap(24);
@@ -1201,6 +1929,7 @@ public class Main extends Application {
                 int row = index / 4;
 
                 Button tile = createTileButton(app);
+                registry.computeIfAbsent(app.id, id -> new ArrayList<>()).add(tile);
                 grid.add(tile, col, row);
             }
         }
@@ -1208,17 +1937,33 @@ public class Main extends Application {
         private Button createTileButton(AppTile app) {
             Button button = new Button(app.name);
             button.getStyleClass().add("launcher-tile");
-            if (!app.playable()) {
-                button.getStyleClass().add("launcher-tile-disabled");
-                button.setDisable(true);
-            }
-            button.setOnAction(event -> launch(app));
+            applyTileState(button, app);
+            // Handlers read the tile from the button so a pushed patch takes effect without a redraw.
+            button.setOnAction(event -> launch((AppTile) button.getUserData()));
+            button.focusedProperty().addListener((observable, wasFocused, focused) -> {
+                AppTile current = (AppTile) button.getUserData();
+                if (focused) {
+                    prewarmEngine.onFocus(resolvedHost(), current);
+                } else {
+                    prewarmEngine.onFocusLost(current);
+                }
+            });
             button.setMaxWidth(Double.MAX_VALUE);
             button.setWrapText(true);
             button.setPrefHeight(140);
             return button;
         }
 
+        private static void applyTileState(Button button, AppTile app) {
+            button.setUserData(app);
+            boolean playable = app.playable();
+            button.getStyleClass().remove("launcher-tile-disabled");
+            if (!playable) {
+                button.getStyleClass().add("launcher-tile-disabled");
+            }
+            button.setDisable(!playable);
+        }
+
         private GridPane getNode() {
             return grid;
         }
@@ -1382,6 +2127,147 @@ public class Main extends Application {
         }
     }
 
+    private final class GamepadNavigator implements GamepadInput.Sink {
+        private final Map<String, GamepadInput> inputs = new ConcurrentHashMap<>();
+        private final Set<String> devices = new HashSet<>();
+        private boolean suspended;
+        private final LatencyHistogram focusLatency = Metrics.histogram("input.focus_latency");
+        // earliest event applied since the last layout pulse, or -1; FX thread only
+        private long pendingEventMicros = -1;
+
+        private GamepadNavigator() {
+            controllerService.addListener(this::onControllerEvent);
+            scene.addPostLayoutPulseListener(this::recordFocusLatency);
+        }
+
+        private synchronized void onControllerEvent(ControllerService.ControllerEvent event) {
+            if (event.source() != ControllerService.Source.INPUT || ControllerService.isMotionSensor(event.device())) {
+                // Motion-sensor nodes report accelerometer data on ABS_X/ABS_Y; reading them would steer focus.
+                return;
+            }
+            if (!event.connected()) {
+                devices.remove(event.device());
+                closeInput(event.device());
+                return;
+            }
+            devices.add(event.device());
+            if (!suspended) {
+                openInput(event.device());
+            }
+        }
+
+        /** Stops reading gamepads while the stream client owns them; connections are still tracked. */
+        private synchronized void suspend() {
+            suspended = true;
+            close();
+        }
+
+        private synchronized void resume() {
+            suspended = false;
+            devices.forEach(this::openInput);
+        }
+
+        private void openInput(String device) {
+            inputs.computeIfAbsent(device, key -> {
+                try {
+                    return GamepadInput.open(controllerService.devicePath(key), config.gamepadConfig(), this);
+                } catch (IOException ex) {
+                    // No read access (user not in the input group); desktop key mapping still applies.
+                    Log.debug("gamepad", "Cannot read gamepad", "device", key, "error", ex.toString());
+                    return null;
+                }
+            });
+        }
+
+        private void closeInput(String device) {
+            GamepadInput input = inputs.remove(device);
+            if (input != null) {
+                input.close();
+            }
+        }
+
+        @Override
+        public void onAction(GamepadInput.Action action, long eventTimeMicros) {
+            Platform.runLater(() -> apply(action, eventTimeMicros));
+        }
+
+        private void apply(GamepadInput.Action action, long eventTimeMicros) {
+            switch (action) {
+                case UP -> moveFocus(TraversalDirection.UP);
+                case DOWN -> moveFocus(TraversalDirection.DOWN);
+                case LEFT -> moveFocus(TraversalDirection.LEFT);
+                case RIGHT -> moveFocus(TraversalDirection.RIGHT);
+                case ACTIVATE -> {
+                    if (scene.getFocusOwner() instanceof ButtonBase button && !button.isDisabled()) {
+                        button.fire();
+                    }
+                }
+                case BACK -> closeOverlays();
+                case MENU -> openSettings();
+            }
+            pendingEventMicros = pendingEventMicros < 0 ? eventTimeMicros : Math.min(pendingEventMicros, eventTimeMicros);
+            // an action that changed nothing on screen would otherwise wait for an unrelated pulse
+            Platform.requestNextPulse();
+        }
+
+        /**
+         * Records from the event to the end of the layout pass that moved focus, so CSS and layout
+         * of the new focus state are included; only the render that follows is not. Actions
+         * sharing a pulse are recorded once, from the earliest.
+         */
+        private void recordFocusLatency() {
+            if (pendingEventMicros < 0) {
+                return;
+            }
+            focusLatency.record(System.currentTimeMillis() * 1000L - pendingEventMicros);
+            pendingEventMicros = -1;
+        }
+
+        private void moveFocus(TraversalDirection direction) {
+            Node owner = scene.getFocusOwner();
+            if (owner == null || !owner.isVisible()) {
+                focusFirst();
+                return;
+            }
+            owner.requestFocusTraversal(direction);
+        }
+
+        private void focusFirst() {
+            Node scope;
+            if (loginOverlay.getNode().isVisible()) {
+                scope = loginOverlay.getNode();
+            } else if (hostSettingsOverlay.getNode().isVisible()) {
+                scope = hostSettingsOverlay.getNode();
+            } else {
+                scope = switch (currentScreen) {
+                    case CONNECT -> connectPane.getNode();
+                    case USER_SELECT -> userSelectPane.getNode();
+                    case HUB -> hubPane.getNode();
+                };
+            }
+            for (Node node : scope.lookupAll(".button")) {
+                if (node.isVisible() && !node.isDisabled() && node.isFocusTraversable()) {
+                    node.requestFocus();
+                    return;
+                }
+            }
+        }
+
+        private void closeOverlays() {
+            if (loginOverlay.getNode().isVisible()) {
+                loginOverlay.hide();
+            }
+            if (hostSettingsOverlay.getNode().isVisible()) {
+                hostSettingsOverlay.hide();
+            }
+        }
+
+        private synchronized void close() {
+            inputs.values().forEach(GamepadInput::close);
+            inputs.clear();
+        }
+    }
+
     private final class Avatar extends StackPane {
         private Avatar(boolean highlight) {
             double radius = highlight ? 86 : 74;
@@ -1409,17 +2295,43 @@ public class Main extends Application {
         private String username;
         private Integer orgId;
         private String token;
+        private double gamepadDeadZone = GamepadInput.Config.DEFAULT.deadZone();
+        private long gamepadRepeatDelayMs = GamepadInput.Config.DEFAULT.repeatDelay().toMillis();
+        private long gamepadRepeatIntervalMs = GamepadInput.Config.DEFAULT.repeatInterval().toMillis();
+        // Pins the stick range for pads whose driver reports it wrong; null asks each device.
+        private Integer gamepadAxisMin;
+        private Integer gamepadAxisMax;
+        private String consoleId;
+        // Set when load() generated consoleId and the file can safely be rewritten with it.
+        private boolean consoleIdUnsaved;
+        private boolean peerCache;
+        private boolean resident;
 
         private boolean hasKnownUser() {
             return userId != null || (username != null && !username.isBlank());
         }
 
+        private GamepadInput.Config gamepadConfig() {
+            boolean pinned = gamepadAxisMin != null && gamepadAxisMax != null && gamepadAxisMax > gamepadAxisMin;
+            return new GamepadInput.Config(
+                    gamepadDeadZone,
+                    pinned ? gamepadAxisMin : GamepadInput.Config.DEFAULT.axisMin(),
+                    pinned ? gamepadAxisMax : GamepadInput.Config.DEFAULT.axisMax(),
+                    !pinned,
+                    java.time.Duration.ofMillis(gamepadRepeatDelayMs),
+                    java.time.Duration.ofMillis(gamepadRepeatIntervalMs)
+            );
+        }
+
         private static LauncherConfig load() {
             LauncherConfig config = new LauncherConfig();
             if (!Files.exists(CONFIG_FILE)) {
                 config.host = HttpRepo.DEFAULT_BASE_URL;
+                config.consoleId = UUID.randomUUID().toString();
+                config.consoleIdUnsaved = true;
                 return config;
             }
+            boolean readable = true;
             try {
                 String json = Files.readString(CONFIG_FILE, StandardCharsets.UTF_8);
                 Map<?, ?> payload = CONFIG_MAPPER.readValue(json, Map.class);
@@ -1443,38 +2355,50 @@ public class Main extends Application {
                 if (storedToken instanceof String tk && !tk.isBlank()) {
                     config.token = tk;
                 }
+                Object storedDeadZone = payload.get("gamepadDeadZone");
+                if (storedDeadZone instanceof Number deadZone && deadZone.doubleValue() > 0 && deadZone.doubleValue() < 1) {
+                    config.gamepadDeadZone = deadZone.doubleValue();
+                }
+                Object storedRepeatDelay = payload.get("gamepadRepeatDelayMs");
+                if (storedRepeatDelay instanceof Number repeatDelay && repeatDelay.longValue() > 0) {
+                    config.gamepadRepeatDelayMs = repeatDelay.longValue();
+                }
+                Object storedRepeatInterval = payload.get("gamepadRepeatIntervalMs");
+                if (storedRepeatInterval instanceof Number repeatInterval && repeatInterval.longValue() > 0) {
+                    config.gamepadRepeatIntervalMs = repeatInterval.longValue();
+                }
+                if (payload.get("gamepadAxisMin") instanceof Number axisMin
+                        && payload.get("gamepadAxisMax") instanceof Number axisMax) {
+                    config.gamepadAxisMin = axisMin.intValue();
+                    config.gamepadAxisMax = axisMax.intValue();
+                }
+                Object storedConsoleId = payload.get("consoleId");
+                if (storedConsoleId instanceof String consoleIdValue && !consoleIdValue.isBlank()) {
+                    config.consoleId = consoleIdValue;
+                }
+                Object storedPeerCache = payload.get("peerCache");
+                if (storedPeerCache instanceof Boolean peerCacheValue) {
+                    config.peerCache = peerCacheValue;
+                }
+                Object storedResident = payload.get("resident");
+                if (storedResident instanceof Boolean residentValue) {
+                    config.resident = residentValue;
+                }
             } catch (IOException ex) {
-                ex.printStackTrace();
+                readable = false;
+                Log.error("config", "Could not read config, using defaults", ex, "file", CONFIG_FILE);
             }
             if (config.host == null) {
                 config.host = HttpRepo.DEFAULT_BASE_URL;
             }
-            return config;
-        }
-    }
-
-    private static final class CacheManager {
-        private static void save(String json) {
-            try {
-                Files.createDirectories(CONFIG_DIR);
-                Files.writeString(CACHE_FILE, json, StandardCharsets.UTF_8);
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
-        }
-
-        private static String read() {
-            if (!Files.exists(CACHE_FILE)) {
-                return null;
-            }
-            try {
-                return Files.readString(CACHE_FILE, StandardCharsets.UTF_8);
-            } catch (IOException ex) {
-                ex.printStackTrace();
-                return null;
+            if (config.consoleId == null) {
+                config.consoleId = UUID.randomUUID().toString();
+                // An unreadable file is left alone rather than overwritten with defaults.
+                config.consoleIdUnsaved = readable;
             }
+            return config;
         }
     }
 
-    private record StartupState(boolean controllerConnected, boolean hasUsers, boolean offline) {}
+    private record StartupState(boolean controllerConnected, boolean hasUsers, boolean offline, HttpRepo.Bootstrap bootstrap) {}
 }
@@ -0,0 +1,323 @@
+package app;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the launcher inside small boards' memory. Heap occupancy after each collection, time spent
+ * in GC and the memory the system still has available are watched through {@link MemoryMXBean},
+ * GC notifications and {@code /proc}. Subsystems register degradation steps in the order they
+ * should be given up; under pressure one more step is taken every {@link Policy#stepInterval()},
+ * and once memory has stayed calm for {@link Policy#reliefHold()} they are restored one at a time
+ * in reverse.
+ *
+ * <p>Participants are called outside the governor's lock, from the sampling or GC notification
+ * thread, one at a time and in the order the steps were decided.
+ *
+ * <p>Every step shows up in metrics as {@code memory.shrink.<name>} and
+ * {@code memory.restore.<name>}, next to {@code memory.steps_active} and the readings that drove it.
+ */
+public final class MemoryGovernor implements AutoCloseable {
+
+    public interface Participant {
+        void shrink();
+
+        void restore();
+    }
+
+    /**
+     * @param heapHigh   post-GC heap occupancy, as a fraction of the maximum, that counts as pressure
+     * @param heapLow    occupancy below which memory counts as calm again
+     * @param gcTimeHigh fraction of wall time spent in GC over the last ten seconds that counts as thrash
+     * @param minAvailableBytes system memory available below which the launcher backs off regardless of heap
+     */
+    public record Policy(double heapHigh, double heapLow, double gcTimeHigh, long minAvailableBytes,
+                         Duration sampleInterval, Duration stepInterval, Duration reliefHold) {
+        public static final Policy DEFAULT = new Policy(
+                0.75,
+                0.50,
+                0.10,
+                96L * 1024 * 1024,
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(2),
+                Duration.ofSeconds(30)
+        );
+    }
+
+    private static final Duration GC_WINDOW = Duration.ofSeconds(10);
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+    private static final Path PROC_MEMINFO = Path.of("/proc/meminfo");
+
+    private record Step(String name, Participant participant) {}
+
+    private record Pause(long endedNanos, long millis) {}
+
+    private record Action(Step step, boolean shrink) {}
+
+    private final Policy policy;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final com.sun.management.OperatingSystemMXBean os;
+    private final Set<String> heapPools = new HashSet<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener gcListener = this::onGcNotification;
+    // held while a step is decided and carried out; never taken while holding this
+    private final ReentrantLock stepping = new ReentrantLock();
+
+    // guarded by this
+    private final List<Step> steps = new ArrayList<>();
+    private final Deque<Pause> pauses = new ArrayDeque<>();
+    private int active;
+    private long heapAfterGc = -1;
+    private long lastStepNanos;
+    private long calmSinceNanos;
+    private Thread sampler;
+    private boolean closed;
+
+    public MemoryGovernor(Policy policy) {
+        this.policy = policy;
+        this.os = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean bean ? bean : null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        Metrics.gauge("memory.steps_active", this::stepsActive);
+        Metrics.gauge("memory.heap_used_kb", () -> memory.getHeapMemoryUsage().getUsed() / 1024);
+        Metrics.gauge("memory.heap_max_kb", () -> heapMax() / 1024);
+        Metrics.gauge("memory.heap_after_gc_kb", () -> Math.max(0, heapAfterGc()) / 1024);
+        Metrics.gauge("memory.gc_permille", () -> Math.round(gcFraction(System.nanoTime()) * 1000));
+        Metrics.gauge("memory.rss_kb", () -> Math.max(0, residentBytes()) / 1024);
+        Metrics.gauge("memory.available_kb", () -> Math.max(0, availableBytes()) / 1024);
+    }
+
+    /**
+     * Adds a degradation step. Steps are taken in registration order, so register what is
+     * cheapest to give up first.
+     */
+    public synchronized void register(String name, Participant participant) {
+        steps.add(new Step(name, participant));
+    }
+
+    /** Starts listening for collections and sampling system memory. */
+    public synchronized void start() {
+        if (closed || sampler != null) {
+            return;
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(gcListener, null, null);
+                emitters.add(emitter);
+            }
+        }
+        sampler = Thread.ofVirtual().name("couchlauncherfx-memory").start(this::sample);
+    }
+
+    public synchronized int stepsActive() {
+        return active;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException ignored) {
+                // never added
+            }
+        }
+        emitters.clear();
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+    }
+
+    private void sample() {
+        while (true) {
+            try {
+                Thread.sleep(policy.sampleInterval().toMillis());
+            } catch (InterruptedException interrupted) {
+                return;
+            }
+            step();
+        }
+    }
+
+    private void onGcNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        // Concurrent cycles run beside the application; only pauses count towards thrash.
+        String collector = info.getGcName();
+        boolean pause = !collector.contains("Concurrent") && !collector.contains("Cycles");
+        synchronized (this) {
+            heapAfterGc = used;
+            if (pause) {
+                pauses.addLast(new Pause(System.nanoTime(), info.getGcInfo().getDuration()));
+            }
+        }
+        step();
+    }
+
+    /**
+     * Takes or restores a step if one is due. When another thread is already at it, this reading
+     * is left to it; the next sample sees the same state anyway.
+     */
+    private void step() {
+        if (!stepping.tryLock()) {
+            return;
+        }
+        try {
+            Action action = evaluate();
+            if (action == null) {
+                return;
+            }
+            Step step = action.step();
+            run(step.name(), action.shrink() ? step.participant()::shrink : step.participant()::restore);
+            if (action.shrink()) {
+                // Collect once so the next post-GC reading shows what the step released, instead of
+                // waiting for allocation to force a collection. Steps are at least a step interval
+                // apart, so this cannot turn into a loop of its own notifications.
+                System.gc();
+            }
+        } finally {
+            stepping.unlock();
+        }
+    }
+
+    /** Decides the next step, if any, and counts it as taken. */
+    private synchronized Action evaluate() {
+        if (closed) {
+            return null;
+        }
+        long now = System.nanoTime();
+        double heap = heapAfterGc < 0 ? 0 : (double) heapAfterGc / heapMax();
+        double gc = gcFraction(now);
+        long available = availableBytes();
+        boolean lowSystem = available >= 0 && available < policy.minAvailableBytes();
+        boolean pressure = heap > policy.heapHigh() || gc > policy.gcTimeHigh() || lowSystem;
+        boolean calm = heap < policy.heapLow() && gc < policy.gcTimeHigh() / 2
+                && (available < 0 || available > 2 * policy.minAvailableBytes());
+        boolean stepDue = now - lastStepNanos >= policy.stepInterval().toNanos();
+
+        if (pressure) {
+            calmSinceNanos = 0;
+            if (active < steps.size() && stepDue) {
+                Step step = steps.get(active++);
+                lastStepNanos = now;
+                Metrics.increment("memory.shrink." + step.name());
+                return new Action(step, true);
+            } else if (active == steps.size() && stepDue) {
+                // Nothing left to give up; count it so a board that is simply too small shows up.
+                Metrics.increment("memory.pressure_unrelieved");
+                lastStepNanos = now;
+            }
+        } else if (calm && active > 0) {
+            if (calmSinceNanos == 0) {
+                calmSinceNanos = now;
+            } else if (now - calmSinceNanos >= policy.reliefHold().toNanos()) {
+                Step step = steps.get(--active);
+                lastStepNanos = now;
+                // Each restore has to earn its own quiet period, so a relapse stops the climb early.
+                calmSinceNanos = now;
+                Metrics.increment("memory.restore." + step.name());
+                return new Action(step, false);
+            }
+        } else {
+            calmSinceNanos = 0;
+        }
+        return null;
+    }
+
+    private static void run(String name, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            Metrics.increment("memory.step_failed." + name);
+            Log.error("memory", "Degradation step failed", ex, "step", name);
+        }
+    }
+
+    private synchronized long heapAfterGc() {
+        return heapAfterGc;
+    }
+
+    private long heapMax() {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        return heap.getMax() > 0 ? heap.getMax() : Math.max(1, heap.getCommitted());
+    }
+
+    private synchronized double gcFraction(long now) {
+        long windowStart = now - GC_WINDOW.toNanos();
+        while (!pauses.isEmpty() && pauses.peekFirst().endedNanos() < windowStart) {
+            pauses.removeFirst();
+        }
+        long millis = 0;
+        for (Pause pause : pauses) {
+            millis += pause.millis();
+        }
+        return (double) millis / GC_WINDOW.toMillis();
+    }
+
+    /** Resident set size from {@code /proc}, or -1 where that is not available. */
+    private static long residentBytes() {
+        return procKilobytes(PROC_STATUS, "VmRSS:");
+    }
+
+    /** Memory the system can still hand out without swapping, or -1 if unknown. */
+    private long availableBytes() {
+        long available = procKilobytes(PROC_MEMINFO, "MemAvailable:");
+        if (available < 0 && os != null) {
+            return os.getFreeMemorySize();
+        }
+        return available;
+    }
+
+    private static long procKilobytes(Path file, String field) {
+        if (!Files.isReadable(file)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.startsWith(field)) {
+                    String[] parts = line.substring(field.length()).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // treated as unknown
+        }
+        return -1;
+    }
+}
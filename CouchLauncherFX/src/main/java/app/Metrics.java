@@ -0,0 +1,76 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics surface: named counters, gauges and {@link LatencyHistogram}s. Lookups
+ * are by name so subsystems can register without wiring, and {@link #snapshot()} renders
+ * everything into a plain map that is written next to the launcher config.
+ */
+public final class Metrics {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static AtomicLong counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    public static void increment(String name) {
+        counter(name).incrementAndGet();
+    }
+
+    public static void gauge(String name, LongSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        COUNTERS.forEach((name, value) -> result.put(name, value.get()));
+        GAUGES.forEach((name, supplier) -> {
+            try {
+                result.put(name, supplier.getAsLong());
+            } catch (RuntimeException ignored) {
+                // gauge owner went away; skip it
+            }
+        });
+        HISTOGRAMS.forEach((name, histogram) -> {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", histogram.count());
+            summary.put("p50_us", histogram.percentileMicros(50));
+            summary.put("p90_us", histogram.percentileMicros(90));
+            summary.put("p99_us", histogram.percentileMicros(99));
+            summary.put("max_us", histogram.maxMicros());
+            result.put(name, summary);
+        });
+        return result;
+    }
+
+    public static void writeJson(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(snapshot()), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,218 @@
+package app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the link to a couchserver host before a stream starts: round-trip time and jitter
+ * from a burst of {@code /health} requests, and throughput from a short {@code /probe/payload}
+ * download. The result picks the resolution, frame rate and bitrate handed to the stream client.
+ *
+ * <p>Measurements are cached per host. A recent one is reused as is; an older one still counts
+ * towards the next probe with a weight that halves every ten minutes, so a single bad
+ * sample does not swing the stream settings. A probe that fails outright caches a conservative
+ * fallback for the same period, so back-to-back launches on a bad link do not each pay for it.
+ */
+public final class NetworkProbe {
+
+    /** Throughput is {@link Double#NaN} when the host has no payload endpoint. */
+    public record Measurement(double rttMillis, double jitterMillis, double lossRatio, double throughputMbps) {}
+
+    public record StreamProfile(int width, int height, int fps, int bitrateKbps) {
+        public List<String> clientArguments() {
+            return List.of(
+                    "--resolution", width + "x" + height,
+                    "--fps", Integer.toString(fps),
+                    "--bitrate", Integer.toString(bitrateKbps)
+            );
+        }
+
+        public String label() {
+            return height + "p" + fps + " @ " + String.format(Locale.ENGLISH, "%.1f", bitrateKbps / 1000.0) + " Mbps";
+        }
+    }
+
+    /** The probe's network calls, replaceable to exercise profile selection without a server. */
+    public interface Transport {
+        void ping(String host, Duration timeout) throws Exception;
+
+        /** Bytes received within {@code deadline}, which bounds the whole transfer. */
+        long download(String host, int size, Duration deadline) throws Exception;
+    }
+
+    private static final Transport HTTP = new Transport() {
+        @Override
+        public void ping(String host, Duration timeout) throws Exception {
+            HttpRepo.ping(host, timeout);
+        }
+
+        @Override
+        public long download(String host, int size, Duration deadline) throws Exception {
+            return HttpRepo.downloadProbe(host, size, deadline);
+        }
+    };
+
+    private static final int PINGS = 6;
+    private static final Duration PING_TIMEOUT = Duration.ofSeconds(1);
+    private static final int PAYLOAD_BYTES = 2 * 1024 * 1024;
+    // Bounds how long a probe that outlives the launch pipeline's grace period competes with the stream;
+    // slower links are measured on a partial payload.
+    private static final Duration DOWNLOAD_DEADLINE = Duration.ofMillis(1500);
+    private static final Duration FRESH = Duration.ofMinutes(2);
+    private static final Duration HALF_LIFE = Duration.ofMinutes(10);
+    private static final double MAX_PRIOR_WEIGHT = 0.5;
+    private static final double HEADROOM = 0.7;
+    /** Assumed when the host could not be measured: enough for 540p30 on most links. */
+    private static final Measurement FALLBACK = new Measurement(50, 20, 0, 4);
+
+    private final Transport transport;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    /** {@code fallback} entries are reused while fresh but never blended into a real measurement. */
+    private record Cached(Measurement measurement, long measuredAtNanos, boolean fallback) {}
+
+    public NetworkProbe() {
+        this(HTTP);
+    }
+
+    public NetworkProbe(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Returns the stream settings for {@code host}, probing unless a fresh measurement is cached.
+     * Blocks for up to a few seconds; fails fast when the host does not answer at all.
+     */
+    public StreamProfile assess(String host) throws Exception {
+        return choose(measure(host));
+    }
+
+    /** Settings for a launch that could not wait for the probe. */
+    public static StreamProfile fallbackProfile() {
+        return choose(FALLBACK);
+    }
+
+    public Measurement measure(String host) throws Exception {
+        long now = System.nanoTime();
+        Cached cached = cache.get(host);
+        if (cached != null && now - cached.measuredAtNanos() < FRESH.toNanos()) {
+            Metrics.increment("netprobe.cached");
+            return cached.measurement();
+        }
+        Measurement fresh;
+        try {
+            fresh = probe(host);
+        } catch (InterruptedException interrupted) {
+            throw interrupted;
+        } catch (Exception ex) {
+            Metrics.increment("netprobe.failed");
+            Log.debug("probe", "Link probe failed, using fallback settings", "host", host, "error", ex.toString());
+            cache.put(host, new Cached(FALLBACK, System.nanoTime(), true));
+            return FALLBACK;
+        }
+        Measurement blended = fresh;
+        if (cached != null && !cached.fallback()) {
+            double age = (double) (now - cached.measuredAtNanos()) / HALF_LIFE.toNanos();
+            blended = blend(cached.measurement(), fresh, MAX_PRIOR_WEIGHT * Math.pow(0.5, age));
+        }
+        cache.put(host, new Cached(blended, System.nanoTime(), false));
+        Metrics.histogram("netprobe.rtt").record((long) (blended.rttMillis() * 1000));
+        Metrics.histogram("netprobe.jitter").record((long) (blended.jitterMillis() * 1000));
+        return blended;
+    }
+
+    static StreamProfile choose(Measurement measurement) {
+        double budgetKbps;
+        if (!Double.isNaN(measurement.throughputMbps())) {
+            budgetKbps = measurement.throughputMbps() * 1000 * HEADROOM;
+        } else {
+            // No throughput figure: the payload may have failed because the link is poor, so stay
+            // at rates that fit a weak Wi-Fi link even when latency looks good.
+            budgetKbps = measurement.rttMillis() < 15 && measurement.jitterMillis() < 5 ? 6_000 : 3_000;
+        }
+        if (measurement.lossRatio() > 0.2 || measurement.jitterMillis() > 30) {
+            budgetKbps = Math.min(budgetKbps, 5_000);
+        }
+        StreamProfile profile;
+        if (budgetKbps >= 15_000) {
+            profile = new StreamProfile(1920, 1080, 60, (int) Math.min(budgetKbps, 20_000));
+        } else if (budgetKbps >= 8_000) {
+            profile = new StreamProfile(1280, 720, 60, (int) Math.min(budgetKbps, 10_000));
+        } else if (budgetKbps >= 4_000) {
+            profile = new StreamProfile(1280, 720, 30, (int) budgetKbps);
+        } else {
+            profile = new StreamProfile(960, 540, 30, (int) Math.max(1_500, budgetKbps));
+        }
+        if (measurement.jitterMillis() > 15 && profile.fps() > 30) {
+            // Frame pacing suffers more from jitter than from a lower rate.
+            profile = new StreamProfile(profile.width(), profile.height(), 30, profile.bitrateKbps());
+        }
+        return profile;
+    }
+
+    private Measurement probe(String host) throws Exception {
+        // Opens the connection so samples exclude the handshake; an unreachable host fails here.
+        transport.ping(host, PING_TIMEOUT);
+        List<Double> samples = new ArrayList<>();
+        int lost = 0;
+        for (int i = 0; i < PINGS; i++) {
+            long start = System.nanoTime();
+            try {
+                transport.ping(host, PING_TIMEOUT);
+                samples.add((System.nanoTime() - start) / 1_000_000.0);
+            } catch (InterruptedException interrupted) {
+                throw interrupted;
+            } catch (Exception ex) {
+                lost++;
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new IllegalStateException("No probe replies from " + host);
+        }
+        double jitter = 0;
+        for (int i = 1; i < samples.size(); i++) {
+            jitter += Math.abs(samples.get(i) - samples.get(i - 1));
+        }
+        jitter = samples.size() > 1 ? jitter / (samples.size() - 1) : 0;
+        List<Double> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        double rtt = sorted.get(sorted.size() / 2);
+
+        double throughput = Double.NaN;
+        try {
+            long start = System.nanoTime();
+            long bytes = transport.download(host, PAYLOAD_BYTES, DOWNLOAD_DEADLINE);
+            double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9 - rtt / 1000.0);
+            throughput = bytes * 8 / seconds / 1e6;
+        } catch (InterruptedException interrupted) {
+            throw interrupted;
+        } catch (Exception ex) {
+            // older couchserver without /probe/payload; decide from latency only
+            Log.debug("probe", "Throughput probe unavailable", "error", ex.toString());
+        }
+        return new Measurement(rtt, jitter, (double) lost / PINGS, throughput);
+    }
+
+    private static Measurement blend(Measurement prior, Measurement fresh, double priorWeight) {
+        double freshWeight = 1 - priorWeight;
+        double throughput;
+        if (Double.isNaN(prior.throughputMbps())) {
+            throughput = fresh.throughputMbps();
+        } else if (Double.isNaN(fresh.throughputMbps())) {
+            throughput = prior.throughputMbps();
+        } else {
+            throughput = prior.throughputMbps() * priorWeight + fresh.throughputMbps() * freshWeight;
+        }
+        return new Measurement(
+                prior.rttMillis() * priorWeight + fresh.rttMillis() * freshWeight,
+                prior.jitterMillis() * priorWeight + fresh.jitterMillis() * freshWeight,
+                prior.lossRatio() * priorWeight + fresh.lossRatio() * freshWeight,
+                throughput
+        );
+    }
+}
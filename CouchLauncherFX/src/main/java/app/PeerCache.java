@@ -0,0 +1,408 @@
+package app;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in cache shared between launchers on the same network. Responses that are the same for
+ * every console, such as the anonymous catalog, are kept after a successful fetch from couchserver
+ * and served to sibling launchers from a small HTTP endpoint. Each launcher multicasts a beacon
+ * listing the entries it holds, keyed by a hash of the URL and carrying the SHA-256 of the body.
+ *
+ * <p>Nothing a peer says is trusted. A body from a peer is only a candidate: the caller sends its
+ * hash to couchserver as {@code If-None-Match} and uses it, and calls {@link #confirm}, only on
+ * {@code 304 Not Modified}, so the origin still decides what is current while the body crosses
+ * the LAN instead of the uplink. For testing several launchers on one machine,
+ * {@code COUCH_PEERS=host:port,...} lists peers directly in addition to the ones discovered; one
+ * that does not answer is skipped for a while rather than costing a timeout on every fetch.
+ */
+public final class PeerCache implements AutoCloseable {
+
+    public record Entry(String key, byte[] body, String contentType, String sha256, long storedAtMillis) {}
+
+    private record Peer(InetSocketAddress address, Map<String, String> hashes, long seenAtNanos) {}
+
+    private record Backoff(int failures, long retryAtNanos) {}
+
+    private static final String GROUP = "239.255.43.21";
+    private static final int BEACON_PORT = 47321;
+    private static final Duration BEACON_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration PEER_EXPIRY = Duration.ofSeconds(20);
+    private static final Duration PEER_TIMEOUT = Duration.ofMillis(400);
+    private static final Duration STATIC_PEER_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration STATIC_PEER_MAX_BACKOFF = Duration.ofMinutes(5);
+    private static final int MAX_ADVERTISED = 32;
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Duration maxAge;
+    private final List<InetSocketAddress> staticPeers;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(PEER_TIMEOUT).build();
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, Backoff> staticBackoff = new ConcurrentHashMap<>();
+
+    // guarded by this; access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+    private long maxBytes = MAX_BYTES;
+    private boolean serving = true;
+
+    private HttpServer server;
+    private MulticastSocket socket;
+    private volatile boolean closed;
+
+    /**
+     * @param maxAge entries older than this are neither served nor accepted from peers
+     */
+    public PeerCache(Duration maxAge) {
+        this.maxAge = maxAge;
+        this.staticPeers = parsePeers(System.getenv("COUCH_PEERS"));
+        Metrics.gauge("peercache.peers", () -> livePeers().size());
+        Metrics.gauge("peercache.bytes", this::storedBytes);
+    }
+
+    /**
+     * Starts the peer endpoint on {@code port} (0 for any) and begins announcing and listening.
+     * Discovery failing, for example on a host without multicast, leaves the static peers working.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/peer/entry", this::serveEntry);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        try {
+            socket = new MulticastSocket(BEACON_PORT);
+            socket.setSoTimeout((int) BEACON_INTERVAL.toMillis());
+            socket.joinGroup(new InetSocketAddress(InetAddress.getByName(GROUP), BEACON_PORT), null);
+            Thread.ofVirtual().name("couchlauncherfx-peer-listen").start(this::listen);
+        } catch (IOException ex) {
+            Metrics.increment("peercache.discovery_unavailable");
+            socket = null;
+        }
+        Thread.ofVirtual().name("couchlauncherfx-peer-beacon").start(this::announce);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Keeps a body the launcher just received from couchserver.
+     */
+    public void put(String key, byte[] body, String contentType) {
+        store(new Entry(key, body, contentType, sha256(body), System.currentTimeMillis()));
+    }
+
+    /** The largest body {@link #put} will keep; callers need not buffer anything bigger. */
+    public synchronized long maxEntryBytes() {
+        return maxBytes / 4;
+    }
+
+    /**
+     * Caps the store at {@code bytes}, evicting least recently used entries at once. A non-positive
+     * value restores the default cap.
+     */
+    public synchronized void setByteLimit(long bytes) {
+        maxBytes = bytes > 0 ? bytes : MAX_BYTES;
+        evict();
+    }
+
+    private synchronized void store(Entry entry) {
+        if (entry.body().length > maxBytes / 4) {
+            return;
+        }
+        Entry previous = entries.remove(entry.key());
+        if (previous != null) {
+            storedBytes -= previous.body().length;
+        }
+        entries.put(entry.key(), entry);
+        storedBytes += entry.body().length;
+        evict();
+    }
+
+    // caller holds this
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (storedBytes > maxBytes && eldest.hasNext()) {
+            storedBytes -= eldest.next().body().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Stops serving peers while the launcher is quiet, so a running stream keeps the uplink.
+     */
+    public synchronized void setServing(boolean value) {
+        serving = value;
+    }
+
+    /**
+     * Asks the peers that advertise {@code key} for it and returns the first body that matches
+     * its advertised hash, or {@code null} so the caller goes to the origin. The body is still
+     * unverified; see the class comment.
+     */
+    public Entry fetch(String key) {
+        String keyHash = keyHash(key);
+        List<Peer> candidates = new ArrayList<>();
+        for (Peer peer : livePeers()) {
+            if (peer.hashes().containsKey(keyHash)) {
+                candidates.add(peer);
+            }
+        }
+        long now = System.nanoTime();
+        for (InetSocketAddress address : staticPeers) {
+            Backoff backoff = staticBackoff.get(address);
+            if ((backoff == null || now - backoff.retryAtNanos() >= 0)
+                    && (address.getPort() != port() || !address.getAddress().isLoopbackAddress())) {
+                candidates.add(new Peer(address, Map.of(), now));
+            }
+        }
+        for (Peer peer : candidates) {
+            Entry entry = fetchFrom(peer, key, peer.hashes().get(keyHash));
+            if (entry != null) {
+                Metrics.increment("peercache.candidate");
+                return entry;
+            }
+        }
+        Metrics.increment("peercache.miss");
+        return null;
+    }
+
+    /**
+     * Keeps a body from {@link #fetch} once couchserver has confirmed it is current. It is stored
+     * as of now, since that is when the origin vouched for it.
+     */
+    public void confirm(Entry entry) {
+        Metrics.increment("peercache.hit");
+        store(new Entry(entry.key(), entry.body(), entry.contentType(), entry.sha256(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (server != null) {
+            server.stop(0);
+        }
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private Entry fetchFrom(Peer peer, String key, String advertisedHash) {
+        InetSocketAddress address = peer.address();
+        URI uri = URI.create("http://" + address.getHostString() + ":" + address.getPort()
+                + "/peer/entry?key=" + URLEncoder.encode(key, StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(PEER_TIMEOUT).GET().build();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            staticBackoff.remove(address);
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            // Only a consistency check against the peer's own claims; the origin has the final word.
+            String claimed = response.headers().firstValue("X-Content-SHA256").orElse("");
+            long storedAt = response.headers().firstValueAsLong("X-Stored-At").orElse(0);
+            byte[] body = response.body();
+            String actual = sha256(body);
+            if (!actual.equals(claimed) || (advertisedHash != null && !actual.equals(advertisedHash))) {
+                Metrics.increment("peercache.verify_failed");
+                return null;
+            }
+            if (System.currentTimeMillis() - storedAt > maxAge.toMillis()) {
+                // stale by the peer's own account, not worth a round trip to confirm
+                return null;
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse("application/json");
+            return new Entry(key, body, contentType, actual, storedAt);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException ex) {
+            // peer went away; try the next one or the origin
+            peers.values().removeIf(candidate -> candidate.address().equals(address));
+            if (staticPeers.contains(address)) {
+                backOff(address);
+            }
+            return null;
+        }
+    }
+
+    private void backOff(InetSocketAddress address) {
+        staticBackoff.compute(address, (ignored, previous) -> {
+            int failures = previous == null ? 1 : previous.failures() + 1;
+            long delayNanos = Math.min(STATIC_PEER_MAX_BACKOFF.toNanos(),
+                    STATIC_PEER_BACKOFF.toNanos() << Math.min(failures - 1, 16));
+            return new Backoff(failures, System.nanoTime() + delayNanos);
+        });
+        Metrics.increment("peercache.peer_backoff");
+    }
+
+    private void serveEntry(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String query = exchange.getRequestURI().getRawQuery();
+            String key = query != null && query.startsWith("key=")
+                    ? URLDecoder.decode(query.substring(4), StandardCharsets.UTF_8)
+                    : "";
+            Entry entry = freshEntry(key);
+            if (entry == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", entry.contentType());
+            exchange.getResponseHeaders().set("X-Content-SHA256", entry.sha256());
+            exchange.getResponseHeaders().set("X-Stored-At", Long.toString(entry.storedAtMillis()));
+            exchange.sendResponseHeaders(200, entry.body().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(entry.body());
+            }
+            Metrics.increment("peercache.served");
+        }
+    }
+
+    private synchronized Entry freshEntry(String key) {
+        if (!serving) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null || System.currentTimeMillis() - entry.storedAtMillis() > maxAge.toMillis()) {
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized byte[] beacon() throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("node", nodeId);
+        node.put("port", port());
+        ObjectNode hashes = node.putObject("entries");
+        if (serving) {
+            long now = System.currentTimeMillis();
+            List<Entry> newest = new ArrayList<>(entries.values());
+            for (int i = newest.size() - 1; i >= 0 && hashes.size() < MAX_ADVERTISED; i--) {
+                Entry entry = newest.get(i);
+                if (now - entry.storedAtMillis() <= maxAge.toMillis()) {
+                    hashes.put(keyHash(entry.key()), entry.sha256());
+                }
+            }
+        }
+        return MAPPER.writeValueAsBytes(node);
+    }
+
+    private void announce() {
+        while (!closed) {
+            MulticastSocket current = socket;
+            if (current != null) {
+                try {
+                    byte[] payload = beacon();
+                    current.send(new DatagramPacket(payload, payload.length, InetAddress.getByName(GROUP), BEACON_PORT));
+                } catch (IOException ex) {
+                    // no route for multicast right now; try again next interval
+                    Log.debug("peer-cache", "Beacon not sent", "error", ex.toString());
+                }
+            }
+            try {
+                Thread.sleep(BEACON_INTERVAL.toMillis());
+            } catch (InterruptedException interrupted) {
+                return;
+            }
+        }
+    }
+
+    private void listen() {
+        byte[] buffer = new byte[16 * 1024];
+        while (!closed) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (SocketTimeoutException timeout) {
+                continue;
+            } catch (IOException ex) {
+                return;
+            }
+            try {
+                JsonNode node = MAPPER.readTree(buffer, 0, packet.getLength());
+                String peerId = node.path("node").asText("");
+                int port = node.path("port").asInt(0);
+                if (peerId.isEmpty() || peerId.equals(nodeId) || port <= 0) {
+                    continue;
+                }
+                Map<String, String> hashes = new ConcurrentHashMap<>();
+                node.path("entries").fields().forEachRemaining(field -> hashes.put(field.getKey(), field.getValue().asText()));
+                peers.put(peerId, new Peer(new InetSocketAddress(packet.getAddress(), port), hashes, System.nanoTime()));
+            } catch (IOException ignored) {
+                // not one of our beacons
+            }
+        }
+    }
+
+    private List<Peer> livePeers() {
+        long cutoff = System.nanoTime() - PEER_EXPIRY.toNanos();
+        peers.values().removeIf(peer -> peer.seenAtNanos() < cutoff);
+        return new ArrayList<>(peers.values());
+    }
+
+    private synchronized long storedBytes() {
+        return storedBytes;
+    }
+
+    private static List<InetSocketAddress> parsePeers(String value) {
+        List<InetSocketAddress> result = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return result;
+        }
+        for (String part : value.split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon > 0) {
+                try {
+                    result.add(new InetSocketAddress(part.substring(0, colon).trim(), Integer.parseInt(part.substring(colon + 1).trim())));
+                } catch (NumberFormatException ignored) {
+                    // skip malformed entries
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String keyHash(String key) {
+        return sha256(key.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Local play history: which apps were launched on this console, when, and for how long. Events
+ * are appended to a log as they happen and replayed at startup. Once the log holds many more lines
+ * than there are apps, it is compacted to one summary line per app, dropping apps not played for
+ * {@link #MAX_AGE}, so the file stays small after years of play.
+ *
+ * <p>Both rankings are maintained incrementally, so reading the first k entries is O(k) and the
+ * history is never rescanned. Top picks use a play score that halves every {@link #HALF_LIFE}. It
+ * is stored as {@code log2(score) + t / halfLife}: every app decays at the same rate, so the order
+ * does not change as time passes and an event only re-sorts the app it belongs to.
+ *
+ * <p>Recording only updates the rankings on the caller's thread, which is usually the FX thread.
+ * Appends and compaction are handed to the {@link TaskScheduler}, one write at a time, with events
+ * recorded meanwhile batched into it; {@link #flush} writes what is still pending at shutdown.
+ */
+public final class PlayHistory {
+
+    private static final Duration HALF_LIFE = Duration.ofDays(14);
+    private static final Duration MAX_AGE = Duration.ofDays(365);
+    private static final double LAUNCH_WEIGHT = 1.0;
+    // a session this long counts as much again as the launch; longer ones up to the cap
+    private static final double FULL_SESSION_SECONDS = 30 * 60;
+    private static final double MAX_SESSION_WEIGHT = 3.0;
+    private static final int COMPACT_MIN_LINES = 512;
+    private static final int COMPACT_LINES_PER_APP = 8;
+
+    private static final String LAUNCH = "L";
+    private static final String SESSION = "S";
+    private static final String SUMMARY = "A";
+
+    private static final class Entry {
+        private final String appId;
+        private long lastPlayedMillis;
+        private int launches;
+        private long playedSeconds;
+        private double rank = Double.NEGATIVE_INFINITY;
+
+        private Entry(String appId) {
+            this.appId = appId;
+        }
+    }
+
+    private static final Comparator<Entry> BY_RECENCY = Comparator
+            .comparingLong((Entry entry) -> entry.lastPlayedMillis).reversed()
+            .thenComparing(entry -> entry.appId);
+    private static final Comparator<Entry> BY_RANK = Comparator
+            .comparingDouble((Entry entry) -> entry.rank).reversed()
+            .thenComparing(entry -> entry.appId);
+
+    private final Path file;
+    private final TaskScheduler scheduler;
+    // held while the file is written; taken before this, never while holding it
+    private final Object io = new Object();
+    // guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> byRecency = new TreeSet<>(BY_RECENCY);
+    private final NavigableSet<Entry> byRank = new TreeSet<>(BY_RANK);
+    // lines recorded but not yet appended, and the log's length counting them
+    private final StringBuilder pending = new StringBuilder();
+    private int logLines;
+    private boolean writeQueued;
+
+    public PlayHistory(Path file, TaskScheduler scheduler) {
+        this.file = file;
+        this.scheduler = scheduler;
+        Metrics.gauge("history.apps", this::size);
+    }
+
+    /** Replays the log, and schedules compaction if it has grown long. */
+    public synchronized void load() {
+        entries.clear();
+        byRecency.clear();
+        byRank.clear();
+        pending.setLength(0);
+        logLines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                logLines++;
+                if (!replay(line.split("\t"))) {
+                    // most likely the tail of an append cut short by a crash
+                    Metrics.increment("history.bad_line");
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return;
+        } catch (IOException ex) {
+            Log.warn("history", "Could not read play history", ex, "file", file);
+            return;
+        }
+        if (isLong()) {
+            queueWrite();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public void recordLaunch(String appId) {
+        record(LAUNCH, appId, System.currentTimeMillis(), 0);
+    }
+
+    public void recordSession(String appId, long durationMillis) {
+        record(SESSION, appId, System.currentTimeMillis(), durationMillis / 1000);
+    }
+
+    /** Up to {@code limit} app ids accepted by {@code filter}, most recently played first. */
+    public synchronized List<String> recent(int limit, Predicate<String> filter) {
+        return first(byRecency, limit, filter);
+    }
+
+    /** Up to {@code limit} app ids accepted by {@code filter}, highest decayed play score first. */
+    public synchronized List<String> top(int limit, Predicate<String> filter) {
+        return first(byRank, limit, filter);
+    }
+
+    private static List<String> first(NavigableSet<Entry> ranking, int limit, Predicate<String> filter) {
+        List<String> ids = new ArrayList<>(Math.min(limit, ranking.size()));
+        for (Entry entry : ranking) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            if (filter.test(entry.appId)) {
+                ids.add(entry.appId);
+            }
+        }
+        return ids;
+    }
+
+    private synchronized void record(String type, String appId, long atMillis, long seconds) {
+        if (appId == null || appId.isBlank() || appId.indexOf('\t') >= 0 || appId.indexOf('\n') >= 0) {
+            return;
+        }
+        if (type.equals(LAUNCH)) {
+            applyLaunch(appId, atMillis);
+        } else {
+            applySession(appId, atMillis, seconds);
+        }
+        pending.append(type).append('\t').append(atMillis).append('\t').append(appId);
+        if (type.equals(SESSION)) {
+            pending.append('\t').append(seconds);
+        }
+        pending.append('\n');
+        logLines++;
+        queueWrite();
+    }
+
+    /** Writes what has been recorded but not written yet, on the calling thread. */
+    public void flush() {
+        synchronized (io) {
+            String lines;
+            String summary = null;
+            synchronized (this) {
+                writeQueued = false;
+                lines = pending.toString();
+                pending.setLength(0);
+                if (isLong()) {
+                    // The summary already holds the pending events, so they must not be appended as well.
+                    summary = compact();
+                }
+            }
+            if (summary != null && replace(summary)) {
+                return;
+            }
+            if (!lines.isEmpty()) {
+                append(lines);
+            }
+        }
+    }
+
+    // caller holds this
+    private void queueWrite() {
+        if (writeQueued) {
+            return;
+        }
+        writeQueued = true;
+        // Interactive rather than refresh, because background lanes are held while a stream runs
+        // and a launch should reach the disk before the stream it starts.
+        scheduler.submit(TaskScheduler.Lane.INTERACTIVE, () -> {
+            flush();
+            return null;
+        });
+    }
+
+    private boolean replay(String[] fields) {
+        try {
+            switch (fields[0]) {
+                case LAUNCH -> {
+                    if (fields.length != 3) {
+                        return false;
+                    }
+                    applyLaunch(fields[2], Long.parseLong(fields[1]));
+                }
+                case SESSION -> {
+                    if (fields.length != 4) {
+                        return false;
+                    }
+                    applySession(fields[2], Long.parseLong(fields[1]), Long.parseLong(fields[3]));
+                }
+                case SUMMARY -> {
+                    if (fields.length != 6) {
+                        return false;
+                    }
+                    Entry entry = detach(fields[1]);
+                    entry.lastPlayedMillis = Long.parseLong(fields[2]);
+                    entry.launches = Integer.parseInt(fields[3]);
+                    entry.playedSeconds = Long.parseLong(fields[4]);
+                    entry.rank = Double.parseDouble(fields[5]);
+                    attach(entry);
+                }
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    // caller holds this
+    private void applyLaunch(String appId, long atMillis) {
+        Entry entry = detach(appId);
+        entry.launches++;
+        entry.lastPlayedMillis = Math.max(entry.lastPlayedMillis, atMillis);
+        entry.rank = addScore(entry.rank, LAUNCH_WEIGHT, atMillis);
+        attach(entry);
+    }
+
+    // caller holds this
+    private void applySession(String appId, long atMillis, long seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        Entry entry = detach(appId);
+        entry.playedSeconds += seconds;
+        entry.lastPlayedMillis = Math.max(entry.lastPlayedMillis, atMillis);
+        entry.rank = addScore(entry.rank, Math.min(MAX_SESSION_WEIGHT, seconds / FULL_SESSION_SECONDS), atMillis);
+        attach(entry);
+    }
+
+    /**
+     * Adds {@code weight}, earned at {@code atMillis}, to a rank. Ranks are base-2 logarithms of
+     * score scaled to a common time, so the sum is taken in the log domain to stay finite.
+     */
+    private static double addScore(double rank, double weight, long atMillis) {
+        double added = Math.log(weight) / Math.log(2) + (double) atMillis / HALF_LIFE.toMillis();
+        if (rank == Double.NEGATIVE_INFINITY) {
+            return added;
+        }
+        double high = Math.max(rank, added);
+        double low = Math.min(rank, added);
+        return high + Math.log1p(Math.pow(2, low - high)) / Math.log(2);
+    }
+
+    // caller holds this; the entry's sort keys are about to change, so take it out of the rankings
+    private Entry detach(String appId) {
+        Entry entry = entries.get(appId);
+        if (entry == null) {
+            entry = new Entry(appId);
+            entries.put(appId, entry);
+        } else {
+            byRecency.remove(entry);
+            byRank.remove(entry);
+        }
+        return entry;
+    }
+
+    // caller holds this
+    private void attach(Entry entry) {
+        byRecency.add(entry);
+        byRank.add(entry);
+    }
+
+    // caller holds this
+    private boolean isLong() {
+        return logLines > Math.max(COMPACT_MIN_LINES, COMPACT_LINES_PER_APP * entries.size());
+    }
+
+    // caller holds this; drops apps not played for MAX_AGE and returns the summary to write
+    private String compact() {
+        long cutoff = System.currentTimeMillis() - MAX_AGE.toMillis();
+        while (!byRecency.isEmpty() && byRecency.last().lastPlayedMillis < cutoff) {
+            Entry stale = byRecency.pollLast();
+            byRank.remove(stale);
+            entries.remove(stale.appId);
+        }
+        StringBuilder summary = new StringBuilder();
+        for (Entry entry : byRecency) {
+            summary.append(SUMMARY).append('\t').append(entry.appId).append('\t').append(entry.lastPlayedMillis)
+                    .append('\t').append(entry.launches).append('\t').append(entry.playedSeconds)
+                    .append('\t').append(entry.rank).append('\n');
+        }
+        logLines = entries.size();
+        return summary.toString();
+    }
+
+    // caller holds io
+    private void append(String lines) {
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            Log.warn("history", "Could not append to play history", ex, "file", file);
+        }
+    }
+
+    /** Returns whether the log now holds exactly {@code summary}. Caller holds io. */
+    private boolean replace(String summary) {
+        // Written beside the log and moved over it, so a crash never leaves half a file.
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(temp, summary, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            Log.warn("history", "Could not compact play history", ex, "file", file);
+            return false;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Metrics.increment("history.compacted");
+            return true;
+        } catch (IOException ex) {
+            Log.warn("history", "Could not replace play history", ex, "file", file);
+            return false;
+        }
+    }
+}
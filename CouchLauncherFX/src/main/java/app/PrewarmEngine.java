@@ -0,0 +1,195 @@
+package app;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.IntFunction;
+
+/**
+ * Asks couchserver to pre-warm a title ({@code POST /warm/{app_id}}) before the user clicks it:
+ * when a tile keeps focus past a dwell threshold, or when local play history predicts it.
+ * Warms are limited by a per-console budget and a cap on concurrently warm titles, and each warm
+ * expires after a TTL. Launches are classified as hits or misses so the hit rate and the time saved
+ * ({@code launch.total.cold} against {@code launch.total.warm}) show up in metrics.
+ */
+public final class PrewarmEngine {
+
+    public record Policy(Duration focusDwell, int maxWarmsPerWindow, Duration budgetWindow, int maxActive, Duration ttl, int predictions) {
+        public static final Policy DEFAULT = new Policy(
+                Duration.ofMillis(1500),
+                6,
+                Duration.ofMinutes(10),
+                2,
+                Duration.ofMinutes(5),
+                1
+        );
+    }
+
+    private final TaskScheduler scheduler;
+    private final Policy policy;
+    private final IntFunction<List<String>> predictor;
+
+    // guarded by this
+    private final Map<String, Long> active = new HashMap<>();
+    private final Deque<Long> issued = new ArrayDeque<>();
+    private ScheduledFuture<?> pendingFocus;
+    private String pendingFocusId;
+    private volatile boolean predictionsPaused;
+
+    /**
+     * @param predictor returns up to {@code k} app ids most likely to be launched next
+     */
+    public PrewarmEngine(TaskScheduler scheduler, Policy policy, IntFunction<List<String>> predictor) {
+        this.scheduler = scheduler;
+        this.policy = policy;
+        this.predictor = predictor;
+        Metrics.gauge("prewarm.active", this::activeCount);
+    }
+
+    /**
+     * A tile gained focus. Schedules a warm once the dwell threshold passes, replacing any warm
+     * still pending for a previously focused tile.
+     */
+    public synchronized void onFocus(String host, AppTile tile) {
+        cancelPendingFocus();
+        if (!tile.playable() || isWarm(tile.id)) {
+            return;
+        }
+        pendingFocusId = tile.id;
+        pendingFocus = scheduler.schedule(TaskScheduler.Lane.PREFETCH, "warm-focus", policy.focusDwell().toMillis(), () -> {
+            synchronized (this) {
+                if (tile.id.equals(pendingFocusId)) {
+                    pendingFocus = null;
+                    pendingFocusId = null;
+                }
+            }
+            warm(host, tile.id);
+            return null;
+        });
+    }
+
+    public synchronized void onFocusLost(AppTile tile) {
+        if (tile.id.equals(pendingFocusId)) {
+            cancelPendingFocus();
+        }
+    }
+
+    /**
+     * Stops speculative warms from play history, e.g. under memory pressure. Focus warms still
+     * apply since the user is already on the tile.
+     */
+    public void pausePredictions(boolean paused) {
+        predictionsPaused = paused;
+    }
+
+    /**
+     * Warms the titles the play history ranks highest among the playable tiles on screen.
+     */
+    public void predict(String host, List<AppTile> tiles) {
+        if (predictionsPaused || policy.predictions() <= 0 || tiles == null || tiles.isEmpty()) {
+            return;
+        }
+        Map<String, AppTile> playable = new HashMap<>();
+        for (AppTile tile : tiles) {
+            if (tile.playable()) {
+                playable.put(tile.id, tile);
+            }
+        }
+        int warmed = 0;
+        for (String appId : predictor.apply(policy.predictions() + 2)) {
+            if (warmed >= policy.predictions()) {
+                break;
+            }
+            if (playable.containsKey(appId)) {
+                scheduler.submit(TaskScheduler.Lane.PREFETCH, "warm-predict-" + appId, () -> {
+                    warm(host, appId);
+                    return null;
+                });
+                warmed++;
+            }
+        }
+    }
+
+    /**
+     * Called as a launch starts. Returns whether the title was warm and consumes the warm entry.
+     */
+    public boolean claim(AppTile tile) {
+        boolean hit;
+        synchronized (this) {
+            cancelPendingFocus();
+            expire(System.nanoTime());
+            hit = active.remove(tile.id) != null;
+        }
+        Metrics.increment(hit ? "prewarm.hit" : "prewarm.miss");
+        return hit;
+    }
+
+    public void recordLaunch(boolean hit, long totalMillis) {
+        Metrics.histogram(hit ? "launch.total.warm" : "launch.total.cold").record(totalMillis * 1000L);
+    }
+
+    private void warm(String host, String appId) throws Exception {
+        synchronized (this) {
+            long now = System.nanoTime();
+            expire(now);
+            if (active.containsKey(appId)) {
+                return;
+            }
+            if (active.size() >= policy.maxActive() || issued.size() >= policy.maxWarmsPerWindow()) {
+                Metrics.increment("prewarm.budget_denied");
+                return;
+            }
+            issued.addLast(now);
+            active.put(appId, now + policy.ttl().toNanos());
+        }
+        try {
+            HttpRepo.warm(host, appId);
+            Metrics.increment("prewarm.issued");
+        } catch (Exception ex) {
+            synchronized (this) {
+                active.remove(appId);
+            }
+            Metrics.increment("prewarm.failed");
+            throw ex;
+        }
+    }
+
+    // caller holds this
+    private void expire(long now) {
+        long windowStart = now - policy.budgetWindow().toNanos();
+        while (!issued.isEmpty() && issued.peekFirst() < windowStart) {
+            issued.removeFirst();
+        }
+        Iterator<Map.Entry<String, Long>> iterator = active.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() < now) {
+                iterator.remove();
+                Metrics.increment("prewarm.expired");
+            }
+        }
+    }
+
+    // caller holds this
+    private boolean isWarm(String appId) {
+        Long expiry = active.get(appId);
+        return expiry != null && expiry >= System.nanoTime();
+    }
+
+    // caller holds this
+    private void cancelPendingFocus() {
+        if (pendingFocus != null) {
+            pendingFocus.cancel(false);
+            pendingFocus = null;
+        }
+        pendingFocusId = null;
+    }
+
+    private synchronized long activeCount() {
+        return active.size();
+    }
+}
@@ -0,0 +1,113 @@
+package app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Decides when the launcher refreshes its catalog in the background. {@code /charts/top10} rolls
+ * over once per {@code chart_date}, so the next chart refresh is planned just after the following
+ * rollover rather than polled for. The library, which changes whenever ownership or install state
+ * does, is revalidated on a slower fixed cadence.
+ *
+ * <p>Every delay carries a jitter derived from the console id, so a fleet of consoles spreads its
+ * requests over a window instead of hitting couchserver together at midnight, while any one
+ * console stays predictable. Failed refreshes back off exponentially until one succeeds.
+ */
+public final class RefreshPlanner {
+
+    public record Policy(Duration jitterWindow,
+                         Duration libraryInterval,
+                         Duration staleRetry,
+                         Duration minBackoff,
+                         Duration maxBackoff) {
+        public static final Policy DEFAULT = new Policy(
+                Duration.ofMinutes(30),
+                Duration.ofHours(6),
+                Duration.ofMinutes(30),
+                Duration.ofSeconds(30),
+                Duration.ofMinutes(30)
+        );
+    }
+
+    private final Policy policy;
+    private final long consoleHash;
+    private int failures;
+
+    public RefreshPlanner(String consoleId, Policy policy) {
+        this.policy = policy;
+        this.consoleHash = hash(consoleId);
+    }
+
+    /**
+     * Delay until the next background refresh after a successful one.
+     *
+     * @param chartDate the newest {@code chart_date} in the catalog just loaded, or {@code null}
+     */
+    public synchronized Duration afterSuccess(Instant now, String chartDate) {
+        failures = 0;
+        Duration library = policy.libraryInterval().plus(jitter(1));
+        Instant rollover = nextRollover(chartDate);
+        if (rollover == null) {
+            return library;
+        }
+        Instant target = rollover.plus(jitter(0));
+        Duration chart = Duration.between(now, target);
+        if (chart.isNegative() || chart.isZero()) {
+            // The expected rollover has passed but the server still serves the old chart.
+            chart = policy.staleRetry().plus(jitter(2).dividedBy(6));
+        }
+        return chart.compareTo(library) < 0 ? chart : library;
+    }
+
+    /**
+     * Delay until the next attempt after a failed refresh, typically while offline.
+     */
+    public synchronized Duration afterFailure() {
+        failures = Math.min(failures + 1, 16);
+        long base = policy.minBackoff().toMillis() << Math.min(failures - 1, 10);
+        long capped = Math.min(base, policy.maxBackoff().toMillis());
+        // Spread retries within the upper quarter of the interval.
+        long spread = capped / 4;
+        long offset = spread == 0 ? 0 : Math.floorMod(consoleHash + failures, spread);
+        return Duration.ofMillis(capped - spread + offset);
+    }
+
+    private static Instant nextRollover(String chartDate) {
+        if (chartDate == null || chartDate.isBlank()) {
+            return null;
+        }
+        try {
+            LocalDate date = LocalDate.parse(chartDate.length() > 10 ? chartDate.substring(0, 10) : chartDate);
+            return date.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    private Duration jitter(int salt) {
+        long window = policy.jitterWindow().toMillis();
+        if (window <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(Math.floorMod(consoleHash * 31 + salt * 0x9E3779B97F4A7C15L, window));
+    }
+
+    private static long hash(String consoleId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(consoleId.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = (value << 8) | (digest[i] & 0xFF);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException ex) {
+            return consoleId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loopback control socket for resident mode. A launcher kept running in the background listens
+ * here; a second launcher start, or {@code show_couchlauncher.sh}, sends {@code show} and the
+ * existing window comes back instead of a new JVM and toolkit starting up. The protocol is one
+ * line per connection: {@code show}, {@code hide}, {@code quit} or {@code log-level <spec>} (see
+ * {@link Log#configure}), answered with {@code ok}.
+ */
+public final class ResidentControl implements AutoCloseable {
+
+    public interface Handler {
+        void show();
+
+        void hide();
+
+        void quit();
+    }
+
+    public static final int DEFAULT_PORT = 47322;
+    private static final int CLIENT_TIMEOUT_MILLIS = 500;
+    private static final int MAX_COMMAND_LENGTH = 64;
+
+    private final ServerSocket server;
+    private final Handler handler;
+    private volatile boolean closed;
+
+    public ResidentControl(int port, Handler handler) throws IOException {
+        this.handler = handler;
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4);
+        Thread.ofVirtual().name("couchlauncherfx-resident").start(this::acceptLoop);
+    }
+
+    /** {@code COUCH_RESIDENT_PORT}, or {@link #DEFAULT_PORT}. */
+    public static int port() {
+        String value = System.getenv("COUCH_RESIDENT_PORT");
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException ignored) {
+                // fall back to the default port
+            }
+        }
+        return DEFAULT_PORT;
+    }
+
+    /**
+     * Sends {@code command} to a resident launcher on this machine.
+     *
+     * @return {@code true} if one is running and accepted it
+     */
+    public static boolean signal(String command, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CLIENT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(CLIENT_TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            return "ok".equals(reader.readLine());
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException ex) {
+                if (!closed) {
+                    Log.error("resident", "Control socket failed", ex);
+                }
+                return;
+            }
+            Thread.ofVirtual().name("couchlauncherfx-resident-client").start(() -> handle(socket));
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setSoTimeout(CLIENT_TIMEOUT_MILLIS * 2);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), MAX_COMMAND_LENGTH);
+            String line = reader.readLine();
+            String command = line == null ? "" : line.trim();
+            boolean known = true;
+            String name = command;
+            if (command.startsWith("log-level ")) {
+                name = "log-level";
+                known = Log.configure(command.substring(name.length()));
+                Log.info("resident", "Log levels changed", "spec", command.substring(name.length()).trim());
+            } else {
+                switch (command) {
+                    case "show" -> handler.show();
+                    case "hide" -> handler.hide();
+                    case "quit" -> handler.quit();
+                    default -> known = false;
+                }
+            }
+            Metrics.increment("resident.command." + (known ? name : "unknown"));
+            socket.getOutputStream().write((known ? "ok\n" : "unknown\n").getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException ignored) {
+            // client went away before the reply
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package app;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Puts the launcher into a low-power state while a stream is running so it does not compete with
+ * video decode. Subsystems register a {@link Participant}; entering quiet mode calls them in
+ * registration order, leaving it resumes them in reverse.
+ *
+ * <p>Process CPU time is accounted separately for normal and quiet periods and published as
+ * {@code governor.cpu.normal_permille} and {@code governor.cpu.quiet_permille} (thousandths of
+ * one core), so the effect shows up in the metrics file.
+ */
+public final class ResourceGovernor {
+
+    public interface Participant {
+        void quiet();
+
+        void resume();
+    }
+
+    private final com.sun.management.OperatingSystemMXBean os;
+
+    // guarded by this
+    private final Map<String, Participant> participants = new LinkedHashMap<>();
+    private boolean quiet;
+    private long modeStartedNanos = System.nanoTime();
+    private long modeStartedCpuNanos;
+    private final long[] wallNanos = new long[2];
+    private final long[] cpuNanos = new long[2];
+
+    public ResourceGovernor() {
+        this.os = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean bean ? bean : null;
+        this.modeStartedCpuNanos = processCpuNanos();
+        Metrics.gauge("governor.quiet", () -> isQuiet() ? 1 : 0);
+        Metrics.gauge("governor.cpu.normal_permille", () -> cpuPermille(false));
+        Metrics.gauge("governor.cpu.quiet_permille", () -> cpuPermille(true));
+    }
+
+    public synchronized void register(String name, Participant participant) {
+        participants.put(name, participant);
+        if (quiet) {
+            participant.quiet();
+        }
+    }
+
+    public synchronized boolean isQuiet() {
+        return quiet;
+    }
+
+    public synchronized void setQuiet(boolean value) {
+        if (quiet == value) {
+            return;
+        }
+        accountMode();
+        quiet = value;
+        if (value) {
+            Metrics.increment("governor.quiet_entered");
+            for (Map.Entry<String, Participant> entry : participants.entrySet()) {
+                run(entry.getKey(), entry.getValue()::quiet);
+            }
+        } else {
+            List<Map.Entry<String, Participant>> reversed = new ArrayList<>(participants.entrySet());
+            for (int i = reversed.size() - 1; i >= 0; i--) {
+                Map.Entry<String, Participant> entry = reversed.get(i);
+                run(entry.getKey(), entry.getValue()::resume);
+            }
+        }
+    }
+
+    private static void run(String name, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            // One misbehaving participant must not leave the others half switched.
+            Metrics.increment("governor.participant_failed." + name);
+            Log.error("governor", "Participant failed", ex, "participant", name);
+        }
+    }
+
+    // caller holds this
+    private void accountMode() {
+        long now = System.nanoTime();
+        long cpu = processCpuNanos();
+        int mode = quiet ? 1 : 0;
+        wallNanos[mode] += now - modeStartedNanos;
+        if (cpu >= 0 && modeStartedCpuNanos >= 0) {
+            cpuNanos[mode] += cpu - modeStartedCpuNanos;
+        }
+        modeStartedNanos = now;
+        modeStartedCpuNanos = cpu;
+    }
+
+    private synchronized long cpuPermille(boolean quietMode) {
+        accountMode();
+        int mode = quietMode ? 1 : 0;
+        return wallNanos[mode] == 0 ? 0 : cpuNanos[mode] * 1000L / wallNanos[mode];
+    }
+
+    private long processCpuNanos() {
+        return os != null ? os.getProcessCpuTime() : -1;
+    }
+}
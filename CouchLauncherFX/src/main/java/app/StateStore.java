@@ -0,0 +1,91 @@
+package app;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds shared state as one immutable snapshot. Any thread updates it by handing
+ * {@link #update} a reducer, which is applied to the current snapshot and published with
+ * compare-and-set. Under contention it is re-applied to the newer snapshot, so no update is lost
+ * and nobody reads a half-applied change.
+ *
+ * <p>Listeners are not called from {@code update}. The store asks for a delivery through the
+ * wake-up callback, and the UI calls {@link #deliver} once per frame. However many updates
+ * happened in between, listeners see one {@code (previous, current)} change.
+ */
+public final class StateStore<S> {
+
+    public interface Listener<S> {
+        void changed(S previous, S current);
+    }
+
+    private final AtomicReference<S> state;
+    private final AtomicBoolean deliveryPending = new AtomicBoolean();
+    private final Runnable wakeUp;
+    private final List<Listener<S>> listeners = new CopyOnWriteArrayList<>();
+    private S delivered; // touched only by the thread calling deliver()
+
+    /**
+     * @param wakeUp asks the UI thread to call {@link #deliver} soon; called from any thread
+     */
+    public StateStore(S initial, Runnable wakeUp) {
+        this.state = new AtomicReference<>(initial);
+        this.delivered = initial;
+        this.wakeUp = wakeUp;
+    }
+
+    public S get() {
+        return state.get();
+    }
+
+    /**
+     * Applies {@code reducer} atomically and returns the snapshot it produced. The reducer may
+     * run more than once, so it must not have side effects; returning its argument unchanged
+     * publishes nothing.
+     */
+    public S update(UnaryOperator<S> reducer) {
+        while (true) {
+            S current = state.get();
+            S next = reducer.apply(current);
+            if (next == current) {
+                return current;
+            }
+            if (state.compareAndSet(current, next)) {
+                if (deliveryPending.compareAndSet(false, true)) {
+                    wakeUp.run();
+                }
+                return next;
+            }
+            Metrics.increment("state.cas_retry");
+        }
+    }
+
+    public void addListener(Listener<S> listener) {
+        listeners.add(listener);
+    }
+
+    /** Tells listeners about everything published since the last call. For the UI thread. */
+    public void deliver() {
+        // Cleared before reading, so an update racing with this delivery schedules the next one.
+        if (!deliveryPending.getAndSet(false)) {
+            return;
+        }
+        S current = state.get();
+        S previous = delivered;
+        if (current == previous) {
+            return;
+        }
+        delivered = current;
+        Metrics.increment("state.delivered");
+        for (Listener<S> listener : listeners) {
+            try {
+                listener.changed(previous, current);
+            } catch (RuntimeException ex) {
+                Log.error("state", "State listener failed", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Owns running stream client processes. stdout and stderr are drained on virtual threads so the
+ * client never blocks on a full pipe, Moonlight's performance statistics are parsed into a
+ * per-session timeline, and exits are classified as clean, crashed or stopped by the launcher.
+ * Timelines are written as JSON when a session ends; the most recent few are kept.
+ */
+public final class StreamSupervisor {
+
+    public enum State {
+        RUNNING,
+        EXITED,
+        CRASHED,
+        STOPPED
+    }
+
+    /**
+     * One statistics block. Fields the client did not report are {@link Double#NaN}.
+     */
+    public record Sample(long atMillis, double fps, double decodeMillis, double droppedPercent, double bitrateMbps, double networkLatencyMillis) {}
+
+    public interface Listener {
+        default void onStart(StreamSession session) {
+        }
+
+        default void onSample(StreamSession session, Sample sample) {
+        }
+
+        void onExit(StreamSession session);
+    }
+
+    private static final int MAX_SAMPLES = 3_600;
+    private static final int TAIL_LINES = 50;
+    private static final int KEPT_TIMELINES = 20;
+    private static final Pattern FRAME_RATE = Pattern.compile("(?i)(rendering|decoding|incoming) frame rate[^:]*:\\s*([\\d.]+)\\s*fps");
+    private static final Pattern DECODE_TIME = Pattern.compile("(?i)(?:average )?decoding time[^:]*:\\s*([\\d.]+)\\s*ms");
+    private static final Pattern DROPPED = Pattern.compile("(?i)frames dropped[^:]*:\\s*([\\d.]+)\\s*%");
+    private static final Pattern BITRATE = Pattern.compile("(?i)bitrate[^:]*:\\s*([\\d.]+)\\s*(mbps|kbps)");
+    private static final Pattern NETWORK_LATENCY = Pattern.compile("(?i)network latency[^:]*:\\s*([\\d.]+)\\s*ms");
+    private static final Pattern CRASH_MARKER = Pattern.compile("(?i)segmentation fault|terminate called|core dumped|fatal error");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path timelineDir;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<StreamSession> active = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * @param timelineDir where finished session timelines are written, or {@code null} to keep them in memory only
+     */
+    public StreamSupervisor(Path timelineDir) {
+        this.timelineDir = timelineDir;
+        Metrics.gauge("stream.active", active::size);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean hasActiveStream() {
+        return !active.isEmpty();
+    }
+
+    public List<StreamSession> activeSessions() {
+        return List.copyOf(active);
+    }
+
+    /**
+     * Takes ownership of {@code process}. Its output must not be redirected to a file or
+     * discarded: both pipes are consumed here.
+     */
+    public StreamSession attach(String title, Process process) {
+        StreamSession session = new StreamSession(sequence.incrementAndGet(), title, process);
+        active.add(session);
+        Metrics.increment("stream.started");
+        for (Listener listener : listeners) {
+            listener.onStart(session);
+        }
+        CompletableFuture<Void> stdout = drainAsync(session, process.getInputStream(), "out");
+        CompletableFuture<Void> stderr = drainAsync(session, process.getErrorStream(), "err");
+        // Report the exit only once both pipes hit EOF so the final statistics are not lost.
+        CompletableFuture.allOf(stdout, stderr, process.onExit()).thenRun(() -> finish(session));
+        return session;
+    }
+
+    /**
+     * Stops {@code process} on the launcher's behalf, so its exit is recorded as
+     * {@link State#STOPPED} rather than a crash. A process that was never attached is just destroyed.
+     */
+    public void stop(Process process) {
+        for (StreamSession session : active) {
+            if (session.process() == process) {
+                session.stop();
+                return;
+            }
+        }
+        process.destroy();
+    }
+
+    private CompletableFuture<Void> drainAsync(StreamSession session, InputStream stream, String name) {
+        CompletableFuture<Void> drained = new CompletableFuture<>();
+        Thread.ofVirtual().name("couchlauncherfx-stream-" + name + "-" + session.id).start(() -> {
+            try {
+                drain(session, stream);
+            } finally {
+                drained.complete(null);
+            }
+        });
+        return drained;
+    }
+
+    private void drain(StreamSession session, InputStream stream) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Sample sample = session.accept(line);
+                if (sample != null) {
+                    publishSample(session, sample);
+                }
+            }
+        } catch (IOException ignored) {
+            // pipe closed as the process exited
+        }
+    }
+
+    private void finish(StreamSession session) {
+        Sample last = session.complete();
+        if (last != null) {
+            publishSample(session, last);
+        }
+        active.remove(session);
+        Metrics.increment("stream." + session.state().name().toLowerCase(Locale.ENGLISH));
+        writeTimeline(session);
+        for (Listener listener : listeners) {
+            listener.onExit(session);
+        }
+    }
+
+    private void publishSample(StreamSession session, Sample sample) {
+        if (!Double.isNaN(sample.decodeMillis())) {
+            Metrics.histogram("stream.decode_latency").record((long) (sample.decodeMillis() * 1000));
+        }
+        for (Listener listener : listeners) {
+            listener.onSample(session, sample);
+        }
+    }
+
+    private void writeTimeline(StreamSession session) {
+        if (timelineDir == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(timelineDir);
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("title", session.title());
+            payload.put("startedAt", session.startedAtMillis());
+            payload.put("durationMillis", session.durationMillis());
+            payload.put("state", session.state().name());
+            payload.put("exitCode", session.exitCode());
+            payload.put("samples", session.samples());
+            payload.put("tail", session.tail());
+            Path target = timelineDir.resolve("stream-" + session.startedAtMillis() + "-" + session.id + ".json");
+            Files.writeString(target, MAPPER.writeValueAsString(payload), StandardCharsets.UTF_8);
+            pruneTimelines();
+        } catch (IOException ex) {
+            Log.warn("stream", "Could not write stream timeline", ex, "stream", session.id);
+        }
+    }
+
+    private void pruneTimelines() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(timelineDir)) {
+            files = listing.filter(path -> path.getFileName().toString().startsWith("stream-"))
+                    .sorted(Comparator.comparing((Path path) -> path.toFile().lastModified()).reversed())
+                    .toList();
+        }
+        for (Path stale : files.subList(Math.min(KEPT_TIMELINES, files.size()), files.size())) {
+            Files.deleteIfExists(stale);
+        }
+    }
+
+    public static final class StreamSession {
+        private final int id;
+        private final String title;
+        private final Process process;
+        private final long startedAtMillis = System.currentTimeMillis();
+        private final long startedNanos = System.nanoTime();
+
+        // guarded by this
+        private final Deque<Sample> samples = new ArrayDeque<>();
+        private final Deque<String> tail = new ArrayDeque<>();
+        private double fps = Double.NaN;
+        private double decodeMillis = Double.NaN;
+        private double droppedPercent = Double.NaN;
+        private double bitrateMbps = Double.NaN;
+        private double networkLatencyMillis = Double.NaN;
+        private long blockAtMillis;
+        private boolean crashMarker;
+        private volatile boolean stopRequested;
+        private volatile State state = State.RUNNING;
+        private volatile long endedNanos;
+
+        private StreamSession(int id, String title, Process process) {
+            this.id = id;
+            this.title = title;
+            this.process = process;
+        }
+
+        public String title() {
+            return title;
+        }
+
+        public Process process() {
+            return process;
+        }
+
+        public long startedAtMillis() {
+            return startedAtMillis;
+        }
+
+        public State state() {
+            return state;
+        }
+
+        public Integer exitCode() {
+            return process.isAlive() ? null : process.exitValue();
+        }
+
+        public long durationMillis() {
+            long end = state == State.RUNNING ? System.nanoTime() : endedNanos;
+            return (end - startedNanos) / 1_000_000L;
+        }
+
+        public synchronized List<Sample> samples() {
+            return new ArrayList<>(samples);
+        }
+
+        public synchronized List<String> tail() {
+            return new ArrayList<>(tail);
+        }
+
+        public void stop() {
+            stopRequested = true;
+            process.destroy();
+        }
+
+        /**
+         * Parses one output line. Returns a completed sample when the line starts a new
+         * statistics block, otherwise {@code null}.
+         */
+        private synchronized Sample accept(String line) {
+            if (tail.size() == TAIL_LINES) {
+                tail.removeFirst();
+            }
+            tail.addLast(line);
+            if (CRASH_MARKER.matcher(line).find()) {
+                crashMarker = true;
+            }
+            Sample completed = null;
+            Matcher matcher = FRAME_RATE.matcher(line);
+            if (matcher.find()) {
+                String kind = matcher.group(1).toLowerCase(Locale.ENGLISH);
+                // Moonlight prints incoming, decoding and rendering rates; a new incoming line opens a new block.
+                if (kind.equals("incoming") && hasPending()) {
+                    completed = flush();
+                }
+                markBlock();
+                if (kind.equals("rendering") || Double.isNaN(fps)) {
+                    fps = Double.parseDouble(matcher.group(2));
+                }
+                return completed;
+            }
+            if ((matcher = DECODE_TIME.matcher(line)).find()) {
+                markBlock();
+                decodeMillis = Double.parseDouble(matcher.group(1));
+            } else if ((matcher = DROPPED.matcher(line)).find()) {
+                markBlock();
+                double value = Double.parseDouble(matcher.group(1));
+                droppedPercent = Double.isNaN(droppedPercent) ? value : droppedPercent + value;
+            } else if ((matcher = BITRATE.matcher(line)).find()) {
+                markBlock();
+                double value = Double.parseDouble(matcher.group(1));
+                bitrateMbps = matcher.group(2).equalsIgnoreCase("kbps") ? value / 1000.0 : value;
+            } else if ((matcher = NETWORK_LATENCY.matcher(line)).find()) {
+                markBlock();
+                networkLatencyMillis = Double.parseDouble(matcher.group(1));
+            }
+            return null;
+        }
+
+        private synchronized Sample complete() {
+            endedNanos = System.nanoTime();
+            int code = process.exitValue();
+            if (stopRequested) {
+                state = State.STOPPED;
+            } else if (code != 0 || crashMarker) {
+                state = State.CRASHED;
+            } else {
+                state = State.EXITED;
+            }
+            return hasPending() ? flush() : null;
+        }
+
+        // caller holds this
+        private boolean hasPending() {
+            return !Double.isNaN(fps) || !Double.isNaN(decodeMillis) || !Double.isNaN(droppedPercent)
+                    || !Double.isNaN(bitrateMbps) || !Double.isNaN(networkLatencyMillis);
+        }
+
+        // caller holds this
+        private void markBlock() {
+            if (!hasPending()) {
+                blockAtMillis = System.currentTimeMillis() - startedAtMillis;
+            }
+        }
+
+        // caller holds this
+        private Sample flush() {
+            Sample sample = new Sample(blockAtMillis, fps, decodeMillis, droppedPercent, bitrateMbps, networkLatencyMillis);
+            if (samples.size() == MAX_SAMPLES) {
+                samples.removeFirst();
+            }
+            samples.addLast(sample);
+            fps = Double.NaN;
+            decodeMillis = Double.NaN;
+            droppedPercent = Double.NaN;
+            bitrateMbps = Double.NaN;
+            networkLatencyMillis = Double.NaN;
+            return sample;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package app;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launcher background work scheduler. Tasks are queued in priority lanes and each runs on its
+ * own virtual thread, so blocking HTTP and file I/O never ties up a platform thread. Concurrency
+ * is capped so the lanes matter: interactive work may use a few reserved slots beyond the cap and
+ * therefore never waits behind a catalog retry loop.
+ *
+ * <p>Tasks may carry a key. Submitting a new task with the same key cancels the queued or running
+ * predecessor (the running thread is interrupted), so a newer refresh supersedes a stale one.
+ */
+public final class TaskScheduler implements AutoCloseable {
+
+    public enum Lane {
+        INTERACTIVE,
+        REFRESH,
+        PREFETCH
+    }
+
+    private static final int DEFAULT_MAX_CONCURRENT = 3;
+    private static final int INTERACTIVE_RESERVE = 2;
+
+    private final int maxConcurrent;
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private final Map<String, Task<?>> byKey = new HashMap<>();
+    private final int[] queued = new int[Lane.values().length];
+    private final LatencyHistogram[] waitTimes = new LatencyHistogram[Lane.values().length];
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "couchlauncherfx-scheduler-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long sequence;
+    private int running;
+    private boolean backgroundHeld;
+    private boolean closed;
+
+    public TaskScheduler() {
+        this(DEFAULT_MAX_CONCURRENT);
+    }
+
+    public TaskScheduler(int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        for (Lane lane : Lane.values()) {
+            String name = lane.name().toLowerCase(Locale.ENGLISH);
+            waitTimes[lane.ordinal()] = Metrics.histogram("scheduler.wait." + name);
+            Metrics.gauge("scheduler.queue." + name, () -> queueDepth(lane));
+        }
+        Metrics.gauge("scheduler.running", this::runningCount);
+    }
+
+    public <T> CompletableFuture<T> submit(Lane lane, Callable<T> work) {
+        return submit(lane, null, work);
+    }
+
+    /**
+     * Queues {@code work}. When {@code key} is non-null any earlier task with the same key that
+     * has not finished is cancelled.
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, String key, Callable<T> work) {
+        Task<T> task;
+        Task<?> superseded;
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new CancellationException("scheduler closed"));
+            }
+            task = new Task<>(lane, key, work, sequence++, System.nanoTime());
+            superseded = key == null ? null : byKey.put(key, task);
+            if (superseded != null && queue.remove(superseded)) {
+                queued[superseded.lane.ordinal()]--;
+            }
+            queue.add(task);
+            queued[lane.ordinal()]++;
+        }
+        if (superseded != null && superseded.cancel()) {
+            Metrics.increment("scheduler.superseded");
+        }
+        dispatch();
+        return task.future;
+    }
+
+    /**
+     * Submits {@code work} after {@code delayMillis}. The returned handle cancels the pending
+     * submission; once submitted, the task itself is cancelled through supersession.
+     */
+    public ScheduledFuture<?> schedule(Lane lane, String key, long delayMillis, Callable<?> work) {
+        return timer.schedule(() -> submit(lane, key, work), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void cancel(String key) {
+        Task<?> task;
+        synchronized (this) {
+            task = byKey.remove(key);
+            if (task != null && queue.remove(task)) {
+                queued[task.lane.ordinal()]--;
+            }
+        }
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * While held, REFRESH and PREFETCH tasks stay queued (supersession still applies) and only
+     * INTERACTIVE work is started. Releasing the hold dispatches whatever accumulated.
+     */
+    public void holdBackground(boolean hold) {
+        synchronized (this) {
+            backgroundHeld = hold;
+        }
+        if (!hold) {
+            dispatch();
+        }
+    }
+
+    public synchronized int queueDepth(Lane lane) {
+        return queued[lane.ordinal()];
+    }
+
+    public synchronized int runningCount() {
+        return running;
+    }
+
+    public static boolean isCancellation(Throwable throwable) {
+        return throwable instanceof CancellationException
+                || (throwable instanceof CompletionException && throwable.getCause() instanceof CancellationException);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            for (Task<?> task : queue) {
+                task.cancel();
+            }
+            for (Task<?> task : byKey.values()) {
+                task.cancel();
+            }
+            queue.clear();
+            byKey.clear();
+            Arrays.fill(queued, 0);
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            Task<?> next;
+            synchronized (this) {
+                next = queue.peek();
+                if (next == null) {
+                    return;
+                }
+                // INTERACTIVE sorts first, so a background task at the head means no interactive work is waiting.
+                if (next.lane != Lane.INTERACTIVE && backgroundHeld) {
+                    return;
+                }
+                int limit = next.lane == Lane.INTERACTIVE ? maxConcurrent + INTERACTIVE_RESERVE : maxConcurrent;
+                if (running >= limit) {
+                    return;
+                }
+                queue.poll();
+                queued[next.lane.ordinal()]--;
+                if (next.future.isDone()) {
+                    continue;
+                }
+                running++;
+            }
+            start(next);
+        }
+    }
+
+    private <T> void start(Task<T> task) {
+        Thread.ofVirtual()
+                .name("couchlauncherfx-" + task.lane.name().toLowerCase(Locale.ENGLISH))
+                .start(() -> run(task));
+    }
+
+    private <T> void run(Task<T> task) {
+        waitTimes[task.lane.ordinal()].record((System.nanoTime() - task.enqueuedNanos) / 1000L);
+        task.thread = Thread.currentThread();
+        try {
+            if (!task.future.isDone()) {
+                task.future.complete(task.work.call());
+            }
+        } catch (Throwable throwable) {
+            task.future.completeExceptionally(throwable);
+        } finally {
+            task.thread = null;
+            synchronized (this) {
+                running--;
+                if (task.key != null && byKey.get(task.key) == task) {
+                    byKey.remove(task.key);
+                }
+            }
+            dispatch();
+        }
+    }
+
+    private static final class Task<T> implements Comparable<Task<?>> {
+        private final Lane lane;
+        private final String key;
+        private final Callable<T> work;
+        private final long sequence;
+        private final long enqueuedNanos;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile Thread thread;
+
+        private Task(Lane lane, String key, Callable<T> work, long sequence, long enqueuedNanos) {
+            this.lane = lane;
+            this.key = key;
+            this.work = work;
+            this.sequence = sequence;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        private boolean cancel() {
+            boolean cancelled = future.cancel(true);
+            Thread current = thread;
+            if (cancelled && current != null) {
+                current.interrupt();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byLane = Integer.compare(lane.ordinal(), other.lane.ordinal());
+            return byLane != 0 ? byLane : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,3 +1,4 @@
+import asyncio
 import base64
 import hashlib
 import hmac
@@ -5,13 +6,18 @@ import json
 import os
 import secrets
 import sqlite3
+import threading
+import zlib
+from collections import deque
 from datetime import datetime
 from pathlib import Path
-from typing import Any, Dict, List, Optional, Tuple
+from typing import Any, Dict, Iterator, List, Optional, Tuple
 from uuid import uuid4
 
-from fastapi import FastAPI, HTTPException
+from fastapi import FastAPI, Header, HTTPException, Request, Response
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.middleware.gzip import GZipMiddleware
+from fastapi.responses import StreamingResponse
 from pydantic import BaseModel
 
 DB_PATH = Path(__file__).with_name("couch.db")
@@ -20,6 +26,11 @@ USERNAME_KEY = os.environ.get("COUCHSUITE_USERNAME_SECRET", "couchsuite-secret")
 PASSWORD_ITERATIONS = 120_000
 PASSWORD_ALGORITHM = "sha256"
 APP_VERSION = "0.1.0"
+PROBE_MAX_BYTES = 8 * 1024 * 1024
+EVENT_BACKLOG = 512
+EVENT_KEEPALIVE_SECONDS = 15.0
+GZIP_MIN_BYTES = 1024
+NDJSON_FLUSH_LINES = 12
 
 
 app = FastAPI(title="CouchServer", version=APP_VERSION)
@@ -29,6 +40,9 @@ app.add_middleware(
     allow_methods=["*"],
     allow_headers=["*"],
 )
+# Catalog and library bodies are repetitive JSON and shrink several times over; the launcher
+# asks for gzip and inflates while parsing.
+app.add_middleware(GZipMiddleware, minimum_size=GZIP_MIN_BYTES)
 
 
 class AppIn(BaseModel):
@@ -136,6 +150,12 @@ class ChartEntry(BaseModel):
     install_ready: bool = False
 
 
+class BootstrapResponse(BaseModel):
+    server: str
+    has_users: bool
+    apps: List[UserAppOut]
+
+
 class SteamLinkRequest(BaseModel):
     user_id: int
     org_id: int
@@ -430,6 +450,82 @@ def build_catalog(
     return catalog
 
 
+class EventBus:
+    """Recent change events with increasing ids, so /events subscribers can resume after a drop."""
+
+    def __init__(self, capacity: int) -> None:
+        self._events: deque = deque(maxlen=capacity)
+        self._next_id = 1
+        self._lock = threading.Lock()
+        self._waiters: Dict[asyncio.Event, asyncio.AbstractEventLoop] = {}
+
+    def latest_id(self) -> int:
+        with self._lock:
+            return self._next_id - 1
+
+    def publish(self, kind: str, data: Dict[str, Any], *, user_id: Optional[int] = None, org_id: Optional[int] = None) -> None:
+        # Called from the sync endpoints' worker threads; subscribers wait on their own event loop.
+        with self._lock:
+            self._events.append((self._next_id, kind, user_id, org_id, json.dumps(data)))
+            self._next_id += 1
+            waiters = list(self._waiters.items())
+        for waiter, loop in waiters:
+            loop.call_soon_threadsafe(waiter.set)
+
+    def add_waiter(self, waiter: asyncio.Event) -> None:
+        with self._lock:
+            self._waiters[waiter] = asyncio.get_running_loop()
+
+    def remove_waiter(self, waiter: asyncio.Event) -> None:
+        with self._lock:
+            self._waiters.pop(waiter, None)
+
+    def since(self, last_id: int) -> Tuple[List[Tuple[int, str, Optional[int], Optional[int], str]], bool]:
+        """Events after last_id; the flag is set when some of them have already been dropped."""
+        with self._lock:
+            if not self._events:
+                return [], False
+            missed = self._events[0][0] > last_id + 1
+            return [event for event in self._events if event[0] > last_id], missed
+
+
+EVENTS = EventBus(EVENT_BACKLOG)
+
+
+def publish_app_changes(conn: sqlite3.Connection, user_id: int, org_id: Optional[int], *, app_ids: Optional[List[str]] = None, game_ids: Optional[List[int]] = None) -> None:
+    # Send the changed catalog entries, not the whole catalog; launchers patch the tiles in place.
+    for entry in build_catalog(conn, user_id=user_id, org_id=org_id):
+        if (app_ids and entry.id in app_ids) or (game_ids and entry.game_id in game_ids):
+            EVENTS.publish("app", {"app": entry.model_dump()}, user_id=user_id, org_id=org_id)
+
+
+def gzip_lines(lines: Iterator[str], flush_every: int) -> Iterator[bytes]:
+    compressor = zlib.compressobj(6, zlib.DEFLATED, 31)
+    for index, line in enumerate(lines, start=1):
+        chunk = compressor.compress(line.encode("utf-8"))
+        if index % flush_every == 1:
+            # Sync flush after the header line and each batch so the client can inflate it now.
+            chunk += compressor.flush(zlib.Z_SYNC_FLUSH)
+        if chunk:
+            yield chunk
+    yield compressor.flush()
+
+
+def body_etag(parts: List[str]) -> str:
+    # Over the uncompressed body, so it is weak: gzip and identity encodings share it.
+    digest = hashlib.sha256()
+    for part in parts:
+        digest.update(part.encode("utf-8"))
+    return f'W/"{digest.hexdigest()}"'
+
+
+def etag_matches(if_none_match: Optional[str], etag: str) -> bool:
+    if not if_none_match:
+        return False
+    wanted = etag.removeprefix("W/")
+    return any(tag.strip().removeprefix("W/") in (wanted, "*") for tag in if_none_match.split(","))
+
+
 def serialize_session(row: sqlite3.Row) -> SessionOut:
     return SessionOut(
         id=row["id"],
@@ -524,6 +620,13 @@ def version() -> Dict[str, str]:
     return {"server": APP_VERSION}
 
 
+@app.get("/probe/payload")
+def probe_payload(size: int = 1024 * 1024) -> Response:
+    # Random bytes so on-path compression cannot inflate the launcher's throughput estimate.
+    size = max(0, min(size, PROBE_MAX_BYTES))
+    return Response(content=os.urandom(size), media_type="application/octet-stream", headers={"Cache-Control": "no-store"})
+
+
 @app.get("/apps", response_model=List[UserAppOut])
 def list_apps(enabled: Optional[bool] = None, chart_date: Optional[str] = None) -> List[UserAppOut]:
     with get_conn() as conn:
@@ -600,6 +703,86 @@ def game_details(game_id: int) -> GameSummary:
         return build_game_summary(row, external_map.get(game_id, {}))
 
 
+@app.get("/bootstrap", response_model=BootstrapResponse)
+def bootstrap(
+    user_id: Optional[int] = None,
+    org_id: Optional[int] = None,
+    accept: Optional[str] = Header(None),
+    accept_encoding: Optional[str] = Header(None),
+    if_none_match: Optional[str] = Header(None),
+):
+    # Everything the launcher hub needs at boot in one round trip; apps carry the user's ownership.
+    with get_conn() as conn:
+        row = conn.execute("SELECT COUNT(1) FROM users").fetchone()
+        catalog = build_catalog(conn, user_id=user_id, org_id=org_id)
+    # The ETag lets a launcher check a copy it got from a peer on the LAN without the body.
+    if accept and "application/x-ndjson" in accept:
+        # One line per entry so the launcher can render the first tiles before the body ends.
+        lines = [json.dumps({"server": APP_VERSION, "has_users": bool(row[0])}) + "\n"]
+        lines.extend(entry.model_dump_json() + "\n" for entry in catalog)
+        etag = body_etag(lines)
+        if etag_matches(if_none_match, etag):
+            return Response(status_code=304, headers={"ETag": etag, "Vary": "Accept, Accept-Encoding"})
+        if accept_encoding and "gzip" in accept_encoding:
+            # Compressed here rather than by the middleware so every screenful is flushed as it is ready.
+            return StreamingResponse(
+                gzip_lines(iter(lines), NDJSON_FLUSH_LINES),
+                media_type="application/x-ndjson",
+                headers={"Content-Encoding": "gzip", "Vary": "Accept, Accept-Encoding", "ETag": etag},
+            )
+        return StreamingResponse(iter(lines), media_type="application/x-ndjson", headers={"ETag": etag})
+    body = BootstrapResponse(server=APP_VERSION, has_users=bool(row[0]), apps=catalog).model_dump_json()
+    etag = body_etag([body])
+    if etag_matches(if_none_match, etag):
+        return Response(status_code=304, headers={"ETag": etag, "Vary": "Accept, Accept-Encoding"})
+    return Response(content=body, media_type="application/json", headers={"ETag": etag})
+
+
+@app.get("/events")
+async def events(
+    request: Request,
+    user_id: Optional[int] = None,
+    org_id: Optional[int] = None,
+    last_event_id: Optional[str] = Header(None),
+) -> StreamingResponse:
+    # Server-sent events for catalog entry and session changes. A client that reconnects with
+    # Last-Event-ID gets what it missed, or a "reset" event when that has left the backlog.
+    resume = int(last_event_id) if last_event_id and last_event_id.isdigit() else None
+
+    async def stream():
+        last = EVENTS.latest_id() if resume is None else resume
+        yield "retry: 2000\n\n"
+        if last > EVENTS.latest_id():
+            # The id comes from before a server restart; nothing that was missed can be replayed.
+            last = EVENTS.latest_id()
+            yield f"id: {last}\nevent: reset\ndata: {{}}\n\n"
+        waiter = asyncio.Event()
+        EVENTS.add_waiter(waiter)
+        try:
+            while not await request.is_disconnected():
+                waiter.clear()
+                batch, missed = EVENTS.since(last)
+                if missed:
+                    last = batch[-1][0]
+                    yield f"id: {last}\nevent: reset\ndata: {{}}\n\n"
+                    continue
+                if not batch:
+                    try:
+                        await asyncio.wait_for(waiter.wait(), EVENT_KEEPALIVE_SECONDS)
+                    except asyncio.TimeoutError:
+                        yield ": keepalive\n\n"
+                    continue
+                for event_id, kind, event_user, event_org, data in batch:
+                    last = event_id
+                    if event_user not in (None, user_id) or event_org not in (None, org_id):
+                        continue
+                    yield f"id: {event_id}\nevent: {kind}\ndata: {data}\n\n"
+        finally:
+            EVENTS.remove_waiter(waiter)
+
+    return StreamingResponse(stream(), media_type="text/event-stream", headers={"Cache-Control": "no-store"})
+
+
 @app.get("/users/exists", response_model=UserExistsResponse)
 def users_exist() -> UserExistsResponse:
     with get_conn() as conn:
@@ -780,6 +963,7 @@ def update_user_app(user_id: int, app_id: str, payload: InstalledUpdate) -> User
         repo = build_catalog(conn, user_id=user_id, org_id=org_id)
         for entry in repo:
             if entry.id == app_id:
+                EVENTS.publish("app", {"app": entry.model_dump()}, user_id=user_id, org_id=org_id)
                 return entry
         raise HTTPException(status_code=500, detail="failed to update app")
 
@@ -915,6 +1099,7 @@ def verify_steam_ownership(payload: SteamOwnershipRequest) -> Dict[str, object]:
             )
             verified.append(game_id)
         conn.commit()
+        publish_app_changes(conn, payload.user_id, payload.org_id, game_ids=verified)
     library = user_library(payload.user_id, payload.org_id)
     return {"verified": verified, "library": library}
 
@@ -942,7 +1127,9 @@ def create_session(payload: SessionCreateRequest) -> SessionOut:
         )
         conn.commit()
         row = conn.execute("SELECT * FROM sessions WHERE id=?", (cur.lastrowid,)).fetchone()
-        return serialize_session(row)
+        session = serialize_session(row)
+        EVENTS.publish("session", {"session": session.model_dump()}, user_id=session.user_id, org_id=session.org_id)
+        return session
 
 
 @app.get("/sessions/{session_id}", response_model=SessionOut)
@@ -967,7 +1154,9 @@ def terminate_session(session_id: int) -> SessionOut:
         )
         conn.commit()
         updated = conn.execute("SELECT * FROM sessions WHERE id=?", (session_id,)).fetchone()
-        return serialize_session(updated)
+        session = serialize_session(updated)
+        EVENTS.publish("session", {"session": session.model_dump()}, user_id=session.user_id, org_id=session.org_id)
+        return session
 
 
 @app.post("/apps", response_model=AppOut)